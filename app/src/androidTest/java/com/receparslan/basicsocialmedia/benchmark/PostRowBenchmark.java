@@ -0,0 +1,145 @@
+package com.receparslan.basicsocialmedia.benchmark;
+
+import android.content.Context;
+import android.view.ContextThemeWrapper;
+import android.view.LayoutInflater;
+import android.view.View;
+import android.widget.FrameLayout;
+
+import androidx.benchmark.BenchmarkState;
+import androidx.benchmark.junit4.BenchmarkRule;
+import androidx.test.annotation.UiThreadTest;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import com.receparslan.basicsocialmedia.R;
+import com.receparslan.basicsocialmedia.databinding.RecyclerRowBinding;
+import com.receparslan.basicsocialmedia.feed.PostFactory;
+import com.receparslan.basicsocialmedia.feed.PostRowFactory;
+import com.receparslan.basicsocialmedia.model.CompactFeed;
+import com.receparslan.basicsocialmedia.model.ImageVariant;
+import com.receparslan.basicsocialmedia.model.Post;
+import com.receparslan.basicsocialmedia.model.PostRow;
+import com.receparslan.basicsocialmedia.widget.PostRowView;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+
+/**
+ * Compares the inflated {@code recycler_row} layout with the flat {@link PostRowView}.
+ * <p>
+ * Creating a row is what a fling pays for every new view holder, binding and laying out a row is
+ * what it pays for every row that scrolls in. Rows are bound in turn to posts with short and long
+ * comments and with one or several images, and measured at the width of a phone screen. Run on a
+ * device with {@code ./gradlew :app:connectedBenchmarkAndroidTest -PtestBuildType=benchmark}.
+ */
+@RunWith(AndroidJUnit4.class)
+public class PostRowBenchmark {
+
+    // Width of the rows in pixels
+    private static final int WIDTH = 1080;
+
+    @Rule
+    public BenchmarkRule benchmarkRule = new BenchmarkRule();
+
+    private Context context;
+    private FrameLayout parent;
+    private CompactFeed feed;
+    private PostRowFactory postRowFactory;
+
+    @Before
+    public void setUp() {
+        context = new ContextThemeWrapper(InstrumentationRegistry.getInstrumentation().getTargetContext(), R.style.Theme_BasicSocialMedia);
+        parent = new FrameLayout(context);
+
+        ArrayList<Post> posts = new ArrayList<>();
+        for (int i = 0; i < 8; i++) {
+            String comment = i % 2 == 0 ? "Short comment " + i : "A longer comment that wraps over several lines of the row, like most of the comments in the feed do " + i;
+            posts.add(PostFactory.toPost("post" + i, "uid" + i, "author" + i + "@example.com", "Author " + i, comment, null, images(i % 3 + 1), 1_700_000_000_000L + i));
+        }
+        feed = CompactFeed.of(posts);
+        postRowFactory = new PostRowFactory(context.getColor(R.color.red));
+    }
+
+    @Test
+    @UiThreadTest
+    public void inflateLayout() {
+        LayoutInflater inflater = LayoutInflater.from(context);
+        BenchmarkState state = benchmarkRule.getState();
+        while (state.keepRunning())
+            RecyclerRowBinding.inflate(inflater, parent, false);
+    }
+
+    @Test
+    @UiThreadTest
+    public void createRowView() {
+        BenchmarkState state = benchmarkRule.getState();
+        while (state.keepRunning())
+            new PostRowView(context);
+    }
+
+    @Test
+    @UiThreadTest
+    public void bindLayout() {
+        RecyclerRowBinding binding = RecyclerRowBinding.inflate(LayoutInflater.from(context), parent, false);
+        BenchmarkState state = benchmarkRule.getState();
+        int position = 0;
+        while (state.keepRunning()) {
+            PostRow postRow = postRowFactory.getRow(feed, position);
+            binding.emailTextView.setText(feed.getEmail(position));
+            binding.dateTextView.setText(postRow.getDateText());
+            binding.commentTextView.setText(postRow.getText());
+            int imageCount = feed.getImageCount(position);
+            binding.imageCountTextView.setVisibility(imageCount > 1 ? View.VISIBLE : View.GONE);
+            if (imageCount > 1)
+                binding.imageCountTextView.setText(imageCount + " images");
+            ImageVariant image = feed.getImage(position, WIDTH);
+            binding.imageView.setAspectRatio(image.getWidth(), image.getHeight());
+
+            measureAndLayout(binding.getRoot());
+            position = (position + 1) % feed.size();
+        }
+    }
+
+    @Test
+    @UiThreadTest
+    public void bindRowView() {
+        PostRowView row = new PostRowView(context);
+        BenchmarkState state = benchmarkRule.getState();
+        int position = 0;
+        while (state.keepRunning()) {
+            PostRow postRow = postRowFactory.getRow(feed, position);
+            row.setContent(feed.getEmail(position), postRow.getDateText(), postRow.getText(), feed.getImageCount(position));
+            ImageVariant image = feed.getImage(position, WIDTH);
+            row.getImageView().setAspectRatio(image.getWidth(), image.getHeight());
+
+            measureAndLayout(row);
+            position = (position + 1) % feed.size();
+        }
+    }
+
+    private static void measureAndLayout(View view) {
+        view.measure(View.MeasureSpec.makeMeasureSpec(WIDTH, View.MeasureSpec.EXACTLY), View.MeasureSpec.makeMeasureSpec(0, View.MeasureSpec.UNSPECIFIED));
+        view.layout(0, 0, view.getMeasuredWidth(), view.getMeasuredHeight());
+    }
+
+    // Variants of the images as Firestore returns them, in landscape and portrait
+    private static List<HashMap<String, Object>> images(int count) {
+        ArrayList<HashMap<String, Object>> images = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            HashMap<String, Object> image = new HashMap<>();
+            image.put("image", (long) i);
+            image.put("path", "images/post_" + i + ".jpg");
+            image.put("width", i % 2 == 0 ? 1600L : 1200L);
+            image.put("height", i % 2 == 0 ? 1200L : 1600L);
+            images.add(image);
+        }
+        return images;
+    }
+}
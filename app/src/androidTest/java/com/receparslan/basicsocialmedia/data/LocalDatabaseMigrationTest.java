@@ -0,0 +1,142 @@
+package com.receparslan.basicsocialmedia.data;
+
+import static org.junit.Assert.assertEquals;
+
+import android.content.Context;
+import android.database.Cursor;
+import android.database.DatabaseUtils;
+import android.database.sqlite.SQLiteDatabase;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Upgrades a database of every earlier version and checks that it ends up with the schema of a new one.
+ */
+@RunWith(AndroidJUnit4.class)
+public class LocalDatabaseMigrationTest {
+
+    private static final String CREATED = "migration_created.db";
+    private static final String UPGRADED = "migration_upgraded.db";
+
+    private static final String[] TABLES = {
+            LocalDatabase.TABLE_OUTBOX,
+            LocalDatabase.TABLE_OUTBOX_SESSIONS,
+            LocalDatabase.TABLE_FEED,
+            LocalDatabase.TABLE_IMAGE_URLS,
+            LocalDatabase.TABLE_ARCHIVE,
+            LocalDatabase.TABLE_LIKES
+    };
+
+    // Statements that turned the schema of each version into the next, starting with version 1
+    private static final String[][] HISTORY = {
+            {
+                    "CREATE TABLE outbox (post_id TEXT PRIMARY KEY, display_name TEXT, email TEXT, comment TEXT NOT NULL, "
+                            + "image_file TEXT NOT NULL, session_uri TEXT, created_at INTEGER NOT NULL)"
+            },
+            {
+                    "CREATE TABLE feed_posts (position INTEGER NOT NULL, post_id TEXT PRIMARY KEY, display_name TEXT, email TEXT, "
+                            + "comment TEXT, image_url TEXT, images TEXT, date INTEGER NOT NULL)"
+            },
+            {
+                    "ALTER TABLE outbox ADD COLUMN failed INTEGER NOT NULL DEFAULT 0"
+            },
+            {
+                    "ALTER TABLE outbox ADD COLUMN author_uid TEXT",
+                    "ALTER TABLE feed_posts ADD COLUMN author_uid TEXT"
+            },
+            {
+                    "ALTER TABLE outbox ADD COLUMN image_count INTEGER NOT NULL DEFAULT 1",
+                    "CREATE TABLE outbox_sessions (post_id TEXT NOT NULL, image INTEGER NOT NULL, session_uri TEXT NOT NULL, "
+                            + "PRIMARY KEY (post_id, image))",
+                    "CREATE TABLE image_urls (path TEXT PRIMARY KEY, url TEXT NOT NULL)"
+            },
+            {
+                    "CREATE TABLE archived_posts (post_id TEXT PRIMARY KEY, author_uid TEXT, display_name TEXT, email TEXT, "
+                            + "comment TEXT, image_url TEXT, images TEXT, date INTEGER NOT NULL)",
+                    "CREATE INDEX archived_posts_date ON archived_posts (date)"
+            },
+            {
+                    "CREATE TABLE liked_posts (uid TEXT NOT NULL, post_id TEXT NOT NULL, PRIMARY KEY (uid, post_id))"
+            }
+    };
+
+    private Context context;
+
+    @Before
+    public void setUp() {
+        context = InstrumentationRegistry.getInstrumentation().getTargetContext();
+        context.deleteDatabase(CREATED);
+        context.deleteDatabase(UPGRADED);
+    }
+
+    @After
+    public void tearDown() {
+        context.deleteDatabase(CREATED);
+        context.deleteDatabase(UPGRADED);
+    }
+
+    @Test
+    public void upgradeFromEveryVersion() {
+        LocalDatabase created = new LocalDatabase(context, CREATED);
+        String expected = schema(created.getReadableDatabase());
+        created.close();
+
+        for (int version = 1; version <= HISTORY.length; version++) {
+            context.deleteDatabase(UPGRADED);
+            try (SQLiteDatabase db = SQLiteDatabase.openOrCreateDatabase(context.getDatabasePath(UPGRADED), null)) {
+                for (int step = 0; step < version; step++) {
+                    for (String statement : HISTORY[step])
+                        db.execSQL(statement);
+                }
+                db.execSQL("INSERT INTO outbox (post_id, comment, image_file, session_uri, created_at) VALUES ('queued', '', 'image.jpg', 'session', 0)");
+                if (version >= 2)
+                    db.execSQL("INSERT INTO feed_posts (position, post_id, date) VALUES (0, 'cached', 0)");
+                db.setVersion(version);
+            }
+
+            LocalDatabase upgraded = new LocalDatabase(context, UPGRADED);
+            SQLiteDatabase db = upgraded.getReadableDatabase();
+            assertEquals("Schema upgraded from version " + version, expected, schema(db));
+
+            // The rows of the old version are carried over
+            assertEquals(1, DatabaseUtils.queryNumEntries(db, LocalDatabase.TABLE_OUTBOX));
+            if (version < 5)
+                assertEquals(1, DatabaseUtils.queryNumEntries(db, LocalDatabase.TABLE_OUTBOX_SESSIONS));
+            if (version >= 2) {
+                assertEquals(1, DatabaseUtils.queryNumEntries(db, LocalDatabase.TABLE_FEED));
+                if (version < 6)
+                    assertEquals(1, DatabaseUtils.queryNumEntries(db, LocalDatabase.TABLE_ARCHIVE));
+            }
+            upgraded.close();
+        }
+    }
+
+    // Columns and indices of the tables, independent of the order the columns were added in
+    private static String schema(SQLiteDatabase db) {
+        StringBuilder schema = new StringBuilder();
+        for (String table : TABLES) {
+            List<String> columns = new ArrayList<>();
+            try (Cursor cursor = db.rawQuery("PRAGMA table_info(" + table + ")", null)) {
+                while (cursor.moveToNext())
+                    columns.add(cursor.getString(1) + " " + cursor.getString(2) + " notnull=" + cursor.getInt(3) + " default=" + cursor.getString(4) + " pk=" + cursor.getInt(5));
+            }
+            try (Cursor cursor = db.rawQuery("PRAGMA index_list(" + table + ")", null)) {
+                while (cursor.moveToNext())
+                    columns.add("index " + cursor.getString(1));
+            }
+            Collections.sort(columns);
+            schema.append(table).append(' ').append(columns).append('\n');
+        }
+        return schema.toString();
+    }
+}
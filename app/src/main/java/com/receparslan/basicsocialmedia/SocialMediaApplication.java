@@ -0,0 +1,23 @@
+package com.receparslan.basicsocialmedia;
+
+import android.app.Application;
+
+import com.receparslan.basicsocialmedia.image.ImageCache;
+import com.receparslan.basicsocialmedia.network.ConnectivityMonitor;
+import com.receparslan.basicsocialmedia.perf.StartupTimer;
+
+public class SocialMediaApplication extends Application {
+
+    @Override
+    public void onCreate() {
+        super.onCreate();
+
+        // Install the app-wide image cache before any image is loaded
+        ImageCache.install(this);
+
+        // Start monitoring the network for every screen
+        ConnectivityMonitor.install(this);
+
+        StartupTimer.mark(StartupTimer.APPLICATION_CREATED);
+    }
+}
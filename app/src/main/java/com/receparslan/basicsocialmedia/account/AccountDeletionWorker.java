@@ -0,0 +1,320 @@
+package com.receparslan.basicsocialmedia.account;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+
+import androidx.annotation.NonNull;
+import androidx.work.Constraints;
+import androidx.work.Data;
+import androidx.work.ExistingWorkPolicy;
+import androidx.work.NetworkType;
+import androidx.work.OneTimeWorkRequest;
+import androidx.work.WorkManager;
+import androidx.work.Worker;
+import androidx.work.WorkerParameters;
+
+import com.google.android.gms.tasks.Tasks;
+import com.google.firebase.auth.FirebaseAuth;
+import com.google.firebase.auth.FirebaseAuthRecentLoginRequiredException;
+import com.google.firebase.auth.FirebaseUser;
+import com.google.firebase.firestore.DocumentReference;
+import com.google.firebase.firestore.DocumentSnapshot;
+import com.google.firebase.firestore.CollectionReference;
+import com.google.firebase.firestore.Query;
+import com.google.firebase.firestore.FirebaseFirestore;
+import com.google.firebase.firestore.QuerySnapshot;
+import com.google.firebase.firestore.SetOptions;
+import com.google.firebase.firestore.Source;
+import com.google.firebase.firestore.WriteBatch;
+import com.google.firebase.storage.FirebaseStorage;
+import com.google.firebase.storage.StorageException;
+import com.google.firebase.storage.StorageReference;
+import com.receparslan.basicsocialmedia.engagement.PostCounters;
+import com.receparslan.basicsocialmedia.follow.FollowGraph;
+import com.receparslan.basicsocialmedia.follow.HomeTimeline;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Deletes the posts, the images and finally the account of the signed in user.
+ * <p>
+ * Posts are found by the UID of their author, posts written before the UID was stored by their
+ * email. They are deleted in chunks of up to 500 documents, the limit of a {@link WriteBatch}. The
+ * images of a chunk are deleted first, with bounded concurrency and retries, using the storage
+ * paths saved in the post documents, and only then the documents, so a path is never lost before
+ * its image is deleted. The like and comment counter shards of the posts go before the posts as
+ * well. The progress is checkpointed, so a purge interrupted by process death is resumed by
+ * WorkManager, and the account is deleted only after every post and the statistics of the user are
+ * gone. The copies of the posts in home timelines, the follows of the user and its own home
+ * timeline go with them, and the users on the other side of a follow have their counts decremented.
+ * The post count of the user is decremented in the same batch that deletes its posts.
+ */
+public class AccountDeletionWorker extends Worker {
+
+    // Unique name of the deletion work
+    public static final String WORK_NAME = "account-deletion";
+
+    // Progress key with the number of deleted posts
+    public static final String KEY_DELETED = "deleted";
+
+    // Output key set when the user must sign in again before the account can be deleted
+    public static final String KEY_REAUTHENTICATE = "reauthenticate";
+
+    private static final String KEY_UID = "uid";
+    private static final String KEY_EMAIL = "email";
+
+    // Maximum number of documents in a write batch
+    private static final int BATCH_SIZE = 500;
+
+    // Number of images deleted at the same time
+    private static final int MAX_CONCURRENT_DELETES = 4;
+
+    // Number of attempts to delete an image
+    private static final int MAX_DELETE_ATTEMPTS = 3;
+
+    private static final String PREFERENCES = "account_deletion";
+    private static final String PREF_UID = "uid";
+    private static final String PREF_CONTENT_DELETED = "content_deleted";
+    private static final String PREF_DELETED = "deleted";
+
+    public AccountDeletionWorker(@NonNull Context context, @NonNull WorkerParameters workerParams) {
+        super(context, workerParams);
+    }
+
+    // Start deleting the account of the user, keeps the deletion that is already running
+    public static void enqueue(Context context, String uid, String email) {
+        OneTimeWorkRequest request = new OneTimeWorkRequest.Builder(AccountDeletionWorker.class)
+                .setInputData(new Data.Builder().putString(KEY_UID, uid).putString(KEY_EMAIL, email).build())
+                .setConstraints(new Constraints.Builder().setRequiredNetworkType(NetworkType.CONNECTED).build())
+                .build();
+
+        WorkManager.getInstance(context).enqueueUniqueWork(WORK_NAME, ExistingWorkPolicy.KEEP, request);
+    }
+
+    @NonNull
+    @Override
+    public Result doWork() {
+        String uid = getInputData().getString(KEY_UID);
+        String email = getInputData().getString(KEY_EMAIL);
+
+        FirebaseUser user = FirebaseAuth.getInstance().getCurrentUser();
+        if (uid == null || user == null || !uid.equals(user.getUid()))
+            return Result.failure();
+
+        // Restore the checkpoint of an interrupted deletion of the same user
+        SharedPreferences checkpoint = getApplicationContext().getSharedPreferences(PREFERENCES, Context.MODE_PRIVATE);
+        if (!uid.equals(checkpoint.getString(PREF_UID, null)))
+            checkpoint.edit().clear().putString(PREF_UID, uid).commit();
+
+        ExecutorService deleteExecutor = Executors.newFixedThreadPool(MAX_CONCURRENT_DELETES);
+        try {
+            if (!checkpoint.getBoolean(PREF_CONTENT_DELETED, false)) {
+                int deleted = checkpoint.getInt(PREF_DELETED, 0);
+                setProgressAsync(new Data.Builder().putInt(KEY_DELETED, deleted).build());
+
+                List<DocumentSnapshot> documents;
+                while (!(documents = nextPosts(uid, email)).isEmpty()) {
+                    // Delete the images of the chunk, keep the documents if any image could not be deleted
+                    if (!deleteImages(documents, deleteExecutor))
+                        return Result.retry();
+                    deleteCounters(documents);
+
+                    WriteBatch batch = FirebaseFirestore.getInstance().batch();
+                    int counted = 0;
+                    for (DocumentSnapshot documentSnapshot : documents) {
+                        batch.delete(documentSnapshot.getReference());
+                        if (uid.equals(documentSnapshot.getString("authorUid")))
+                            counted++;
+                    }
+                    if (counted > 0)
+                        batch.set(UserStats.reference(FirebaseFirestore.getInstance(), uid), UserStats.postsDeleted(counted), SetOptions.merge());
+                    Tasks.await(batch.commit());
+
+                    deleted += documents.size();
+                    checkpoint.edit().putInt(PREF_DELETED, deleted).commit();
+                    setProgressAsync(new Data.Builder().putInt(KEY_DELETED, deleted).build());
+                }
+
+                deleteLikes(uid);
+                deleteFollows(uid);
+                Tasks.await(UserStats.reference(FirebaseFirestore.getInstance(), uid).delete());
+                checkpoint.edit().putBoolean(PREF_CONTENT_DELETED, true).commit();
+            }
+
+            // Every post is deleted, delete the account
+            Tasks.await(user.delete());
+            checkpoint.edit().clear().commit();
+            return Result.success();
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof FirebaseAuthRecentLoginRequiredException)
+                return Result.failure(new Data.Builder().putBoolean(KEY_REAUTHENTICATE, true).build());
+            return Result.retry();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return Result.retry();
+        } finally {
+            deleteExecutor.shutdownNow();
+        }
+    }
+
+    // Get the next chunk of posts of the user from the server
+    private static List<DocumentSnapshot> nextPosts(String uid, String email) throws ExecutionException, InterruptedException {
+        CollectionReference posts = FirebaseFirestore.getInstance().collection("Posts");
+        QuerySnapshot snapshot = Tasks.await(posts.whereEqualTo("authorUid", uid).limit(BATCH_SIZE).get(Source.SERVER));
+
+        // Posts written before the author UID was stored can only be found by their email
+        if (snapshot.isEmpty() && email != null)
+            snapshot = Tasks.await(posts.whereEqualTo("email", email).limit(BATCH_SIZE).get(Source.SERVER));
+        return snapshot.getDocuments();
+    }
+
+    // Delete the timeline copies of the posts of the user, the follows of the user and its home timeline
+    private static void deleteFollows(String uid) throws ExecutionException, InterruptedException {
+        FirebaseFirestore firebaseFirestore = FirebaseFirestore.getInstance();
+
+        // Needs the collection group index of the author UID of the timeline copies
+        deleteAll(firebaseFirestore.collectionGroup(HomeTimeline.COLLECTION).whereEqualTo("authorUid", uid));
+        deleteAll(HomeTimeline.reference(firebaseFirestore, uid));
+
+        // Each follow is two edges and the count of the other user, a third of a batch at a time
+        Query following = FollowGraph.following(firebaseFirestore, uid).limit(BATCH_SIZE / 3);
+        Query followers = FollowGraph.followers(firebaseFirestore, uid).limit(BATCH_SIZE / 3);
+        List<DocumentSnapshot> edges;
+        while (!(edges = Tasks.await(following.get(Source.SERVER)).getDocuments()).isEmpty()) {
+            WriteBatch batch = firebaseFirestore.batch();
+            for (DocumentSnapshot edge : edges) {
+                batch.delete(edge.getReference());
+                batch.delete(FollowGraph.followers(firebaseFirestore, edge.getId()).document(uid));
+                batch.set(UserStats.reference(firebaseFirestore, edge.getId()), UserStats.followersChanged(-1), SetOptions.merge());
+            }
+            Tasks.await(batch.commit());
+        }
+        while (!(edges = Tasks.await(followers.get(Source.SERVER)).getDocuments()).isEmpty()) {
+            WriteBatch batch = firebaseFirestore.batch();
+            for (DocumentSnapshot edge : edges) {
+                batch.delete(edge.getReference());
+                batch.delete(FollowGraph.following(firebaseFirestore, edge.getId()).document(uid));
+                batch.set(UserStats.reference(firebaseFirestore, edge.getId()), UserStats.followingChanged(-1), SetOptions.merge());
+            }
+            Tasks.await(batch.commit());
+        }
+    }
+
+    // Delete every document of the query, a batch at a time
+    private static void deleteAll(Query query) throws ExecutionException, InterruptedException {
+        List<DocumentSnapshot> documents;
+        while (!(documents = Tasks.await(query.limit(BATCH_SIZE).get(Source.SERVER)).getDocuments()).isEmpty()) {
+            WriteBatch batch = FirebaseFirestore.getInstance().batch();
+            for (DocumentSnapshot documentSnapshot : documents)
+                batch.delete(documentSnapshot.getReference());
+            Tasks.await(batch.commit());
+        }
+    }
+
+    // Delete the likes of the user on the posts of others and take them off their counters
+    private static void deleteLikes(String uid) throws ExecutionException, InterruptedException {
+        FirebaseFirestore firebaseFirestore = FirebaseFirestore.getInstance();
+
+        // Needs the collection group index of the UID of the likes, each like is two writes
+        Query likes = firebaseFirestore.collectionGroup(PostCounters.LIKES).whereEqualTo(PostCounters.FIELD_UID, uid).limit(BATCH_SIZE / 2);
+        List<DocumentSnapshot> documents;
+        while (!(documents = Tasks.await(likes.get(Source.SERVER)).getDocuments()).isEmpty()) {
+            WriteBatch batch = firebaseFirestore.batch();
+            for (DocumentSnapshot like : documents) {
+                DocumentReference post = like.getReference().getParent().getParent();
+                batch.delete(like.getReference());
+                if (post != null)
+                    batch.set(PostCounters.randomShard(firebaseFirestore, post.getId()), PostCounters.increment(PostCounters.FIELD_LIKES, -1), SetOptions.merge());
+            }
+            Tasks.await(batch.commit());
+        }
+    }
+
+    // Delete the likes and the like and comment counters of the posts, every shard of a post has a known ID
+    private static void deleteCounters(List<DocumentSnapshot> documents) throws ExecutionException, InterruptedException {
+        FirebaseFirestore firebaseFirestore = FirebaseFirestore.getInstance();
+        for (DocumentSnapshot documentSnapshot : documents)
+            deleteAll(PostCounters.likes(firebaseFirestore, documentSnapshot.getId()));
+
+        WriteBatch batch = firebaseFirestore.batch();
+        int size = 0;
+        for (DocumentSnapshot documentSnapshot : documents) {
+            for (DocumentReference shard : PostCounters.shardReferences(firebaseFirestore, documentSnapshot.getId())) {
+                batch.delete(shard);
+                if (++size == BATCH_SIZE) {
+                    Tasks.await(batch.commit());
+                    batch = firebaseFirestore.batch();
+                    size = 0;
+                }
+            }
+        }
+        if (size > 0)
+            Tasks.await(batch.commit());
+    }
+
+    // Delete the images of the posts with bounded concurrency, returns false if any image could not be deleted
+    private static boolean deleteImages(List<DocumentSnapshot> documents, ExecutorService deleteExecutor) throws InterruptedException {
+        ArrayList<Future<Boolean>> deletes = new ArrayList<>();
+        for (DocumentSnapshot documentSnapshot : documents) {
+            for (StorageReference reference : imageReferences(documentSnapshot))
+                deletes.add(deleteExecutor.submit(() -> delete(reference)));
+        }
+
+        boolean success = true;
+        for (Future<Boolean> delete : deletes) {
+            try {
+                success &= delete.get();
+            } catch (ExecutionException e) {
+                success = false;
+            }
+        }
+        return success;
+    }
+
+    // Delete an image with retries, an image that does not exist is already deleted
+    private static boolean delete(StorageReference reference) throws InterruptedException {
+        for (int attempt = 1; attempt <= MAX_DELETE_ATTEMPTS; attempt++) {
+            try {
+                Tasks.await(reference.delete());
+                return true;
+            } catch (ExecutionException e) {
+                if (e.getCause() instanceof StorageException && ((StorageException) e.getCause()).getErrorCode() == StorageException.ERROR_OBJECT_NOT_FOUND)
+                    return true;
+                Thread.sleep(attempt * 1000L);
+            }
+        }
+        return false;
+    }
+
+    // Get the storage references of the images of a post
+    private static List<StorageReference> imageReferences(DocumentSnapshot documentSnapshot) {
+        ArrayList<StorageReference> references = new ArrayList<>();
+        FirebaseStorage storage = FirebaseStorage.getInstance();
+
+        // Posts with variants store the path of every variant
+        Object images = documentSnapshot.get("images");
+        if (images instanceof List) {
+            for (Object image : (List<?>) images) {
+                if (image instanceof Map && ((Map<?, ?>) image).get("path") instanceof String)
+                    references.add(storage.getReference().child((String) ((Map<?, ?>) image).get("path")));
+            }
+        }
+
+        // Older posts only store the download URL of their image
+        String imageUrl = documentSnapshot.getString("imageUrl");
+        if (references.isEmpty() && imageUrl != null) {
+            try {
+                references.add(storage.getReferenceFromUrl(imageUrl));
+            } catch (IllegalArgumentException ignored) {
+                // Not a storage URL, there is nothing to delete
+            }
+        }
+        return references;
+    }
+}
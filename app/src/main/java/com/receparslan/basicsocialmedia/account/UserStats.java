@@ -0,0 +1,60 @@
+package com.receparslan.basicsocialmedia.account;
+
+import com.google.firebase.firestore.DocumentReference;
+import com.google.firebase.firestore.FieldValue;
+import com.google.firebase.firestore.FirebaseFirestore;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Denormalized statistics of a user, kept in {@code Users/<uid>}.
+ * <p>
+ * The post count is changed in the same transaction or batch that creates or deletes the posts, and
+ * the follower and following counts in the one that adds or removes the follow, so a profile reads
+ * one document instead of counting the posts and the follows of the user.
+ */
+public final class UserStats {
+
+    public static final String COLLECTION = "Users";
+    public static final String FIELD_POST_COUNT = "postCount";
+    public static final String FIELD_LAST_POST_DATE = "lastPostDate";
+    public static final String FIELD_FOLLOWER_COUNT = "followerCount";
+    public static final String FIELD_FOLLOWING_COUNT = "followingCount";
+
+    // Set once the user has too many followers to copy posts to, see HomeTimeline
+    public static final String FIELD_FAN_OUT_ON_READ = "fanOutOnRead";
+
+    private UserStats() {
+    }
+
+    public static DocumentReference reference(FirebaseFirestore firebaseFirestore, String uid) {
+        return firebaseFirestore.collection(COLLECTION).document(uid);
+    }
+
+    // Changes for a new post, to be merged into the document
+    public static Map<String, Object> postCreated() {
+        HashMap<String, Object> stats = new HashMap<>();
+        stats.put(FIELD_POST_COUNT, FieldValue.increment(1));
+        stats.put(FIELD_LAST_POST_DATE, FieldValue.serverTimestamp());
+        return stats;
+    }
+
+    // Changes for deleted posts, to be merged into the document
+    public static Map<String, Object> postsDeleted(int count) {
+        HashMap<String, Object> stats = new HashMap<>();
+        stats.put(FIELD_POST_COUNT, FieldValue.increment(-count));
+        return stats;
+    }
+
+    // Changes for gained or lost followers, to be merged into the document
+    public static Map<String, Object> followersChanged(int delta) {
+        return Collections.singletonMap(FIELD_FOLLOWER_COUNT, FieldValue.increment(delta));
+    }
+
+    // Changes for followed or unfollowed users, to be merged into the document
+    public static Map<String, Object> followingChanged(int delta) {
+        return Collections.singletonMap(FIELD_FOLLOWING_COUNT, FieldValue.increment(delta));
+    }
+}
@@ -1,53 +1,255 @@
 package com.receparslan.basicsocialmedia.adapter;
 
-import android.view.LayoutInflater;
+import android.content.Intent;
+import android.graphics.drawable.Drawable;
 import android.view.ViewGroup;
 
 import androidx.annotation.NonNull;
+import androidx.core.content.ContextCompat;
+import androidx.recyclerview.widget.DiffUtil;
 import androidx.recyclerview.widget.RecyclerView;
 
-import com.receparslan.basicsocialmedia.databinding.RecyclerRowBinding;
-import com.receparslan.basicsocialmedia.model.Post;
+import com.receparslan.basicsocialmedia.R;
+import com.receparslan.basicsocialmedia.engagement.EngagementCache;
+import com.receparslan.basicsocialmedia.feed.PostRowFactory;
+import com.receparslan.basicsocialmedia.image.ImageCache;
+import com.receparslan.basicsocialmedia.image.Placeholders;
+import com.receparslan.basicsocialmedia.model.Author;
+import com.receparslan.basicsocialmedia.model.CompactFeed;
+import com.receparslan.basicsocialmedia.model.ImageVariant;
+import com.receparslan.basicsocialmedia.model.PostRow;
+import com.receparslan.basicsocialmedia.perf.PerfMetrics;
+import com.receparslan.basicsocialmedia.views.ImageActivity;
+import com.receparslan.basicsocialmedia.views.TimelineActivity;
+import com.receparslan.basicsocialmedia.widget.PostRowView;
+import com.squareup.picasso.Callback;
 import com.squareup.picasso.Picasso;
+import com.squareup.picasso.RequestCreator;
 
 import java.util.ArrayList;
+import java.util.List;
 
 public class RecyclerAdapter extends RecyclerView.Adapter<RecyclerAdapter.ViewHolder> {
 
-    final ArrayList<Post> postArrayList;
+    // Payload of a change of the likes or the comments, binds only them
+    private static final Object PAYLOAD_ENGAGEMENT = new Object();
 
-    public RecyclerAdapter(ArrayList<Post> postArrayList) {
-        this.postArrayList = postArrayList;
+    // Posts shown by the adapter
+    private CompactFeed feed = CompactFeed.EMPTY;
+
+    // RecyclerView the adapter is attached to, its width is the width of the images
+    private RecyclerView recyclerView;
+
+    // Whether a click on the author opens the timeline of the author
+    private boolean authorClickable = true;
+
+    // Counts of the posts, set while the adapter is attached
+    private EngagementCache engagementCache;
+
+    // Text and date of the rows, built when they are bound
+    private PostRowFactory postRowFactory;
+
+    // Rebind the likes and the comments of the changed posts
+    private final EngagementCache.Listener engagementListener = postId -> {
+        if (postId == null) {
+            notifyItemRangeChanged(0, feed.size(), PAYLOAD_ENGAGEMENT);
+            return;
+        }
+
+        int position = feed.indexOf(postId);
+        if (position >= 0)
+            notifyItemChanged(position, PAYLOAD_ENGAGEMENT);
+    };
+
+    // Show the feed without animations, used for the first feed of the screen
+    public void setFeed(CompactFeed feed) {
+        this.feed = feed;
+        notifyDataSetChanged();
+    }
+
+    // Show the feed with its changes against the previous feed, or without animations if another feed is shown now
+    public void submitFeed(CompactFeed feed, CompactFeed previous, DiffUtil.DiffResult diff) {
+        if (diff == null || this.feed != previous) {
+            setFeed(feed);
+            return;
+        }
+
+        this.feed = feed;
+        diff.dispatchUpdatesTo(this);
+    }
+
+    public void setAuthorClickable(boolean authorClickable) {
+        this.authorClickable = authorClickable;
+    }
+
+    public CompactFeed getFeed() {
+        return feed;
+    }
+
+    @Override
+    public void onAttachedToRecyclerView(@NonNull RecyclerView recyclerView) {
+        super.onAttachedToRecyclerView(recyclerView);
+        this.recyclerView = recyclerView;
+        engagementCache = EngagementCache.get(recyclerView.getContext());
+        engagementCache.addListener(engagementListener);
+        if (postRowFactory == null)
+            postRowFactory = new PostRowFactory(ContextCompat.getColor(recyclerView.getContext(), R.color.red));
+    }
+
+    @Override
+    public void onDetachedFromRecyclerView(@NonNull RecyclerView recyclerView) {
+        super.onDetachedFromRecyclerView(recyclerView);
+        this.recyclerView = null;
+
+        // Write the likes tapped on the screen without waiting for the taps to stop
+        engagementCache.removeListener(engagementListener);
+        engagementCache.flush();
+        engagementCache = null;
     }
 
     @NonNull
     @Override
     public RecyclerAdapter.ViewHolder onCreateViewHolder(@NonNull ViewGroup parent, int viewType) {
-        RecyclerRowBinding binding = RecyclerRowBinding.inflate(LayoutInflater.from(parent.getContext()), parent, false);
-        return new ViewHolder(binding);
+        // One flat view per row instead of an inflated layout
+        PostRowView row = new PostRowView(parent.getContext());
+        RecyclerView.LayoutParams layoutParams = new RecyclerView.LayoutParams(ViewGroup.LayoutParams.MATCH_PARENT, ViewGroup.LayoutParams.WRAP_CONTENT);
+        int margin = parent.getResources().getDimensionPixelSize(R.dimen.row_margin);
+        layoutParams.setMargins(margin, margin, margin, margin);
+        row.setLayoutParams(layoutParams);
+        ViewHolder holder = new ViewHolder(row);
+
+        // Show the original images in full screen on click
+        row.getImageView().setOnClickListener(view -> {
+            int position = holder.getBindingAdapterPosition();
+            if (position != RecyclerView.NO_POSITION) {
+                ArrayList<String> paths = new ArrayList<>();
+                ArrayList<String> urls = new ArrayList<>();
+                for (ImageVariant original : feed.getOriginals(position)) {
+                    paths.add(original.getPath());
+                    urls.add(original.getUrl());
+                }
+
+                Intent intent = new Intent(view.getContext(), ImageActivity.class);
+                intent.putStringArrayListExtra(ImageActivity.EXTRA_IMAGE_PATHS, paths);
+                intent.putStringArrayListExtra(ImageActivity.EXTRA_IMAGE_URLS, urls);
+                view.getContext().startActivity(intent);
+            }
+        });
+
+        // Show the timeline of the author on click, posts written before the author UID was stored have none
+        row.setOnAuthorClickListener(view -> {
+            int position = holder.getBindingAdapterPosition();
+            if (!authorClickable || position == RecyclerView.NO_POSITION)
+                return;
+
+            Author author = feed.getAuthor(position);
+            if (author.getUid() != null) {
+                Intent intent = new Intent(view.getContext(), TimelineActivity.class);
+                intent.putExtra(TimelineActivity.EXTRA_AUTHOR_UID, author.getUid());
+                intent.putExtra(TimelineActivity.EXTRA_EMAIL, author.getEmail());
+                view.getContext().startActivity(intent);
+            }
+        });
+
+        // Like the post on click, taps are written together once they stop
+        row.setOnLikeClickListener(view -> {
+            int position = holder.getBindingAdapterPosition();
+            if (position != RecyclerView.NO_POSITION && !feed.isPending(position) && engagementCache != null)
+                engagementCache.toggleLike(feed.getId(position));
+        });
+
+        return holder;
+    }
+
+    @Override
+    public void onBindViewHolder(@NonNull RecyclerAdapter.ViewHolder holder, int position, @NonNull List<Object> payloads) {
+        // A change of the counts does not load the image again
+        for (Object payload : payloads) {
+            if (payload != PAYLOAD_ENGAGEMENT) {
+                onBindViewHolder(holder, position);
+                return;
+            }
+        }
+        if (payloads.isEmpty())
+            onBindViewHolder(holder, position);
+        else
+            bindEngagement(holder, position);
     }
 
     @Override
     public void onBindViewHolder(@NonNull RecyclerAdapter.ViewHolder holder, int position) {
-        holder.binding.emailTextView.setText(postArrayList.get(position).getEmail());
-        holder.binding.dateTextView.setText(postArrayList.get(position).getDate());
-        holder.binding.displayNameTextView.setText(String.format("%s : ", postArrayList.get(position).getDisplayName()));
-        holder.binding.commentTextView.setText(holder.binding.displayNameTextView.getText().toString().concat(postArrayList.get(position).getComment()));
-        Picasso.get().load(postArrayList.get(position).getImageUri()).into(holder.binding.imageView);
+        long start = PerfMetrics.begin(PerfMetrics.ROW_BIND);
+        PostRow row = postRowFactory.getRow(feed, position);
+        holder.row.setContent(feed.getEmail(position), row.getDateText(), row.getText(), feed.getImageCount(position));
+        bindEngagement(holder, position);
+
+        // Dim the posts that are still being uploaded
+        holder.itemView.setAlpha(feed.isPending(position) ? 0.5f : 1f);
+
+        // Load the smallest image variant that covers the width of the row
+        int width = recyclerView != null ? recyclerView.getWidth() : 0;
+        ImageVariant image = feed.getImage(position, width);
+        if (image == null) {
+            Picasso.get().cancelRequest(holder.row.getImageView());
+            holder.row.getImageView().setAspectRatio(0, 0);
+            holder.row.getImageView().setImageDrawable(null);
+        } else {
+            // Reserve the height of the image and paint its placeholder until it is loaded, so the row is laid out once
+            holder.row.getImageView().setAspectRatio(image.getWidth(), image.getHeight());
+            RequestCreator request = ImageCache.request(Picasso.get(), image, width);
+            Drawable placeholder = Placeholders.get(holder.itemView.getResources(), image);
+            if (placeholder != null)
+                request.placeholder(placeholder);
+
+            holder.imageTimer.startNanos = start;
+            request.into(holder.row.getImageView(), holder.imageTimer);
+        }
+        PerfMetrics.end(PerfMetrics.ROW_BIND, start);
+    }
+
+    // Show the cached counts of the post, they are read if they are missing or old
+    private void bindEngagement(ViewHolder holder, int position) {
+        // Posts that are still being uploaded have no counts yet
+        if (engagementCache == null || feed.isPending(position)) {
+            holder.row.setEngagement(false, -1, -1);
+            return;
+        }
+
+        String id = feed.getId(position);
+        EngagementCache.Counts counts = engagementCache.getCounts(id);
+        holder.row.setEngagement(engagementCache.isLiked(id), counts != null ? counts.likes : -1, counts != null ? counts.comments : -1);
     }
 
     @Override
     public int getItemCount() {
-        return postArrayList.size();
+        return feed.size();
     }
 
     public static class ViewHolder extends RecyclerView.ViewHolder {
 
-        final RecyclerRowBinding binding;
+        final PostRowView row;
+
+        // Times the image of the row from the bind until it is shown
+        final ImageTimer imageTimer = new ImageTimer();
+
+        public ViewHolder(PostRowView row) {
+            super(row);
+            this.row = row;
+        }
+    }
+
+    // Callback of the image request of a row, reused for every bind of the row so it does not allocate
+    static class ImageTimer implements Callback {
+
+        long startNanos;
+
+        @Override
+        public void onSuccess() {
+            PerfMetrics.record(PerfMetrics.IMAGE_DISPLAY, startNanos);
+        }
 
-        public ViewHolder(RecyclerRowBinding binding) {
-            super(binding.getRoot());
-            this.binding = binding;
+        @Override
+        public void onError(Exception e) {
         }
     }
 }
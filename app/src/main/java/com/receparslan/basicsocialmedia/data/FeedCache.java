@@ -0,0 +1,136 @@
+package com.receparslan.basicsocialmedia.data;
+
+import android.content.ContentValues;
+import android.content.Context;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+
+import com.receparslan.basicsocialmedia.model.AuthorTable;
+import com.receparslan.basicsocialmedia.model.ImageVariant;
+import com.receparslan.basicsocialmedia.model.Post;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * On-device copy of the most recent posts of the feed.
+ * <p>
+ * The feed is rendered from this copy on launch, before the first snapshot arrives, and the copy
+ * is replaced whenever the live head of the feed changes. It is the home timeline of the signed in
+ * user, so it is cleared when the user signs out. The posts are also saved with the UID of that
+ * user and only loaded for the same user, so a save that lands after the sign out, or a clear that
+ * never ran, does not show one user's timeline to the next.
+ */
+public class FeedCache {
+
+    // Number of posts kept on the device
+    public static final int MAX_POSTS = 50;
+
+    private final LocalDatabase database;
+
+    public FeedCache(Context context) {
+        this.database = LocalDatabase.get(context);
+    }
+
+    // Load the cached posts of the timeline of the user in feed order
+    public List<Post> load(String uid) {
+        ArrayList<Post> posts = new ArrayList<>();
+        try (Cursor cursor = database.getReadableDatabase().query(LocalDatabase.TABLE_FEED, null, "uid = ?", new String[]{uid}, null, null, "position")) {
+            int id = cursor.getColumnIndexOrThrow("post_id");
+            int authorUid = cursor.getColumnIndexOrThrow("author_uid");
+            int displayName = cursor.getColumnIndexOrThrow("display_name");
+            int email = cursor.getColumnIndexOrThrow("email");
+            int comment = cursor.getColumnIndexOrThrow("comment");
+            int imageUrl = cursor.getColumnIndexOrThrow("image_url");
+            int images = cursor.getColumnIndexOrThrow("images");
+            int date = cursor.getColumnIndexOrThrow("date");
+
+            while (cursor.moveToNext()) {
+                posts.add(new Post(
+                        cursor.getString(id),
+                        AuthorTable.get().intern(cursor.getString(authorUid), cursor.getString(email), cursor.getString(displayName)),
+                        cursor.getString(comment),
+                        cursor.getString(imageUrl),
+                        toImages(cursor.getString(images)),
+                        cursor.getLong(date)
+                ));
+            }
+        }
+        return posts;
+    }
+
+    // Replace the cached posts with the first posts of the timeline of the user
+    public void save(String uid, List<Post> posts) {
+        SQLiteDatabase db = database.getWritableDatabase();
+        db.beginTransaction();
+        try {
+            db.delete(LocalDatabase.TABLE_FEED, null, null);
+
+            ContentValues values = new ContentValues();
+            for (int i = 0; i < Math.min(posts.size(), MAX_POSTS); i++) {
+                Post post = posts.get(i);
+                values.clear();
+                values.put("position", i);
+                values.put("post_id", post.getId());
+                values.put("uid", uid);
+                values.put("author_uid", post.getAuthor().getUid());
+                values.put("display_name", post.getDisplayName());
+                values.put("email", post.getEmail());
+                values.put("comment", post.getComment());
+                values.put("image_url", post.getImageUrl());
+                values.put("images", toJson(post.getImages()));
+                values.put("date", post.getDate());
+                db.insertWithOnConflict(LocalDatabase.TABLE_FEED, null, values, SQLiteDatabase.CONFLICT_REPLACE);
+            }
+
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+    }
+
+    // Forget the cached posts, the feed of the next user is another timeline
+    public void clear() {
+        database.getWritableDatabase().delete(LocalDatabase.TABLE_FEED, null, null);
+    }
+
+    // Image variants as JSON, shared with the PostArchive
+    static String toJson(List<ImageVariant> images) {
+        JSONArray array = new JSONArray();
+        try {
+            for (ImageVariant image : images) {
+                array.put(new JSONObject()
+                        .put("path", image.getPath())
+                        .put("url", image.getUrl())
+                        .put("image", image.getImage())
+                        .put("width", image.getWidth())
+                        .put("height", image.getHeight())
+                        .put("blurHash", image.getBlurHash()));
+            }
+        } catch (JSONException e) {
+            return null;
+        }
+        return array.toString();
+    }
+
+    static List<ImageVariant> toImages(String json) {
+        ArrayList<ImageVariant> images = new ArrayList<>();
+        if (json == null)
+            return images;
+
+        try {
+            JSONArray array = new JSONArray(json);
+            for (int i = 0; i < array.length(); i++) {
+                JSONObject image = array.getJSONObject(i);
+                images.add(new ImageVariant(image.optString("path", null), image.optString("url", null), image.optInt("image"), image.optInt("width"), image.optInt("height"), image.optString("blurHash", null)));
+            }
+        } catch (JSONException e) {
+            images.clear();
+        }
+        return images;
+    }
+}
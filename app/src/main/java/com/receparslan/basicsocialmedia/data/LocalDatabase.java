@@ -0,0 +1,155 @@
+package com.receparslan.basicsocialmedia.data;
+
+import android.content.Context;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteOpenHelper;
+
+import androidx.annotation.VisibleForTesting;
+
+/**
+ * On-device database of the app.
+ */
+public class LocalDatabase extends SQLiteOpenHelper {
+
+    private static final String NAME = "basic_social_media.db";
+    private static final int VERSION = 8;
+
+    // Posts waiting to be uploaded
+    public static final String TABLE_OUTBOX = "outbox";
+
+    // Upload sessions of the original images of the queued posts
+    public static final String TABLE_OUTBOX_SESSIONS = "outbox_sessions";
+
+    // Most recent posts of the feed, with the UID of the user whose timeline they are
+    public static final String TABLE_FEED = "feed_posts";
+
+    // Download URLs of the storage paths of the images
+    public static final String TABLE_IMAGE_URLS = "image_urls";
+
+    // Every post received by the feed, searched on the device
+    public static final String TABLE_ARCHIVE = "archived_posts";
+
+    // Posts liked by the users who signed in on the device
+    public static final String TABLE_LIKES = "liked_posts";
+
+    private static volatile LocalDatabase instance;
+
+    private LocalDatabase(Context context) {
+        this(context, NAME);
+    }
+
+    // Database with another file name, for the migration tests
+    @VisibleForTesting
+    LocalDatabase(Context context, String name) {
+        super(context.getApplicationContext(), name, null, VERSION);
+    }
+
+    public static LocalDatabase get(Context context) {
+        if (instance == null) {
+            synchronized (LocalDatabase.class) {
+                if (instance == null)
+                    instance = new LocalDatabase(context);
+            }
+        }
+        return instance;
+    }
+
+    @Override
+    public void onCreate(SQLiteDatabase db) {
+        db.execSQL("CREATE TABLE " + TABLE_OUTBOX + " ("
+                + "post_id TEXT PRIMARY KEY, "
+                + "author_uid TEXT, "
+                + "display_name TEXT, "
+                + "email TEXT, "
+                + "comment TEXT NOT NULL, "
+                + "image_file TEXT NOT NULL, "
+                + "image_count INTEGER NOT NULL DEFAULT 1, "
+                + "session_uri TEXT, "
+                + "created_at INTEGER NOT NULL, "
+                + "failed INTEGER NOT NULL DEFAULT 0)");
+        createFeed(db);
+        createImages(db);
+        createArchive(db);
+        createLikes(db);
+    }
+
+    @Override
+    public void onUpgrade(SQLiteDatabase db, int oldVersion, int newVersion) {
+        if (oldVersion < 2)
+            createFeed(db);
+        if (oldVersion < 3)
+            db.execSQL("ALTER TABLE " + TABLE_OUTBOX + " ADD COLUMN failed INTEGER NOT NULL DEFAULT 0");
+        if (oldVersion < 4) {
+            db.execSQL("ALTER TABLE " + TABLE_OUTBOX + " ADD COLUMN author_uid TEXT");
+
+            // A feed created by this upgrade already has the column
+            if (oldVersion >= 2)
+                db.execSQL("ALTER TABLE " + TABLE_FEED + " ADD COLUMN author_uid TEXT");
+        }
+        if (oldVersion < 5) {
+            db.execSQL("ALTER TABLE " + TABLE_OUTBOX + " ADD COLUMN image_count INTEGER NOT NULL DEFAULT 1");
+            createImages(db);
+
+            // The session of a queued post was the session of its only image
+            db.execSQL("INSERT INTO " + TABLE_OUTBOX_SESSIONS + " SELECT post_id, 0, session_uri FROM " + TABLE_OUTBOX + " WHERE session_uri IS NOT NULL");
+        }
+        if (oldVersion < 6) {
+            createArchive(db);
+
+            // Start the archive with the cached posts
+            String columns = "post_id, author_uid, display_name, email, comment, image_url, images, date";
+            db.execSQL("INSERT INTO " + TABLE_ARCHIVE + " (" + columns + ") SELECT " + columns + " FROM " + TABLE_FEED);
+        }
+        if (oldVersion < 7)
+            createLikes(db);
+
+        // A feed created by an earlier step already has the column
+        if (oldVersion < 8 && oldVersion >= 2)
+            db.execSQL("ALTER TABLE " + TABLE_FEED + " ADD COLUMN uid TEXT");
+    }
+
+    private static void createFeed(SQLiteDatabase db) {
+        db.execSQL("CREATE TABLE " + TABLE_FEED + " ("
+                + "position INTEGER NOT NULL, "
+                + "post_id TEXT PRIMARY KEY, "
+                + "uid TEXT, "
+                + "author_uid TEXT, "
+                + "display_name TEXT, "
+                + "email TEXT, "
+                + "comment TEXT, "
+                + "image_url TEXT, "
+                + "images TEXT, "
+                + "date INTEGER NOT NULL)");
+    }
+
+    private static void createImages(SQLiteDatabase db) {
+        db.execSQL("CREATE TABLE " + TABLE_OUTBOX_SESSIONS + " ("
+                + "post_id TEXT NOT NULL, "
+                + "image INTEGER NOT NULL, "
+                + "session_uri TEXT NOT NULL, "
+                + "PRIMARY KEY (post_id, image))");
+        db.execSQL("CREATE TABLE " + TABLE_IMAGE_URLS + " ("
+                + "path TEXT PRIMARY KEY, "
+                + "url TEXT NOT NULL)");
+    }
+
+    private static void createArchive(SQLiteDatabase db) {
+        db.execSQL("CREATE TABLE " + TABLE_ARCHIVE + " ("
+                + "post_id TEXT PRIMARY KEY, "
+                + "author_uid TEXT, "
+                + "display_name TEXT, "
+                + "email TEXT, "
+                + "comment TEXT, "
+                + "image_url TEXT, "
+                + "images TEXT, "
+                + "date INTEGER NOT NULL)");
+        db.execSQL("CREATE INDEX " + TABLE_ARCHIVE + "_date ON " + TABLE_ARCHIVE + " (date)");
+    }
+
+    private static void createLikes(SQLiteDatabase db) {
+        db.execSQL("CREATE TABLE " + TABLE_LIKES + " ("
+                + "uid TEXT NOT NULL, "
+                + "post_id TEXT NOT NULL, "
+                + "PRIMARY KEY (uid, post_id))");
+    }
+}
@@ -0,0 +1,142 @@
+package com.receparslan.basicsocialmedia.data;
+
+import android.content.ContentValues;
+import android.content.Context;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+
+import com.receparslan.basicsocialmedia.model.AuthorTable;
+import com.receparslan.basicsocialmedia.model.Post;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+
+/**
+ * On-device copy of every post the feed has received, up to {@link #MAX_POSTS} of the newest.
+ * <p>
+ * Unlike the {@link FeedCache} it is never replaced, posts are added and updated as they arrive
+ * and removed when their documents are, so the posts can be searched without reading them again
+ * from Firestore. Only the matched posts are loaded back as {@link Post}s. It holds the home
+ * timeline of the signed in user, so it is cleared when the user signs out.
+ */
+public class PostArchive {
+
+    // Number of posts kept on the device
+    public static final int MAX_POSTS = 50_000;
+
+    // Columns the search index is built from
+    public interface Visitor {
+        void visit(String id, String displayName, String comment, long date);
+    }
+
+    private final LocalDatabase database;
+
+    public PostArchive(Context context) {
+        this.database = LocalDatabase.get(context);
+    }
+
+    // Add the posts or replace their older versions
+    public void putAll(List<Post> posts) {
+        SQLiteDatabase db = database.getWritableDatabase();
+        db.beginTransaction();
+        try {
+            ContentValues values = new ContentValues();
+            for (Post post : posts) {
+                values.clear();
+                values.put("post_id", post.getId());
+                values.put("author_uid", post.getAuthor().getUid());
+                values.put("display_name", post.getDisplayName());
+                values.put("email", post.getEmail());
+                values.put("comment", post.getComment());
+                values.put("image_url", post.getImageUrl());
+                values.put("images", FeedCache.toJson(post.getImages()));
+                values.put("date", post.getDate());
+                db.insertWithOnConflict(LocalDatabase.TABLE_ARCHIVE, null, values, SQLiteDatabase.CONFLICT_REPLACE);
+            }
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+    }
+
+    // Forget every post, the next user receives another timeline
+    public void clear() {
+        database.getWritableDatabase().delete(LocalDatabase.TABLE_ARCHIVE, null, null);
+    }
+
+    public void remove(String id) {
+        database.getWritableDatabase().delete(LocalDatabase.TABLE_ARCHIVE, "post_id = ?", new String[]{id});
+    }
+
+    // Delete the posts after the newest ones, returns the IDs of the deleted posts
+    public List<String> trim(int count) {
+        ArrayList<String> ids = new ArrayList<>();
+        SQLiteDatabase db = database.getWritableDatabase();
+        try (Cursor cursor = db.rawQuery("SELECT post_id FROM " + LocalDatabase.TABLE_ARCHIVE + " ORDER BY date DESC LIMIT -1 OFFSET ?", new String[]{String.valueOf(count)})) {
+            while (cursor.moveToNext())
+                ids.add(cursor.getString(0));
+        }
+
+        db.beginTransaction();
+        try {
+            for (String id : ids)
+                db.delete(LocalDatabase.TABLE_ARCHIVE, "post_id = ?", new String[]{id});
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+        return ids;
+    }
+
+    // Read the searched columns of every post
+    public void readAll(Visitor visitor) {
+        try (Cursor cursor = database.getReadableDatabase().query(LocalDatabase.TABLE_ARCHIVE, new String[]{"post_id", "display_name", "comment", "date"}, null, null, null, null, null)) {
+            while (cursor.moveToNext())
+                visitor.visit(cursor.getString(0), cursor.getString(1), cursor.getString(2), cursor.getLong(3));
+        }
+    }
+
+    // Load the posts in the order of the IDs, IDs that are not archived are skipped
+    public List<Post> load(List<String> ids) {
+        if (ids.isEmpty())
+            return Collections.emptyList();
+
+        StringBuilder selection = new StringBuilder("post_id IN (");
+        for (int i = 0; i < ids.size(); i++)
+            selection.append(i == 0 ? "?" : ", ?");
+        selection.append(')');
+
+        HashMap<String, Post> posts = new HashMap<>();
+        try (Cursor cursor = database.getReadableDatabase().query(LocalDatabase.TABLE_ARCHIVE, null, selection.toString(), ids.toArray(new String[0]), null, null, null)) {
+            int id = cursor.getColumnIndexOrThrow("post_id");
+            int authorUid = cursor.getColumnIndexOrThrow("author_uid");
+            int displayName = cursor.getColumnIndexOrThrow("display_name");
+            int email = cursor.getColumnIndexOrThrow("email");
+            int comment = cursor.getColumnIndexOrThrow("comment");
+            int imageUrl = cursor.getColumnIndexOrThrow("image_url");
+            int images = cursor.getColumnIndexOrThrow("images");
+            int date = cursor.getColumnIndexOrThrow("date");
+
+            while (cursor.moveToNext()) {
+                posts.put(cursor.getString(id), new Post(
+                        cursor.getString(id),
+                        AuthorTable.get().intern(cursor.getString(authorUid), cursor.getString(email), cursor.getString(displayName)),
+                        cursor.getString(comment),
+                        cursor.getString(imageUrl),
+                        FeedCache.toImages(cursor.getString(images)),
+                        cursor.getLong(date)
+                ));
+            }
+        }
+
+        ArrayList<Post> ordered = new ArrayList<>(posts.size());
+        for (String postId : ids) {
+            Post post = posts.get(postId);
+            if (post != null)
+                ordered.add(post);
+        }
+        return ordered;
+    }
+}
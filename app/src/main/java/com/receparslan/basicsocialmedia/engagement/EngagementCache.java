@@ -0,0 +1,318 @@
+package com.receparslan.basicsocialmedia.engagement;
+
+import android.content.ContentValues;
+import android.content.Context;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
+import android.util.LruCache;
+
+import com.google.firebase.auth.FirebaseAuth;
+import com.google.firebase.auth.FirebaseUser;
+import com.google.firebase.firestore.AggregateSource;
+import com.google.firebase.firestore.DocumentReference;
+import com.google.firebase.firestore.FirebaseFirestore;
+import com.google.firebase.firestore.SetOptions;
+import com.receparslan.basicsocialmedia.data.LocalDatabase;
+import com.receparslan.basicsocialmedia.util.AppExecutors;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+
+/**
+ * Like and comment counts of the posts on the screen, and the likes of the signed in user.
+ * <p>
+ * The totals of a post are read once with the aggregation of {@link PostCounters} and kept for a
+ * minute, so scrolling back and forth does not read them again. Taps on like are applied to the
+ * shown count at once but written only after a second without taps, and only the net change of
+ * each post is written, so a burst of taps costs at most one transaction.
+ * <p>
+ * The like document of the user decides whether the post is liked. The transaction writes the shard
+ * only if it changes that document, so a like from another device or from before a reinstall is
+ * not counted twice. The posts the user liked are also kept in the database, so they are shown at
+ * once, and they are corrected from the like document whenever the totals of a post are read.
+ * <p>
+ * Confined to the main thread.
+ */
+public final class EngagementCache {
+
+    // Listener of changed counts, a null post ID means every post
+    public interface Listener {
+        void onEngagementChanged(String postId);
+    }
+
+    // Totals of a post when they were read, plus the likes not written yet
+    public static final class Counts {
+
+        public final long likes;
+        public final long comments;
+        final long fetchedAt;
+
+        Counts(long likes, long comments, long fetchedAt) {
+            this.likes = likes;
+            this.comments = comments;
+            this.fetchedAt = fetchedAt;
+        }
+    }
+
+    // Number of posts whose counts are kept
+    private static final int MEMORY_SIZE = 256;
+
+    // Age after which the counts of a post are read again
+    private static final long MAX_AGE_MILLIS = 60_000;
+
+    // Time without taps after which the likes are written
+    private static final long FLUSH_DELAY_MILLIS = 1_000;
+
+    private static volatile EngagementCache instance;
+
+    private final LocalDatabase database;
+    private final Handler handler = new Handler(Looper.getMainLooper());
+    private final Runnable flush = this::flush;
+
+    private final LruCache<String, Counts> counts = new LruCache<>(MEMORY_SIZE);
+    private final HashSet<String> loading = new HashSet<>();
+    private final ArrayList<Listener> listeners = new ArrayList<>();
+
+    // Posts liked by the user, the user they are loaded for and whether they are loaded
+    private final HashSet<String> liked = new HashSet<>();
+    private String uid;
+    private boolean likesLoaded;
+
+    // Net change of the likes of each post that is not written yet, and that is being written
+    private final HashMap<String, Integer> pendingLikes = new HashMap<>();
+    private final HashMap<String, Integer> writingLikes = new HashMap<>();
+
+    private EngagementCache(Context context) {
+        database = LocalDatabase.get(context);
+    }
+
+    public static EngagementCache get(Context context) {
+        if (instance == null) {
+            synchronized (EngagementCache.class) {
+                if (instance == null)
+                    instance = new EngagementCache(context.getApplicationContext());
+            }
+        }
+        return instance;
+    }
+
+    public void addListener(Listener listener) {
+        listeners.add(listener);
+    }
+
+    public void removeListener(Listener listener) {
+        listeners.remove(listener);
+    }
+
+    // Get the counts of the post, null until they are read, reads them if they are missing or old
+    public Counts getCounts(String postId) {
+        Counts cached = counts.get(postId);
+        if ((cached == null || SystemClock.elapsedRealtime() - cached.fetchedAt > MAX_AGE_MILLIS) && !pendingLikes.containsKey(postId) && !writingLikes.containsKey(postId))
+            load(postId);
+        return cached;
+    }
+
+    public boolean isLiked(String postId) {
+        checkUser();
+        return liked.contains(postId);
+    }
+
+    // Like the post or take the like back, the change is written after the taps stop
+    public void toggleLike(String postId) {
+        checkUser();
+        if (!likesLoaded)
+            return; // Whether the post is liked is not known yet
+
+        int delta = liked.add(postId) ? 1 : -1;
+        if (delta < 0)
+            liked.remove(postId);
+
+        pendingLikes.merge(postId, delta, Integer::sum);
+        adjust(postId, delta);
+
+        handler.removeCallbacks(flush);
+        handler.postDelayed(flush, FLUSH_DELAY_MILLIS);
+    }
+
+    // Write the net change of the likes of every tapped post
+    public void flush() {
+        handler.removeCallbacks(flush);
+        if (pendingLikes.isEmpty())
+            return;
+
+        FirebaseFirestore firebaseFirestore = FirebaseFirestore.getInstance();
+        String writer = uid;
+        HashSet<String> added = new HashSet<>();
+        HashSet<String> removed = new HashSet<>();
+        for (Map.Entry<String, Integer> entry : pendingLikes.entrySet()) {
+            String postId = entry.getKey();
+            int delta = entry.getValue();
+            if (delta == 0)
+                continue; // The taps cancelled each other out
+
+            // The taps toggle the like, so the net change is a single like or unlike
+            (delta > 0 ? added : removed).add(postId);
+            writingLikes.merge(postId, delta, Integer::sum);
+            DocumentReference like = PostCounters.like(firebaseFirestore, postId, writer);
+            DocumentReference shard = PostCounters.randomShard(firebaseFirestore, postId);
+            firebaseFirestore.runTransaction(transaction -> {
+                if (transaction.get(like).exists() == (delta > 0))
+                    return false; // Already liked or not liked, from another device
+
+                if (delta > 0)
+                    transaction.set(like, PostCounters.likeData(writer));
+                else
+                    transaction.delete(like);
+                transaction.set(shard, PostCounters.increment(PostCounters.FIELD_LIKES, delta), SetOptions.merge());
+                return true;
+            }).addOnCompleteListener(task -> {
+                if (writingLikes.merge(postId, -delta, Integer::sum) == 0)
+                    writingLikes.remove(postId);
+                if (!task.isSuccessful() && writer.equals(uid))
+                    revert(postId, delta);
+                else if (task.isSuccessful() && !task.getResult() && writer.equals(uid))
+                    adjust(postId, -delta); // The like was already in this state, the count has not changed
+                else if (counts.get(postId) == null)
+                    notifyChanged(postId); // The totals can be read now that they include the write
+            });
+        }
+        pendingLikes.clear();
+        saveLikes(uid, added, removed);
+    }
+
+    // Undo a change of the likes that could not be written, the taps made since then still apply
+    private void revert(String postId, int delta) {
+        boolean like = (liked.contains(postId) ? 1 : 0) - delta == 1;
+        if (like)
+            liked.add(postId);
+        else
+            liked.remove(postId);
+        adjust(postId, -delta);
+
+        HashSet<String> post = new HashSet<>();
+        post.add(postId);
+        saveLikes(uid, like ? post : new HashSet<>(), like ? new HashSet<>() : post);
+    }
+
+    // Change the shown likes of the post without reading them again
+    private void adjust(String postId, int delta) {
+        Counts cached = counts.get(postId);
+        if (cached != null)
+            counts.put(postId, new Counts(Math.max(0, cached.likes + delta), cached.comments, cached.fetchedAt));
+        notifyChanged(postId);
+    }
+
+    // Read the totals of the post from the server, and whether the user liked it
+    private void load(String postId) {
+        if (!loading.add(postId))
+            return;
+
+        if (likesLoaded)
+            loadLike(postId, uid);
+
+        PostCounters.totals(FirebaseFirestore.getInstance(), postId).get(AggregateSource.SERVER).addOnCompleteListener(task -> {
+            loading.remove(postId);
+            if (!task.isSuccessful()) {
+                // Keep the old counts, they are read again on the next bind
+                return;
+            }
+
+            // Add the likes of the user that are not written yet
+            long likes = PostCounters.likes(task.getResult()) + pendingLikes.getOrDefault(postId, 0) + writingLikes.getOrDefault(postId, 0);
+            counts.put(postId, new Counts(Math.max(0, likes), PostCounters.comments(task.getResult()), SystemClock.elapsedRealtime()));
+            notifyChanged(postId);
+        });
+    }
+
+    // Correct the saved like of the post with the like document, unless the user is changing it
+    private void loadLike(String postId, String uid) {
+        PostCounters.like(FirebaseFirestore.getInstance(), postId, uid).get().addOnSuccessListener(documentSnapshot -> {
+            if (!uid.equals(this.uid) || pendingLikes.containsKey(postId) || writingLikes.containsKey(postId))
+                return;
+
+            boolean like = documentSnapshot.exists();
+            if (like == liked.contains(postId))
+                return;
+
+            HashSet<String> post = new HashSet<>();
+            post.add(postId);
+            if (like)
+                liked.add(postId);
+            else
+                liked.remove(postId);
+            saveLikes(uid, like ? post : new HashSet<>(), like ? new HashSet<>() : post);
+            notifyChanged(postId);
+        });
+    }
+
+    // Load the likes of the user when another user signs in
+    private void checkUser() {
+        FirebaseUser user = FirebaseAuth.getInstance().getCurrentUser();
+        String current = user != null ? user.getUid() : null;
+        if (current == null ? uid == null : current.equals(uid))
+            return;
+
+        // The likes of the previous user are written for that user
+        flush();
+        uid = current;
+        liked.clear();
+        likesLoaded = false;
+        if (current == null)
+            return;
+
+        AppExecutors.disk().execute(() -> {
+            HashSet<String> saved = new HashSet<>();
+            try (Cursor cursor = database.getReadableDatabase().query(LocalDatabase.TABLE_LIKES, new String[]{"post_id"}, "uid = ?", new String[]{current}, null, null, null)) {
+                while (cursor.moveToNext())
+                    saved.add(cursor.getString(0));
+            }
+
+            AppExecutors.mainThread().execute(() -> {
+                if (!current.equals(uid))
+                    return;
+
+                liked.addAll(saved);
+                likesLoaded = true;
+                notifyChanged(null);
+
+                // The posts whose totals are already read are corrected now
+                for (String postId : counts.snapshot().keySet())
+                    loadLike(postId, current);
+            });
+        });
+    }
+
+    private void saveLikes(String uid, HashSet<String> added, HashSet<String> removed) {
+        if (uid == null || added.isEmpty() && removed.isEmpty())
+            return;
+
+        AppExecutors.disk().execute(() -> {
+            SQLiteDatabase db = database.getWritableDatabase();
+            db.beginTransaction();
+            try {
+                ContentValues values = new ContentValues();
+                for (String postId : added) {
+                    values.clear();
+                    values.put("uid", uid);
+                    values.put("post_id", postId);
+                    db.insertWithOnConflict(LocalDatabase.TABLE_LIKES, null, values, SQLiteDatabase.CONFLICT_IGNORE);
+                }
+                for (String postId : removed)
+                    db.delete(LocalDatabase.TABLE_LIKES, "uid = ? AND post_id = ?", new String[]{uid, postId});
+                db.setTransactionSuccessful();
+            } finally {
+                db.endTransaction();
+            }
+        });
+    }
+
+    private void notifyChanged(String postId) {
+        for (Listener listener : new ArrayList<>(listeners))
+            listener.onEngagementChanged(postId);
+    }
+}
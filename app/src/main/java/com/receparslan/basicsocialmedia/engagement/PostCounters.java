@@ -0,0 +1,102 @@
+package com.receparslan.basicsocialmedia.engagement;
+
+import com.google.firebase.firestore.AggregateField;
+import com.google.firebase.firestore.AggregateQuery;
+import com.google.firebase.firestore.AggregateQuerySnapshot;
+import com.google.firebase.firestore.CollectionReference;
+import com.google.firebase.firestore.DocumentReference;
+import com.google.firebase.firestore.FieldValue;
+import com.google.firebase.firestore.FirebaseFirestore;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Like and comment counts of a post, kept in sharded counters in {@code Posts/<id>/counters}.
+ * <p>
+ * A document takes about one write per second, so a single counter field on a popular post would
+ * fail under load. Every change is instead an increment of one of {@link #SHARDS} shard documents
+ * picked at random, and the count is the sum of the shards, read with one aggregation query that
+ * returns both totals without downloading the shards.
+ * <p>
+ * Who liked a post is kept in {@code Posts/<id>/likes/<uid>}. A like changes its document and a
+ * shard in one transaction, so a user counts once however many devices it likes the post from.
+ */
+public final class PostCounters {
+
+    public static final String COLLECTION = "counters";
+    public static final String FIELD_LIKES = "likes";
+    public static final String FIELD_COMMENTS = "comments";
+
+    public static final String LIKES = "likes";
+    public static final String FIELD_UID = "uid";
+    public static final String FIELD_DATE = "date";
+
+    // Number of shards of each post, writes scale with it
+    public static final int SHARDS = 10;
+
+    private PostCounters() {
+    }
+
+    public static CollectionReference shards(FirebaseFirestore firebaseFirestore, String postId) {
+        return firebaseFirestore.collection("Posts").document(postId).collection(COLLECTION);
+    }
+
+    public static CollectionReference likes(FirebaseFirestore firebaseFirestore, String postId) {
+        return firebaseFirestore.collection("Posts").document(postId).collection(LIKES);
+    }
+
+    // Like of the post by the user, named by the UID so a user can like a post only once
+    public static DocumentReference like(FirebaseFirestore firebaseFirestore, String postId, String uid) {
+        return likes(firebaseFirestore, postId).document(uid);
+    }
+
+    // Fields of a like, the UID is also a field so the likes of a user can be queried
+    public static Map<String, Object> likeData(String uid) {
+        HashMap<String, Object> like = new HashMap<>();
+        like.put(FIELD_UID, uid);
+        like.put(FIELD_DATE, FieldValue.serverTimestamp());
+        return like;
+    }
+
+    // Every shard of the post, shards are named by their index
+    public static List<DocumentReference> shardReferences(FirebaseFirestore firebaseFirestore, String postId) {
+        CollectionReference shards = shards(firebaseFirestore, postId);
+        ArrayList<DocumentReference> references = new ArrayList<>(SHARDS);
+        for (int i = 0; i < SHARDS; i++)
+            references.add(shards.document(String.valueOf(i)));
+        return references;
+    }
+
+    // A shard picked at random, so concurrent writers spread over the shards
+    public static DocumentReference randomShard(FirebaseFirestore firebaseFirestore, String postId) {
+        return shards(firebaseFirestore, postId).document(String.valueOf(ThreadLocalRandom.current().nextInt(SHARDS)));
+    }
+
+    // Change of a counter, to be merged into a shard
+    public static Map<String, Object> increment(String field, long delta) {
+        return Collections.singletonMap(field, FieldValue.increment(delta));
+    }
+
+    // Query of the totals of the post
+    public static AggregateQuery totals(FirebaseFirestore firebaseFirestore, String postId) {
+        return shards(firebaseFirestore, postId).aggregate(AggregateField.sum(FIELD_LIKES), AggregateField.sum(FIELD_COMMENTS));
+    }
+
+    public static long likes(AggregateQuerySnapshot snapshot) {
+        return toLong(snapshot.get(AggregateField.sum(FIELD_LIKES)));
+    }
+
+    public static long comments(AggregateQuerySnapshot snapshot) {
+        return toLong(snapshot.get(AggregateField.sum(FIELD_COMMENTS)));
+    }
+
+    // A sum is null when no shard has the field yet
+    private static long toLong(Object value) {
+        return value instanceof Number ? ((Number) value).longValue() : 0L;
+    }
+}
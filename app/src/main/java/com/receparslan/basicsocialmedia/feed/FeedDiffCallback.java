@@ -0,0 +1,40 @@
+package com.receparslan.basicsocialmedia.feed;
+
+import androidx.recyclerview.widget.DiffUtil;
+
+import com.receparslan.basicsocialmedia.model.CompactFeed;
+
+/**
+ * Compares two snapshots of the feed by their packed document IDs and fields, so diffing even a
+ * very long feed allocates nothing per post.
+ */
+public class FeedDiffCallback extends DiffUtil.Callback {
+
+    private final CompactFeed oldFeed;
+    private final CompactFeed newFeed;
+
+    public FeedDiffCallback(CompactFeed oldFeed, CompactFeed newFeed) {
+        this.oldFeed = oldFeed;
+        this.newFeed = newFeed;
+    }
+
+    @Override
+    public int getOldListSize() {
+        return oldFeed.size();
+    }
+
+    @Override
+    public int getNewListSize() {
+        return newFeed.size();
+    }
+
+    @Override
+    public boolean areItemsTheSame(int oldItemPosition, int newItemPosition) {
+        return oldFeed.sameId(oldItemPosition, newFeed, newItemPosition);
+    }
+
+    @Override
+    public boolean areContentsTheSame(int oldItemPosition, int newItemPosition) {
+        return oldFeed.sameContents(oldItemPosition, newFeed, newItemPosition);
+    }
+}
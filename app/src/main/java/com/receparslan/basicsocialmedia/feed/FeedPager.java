@@ -0,0 +1,439 @@
+package com.receparslan.basicsocialmedia.feed;
+
+import androidx.recyclerview.widget.DiffUtil;
+
+import com.google.firebase.firestore.DocumentChange;
+import com.google.firebase.firestore.DocumentSnapshot;
+import com.google.firebase.firestore.FieldPath;
+import com.google.firebase.firestore.FirebaseFirestore;
+import com.google.firebase.firestore.ListenerRegistration;
+import com.google.firebase.firestore.Query;
+import com.receparslan.basicsocialmedia.account.UserStats;
+import com.receparslan.basicsocialmedia.data.FeedCache;
+import com.receparslan.basicsocialmedia.follow.HomeTimeline;
+import com.receparslan.basicsocialmedia.model.CompactFeed;
+import com.receparslan.basicsocialmedia.model.Post;
+import com.receparslan.basicsocialmedia.outbox.PostOutbox;
+import com.receparslan.basicsocialmedia.perf.PerfMetrics;
+import com.receparslan.basicsocialmedia.search.PostSearch;
+import com.receparslan.basicsocialmedia.util.AppExecutors;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.function.Consumer;
+
+/**
+ * Loads the feed page by page with cursors instead of downloading the whole collection.
+ * <p>
+ * The feed of the main screen is the {@link HomeTimeline} of the signed in user, so its reads grow
+ * with the accounts the user follows and not with every post written by anyone. It pages through
+ * at most {@link HomeTimeline#MAX_POSTS} posts. While the user follows nobody the timeline only has
+ * their own posts, so it shows every post instead until the user follows someone, checked when the
+ * pager starts or resumes.
+ * <p>
+ * The first page is fetched once and its last document becomes the anchor of the live head, which
+ * listens to every post from the newest one down to the anchor. Older pages are loaded with
+ * {@code startAfter} the last loaded document and are dropped again when they are far below the
+ * visible posts. Posts are ordered by date and then by document ID so that cursors never skip or
+ * repeat posts with the same date.
+ * <p>
+ * The most recent posts are also kept in a {@link FeedCache}, so a launch renders them at once and
+ * then reconciles them with the first page and the live changes. Posts of the {@link PostOutbox}
+ * are shown on top as pending posts until their documents arrive.
+ * <p>
+ * Every received page and changed post is also handed to the {@link PostSearch}, which keeps them
+ * searchable on the device, and removed documents are removed from it.
+ * <p>
+ * A pager created for an author only pages through the posts of that author, with the composite
+ * index on the author UID and the date. It has no cache and no pending posts. A pager created for
+ * exploring pages through every post, for finding accounts to follow.
+ * <p>
+ * Snapshots are received and mapped to posts on the feed executor, which also owns all the state
+ * of the pager. Each finished batch is turned into a {@link CompactFeed} there as well, diffed
+ * against the previous one and handed to the listener on the main thread in one step.
+ * <p>
+ * While nothing shows the feed the pager can be paused, which only removes the live head listener.
+ * The loaded pages are kept, and resuming listens to the same head again instead of starting over.
+ */
+public class FeedPager {
+
+    // Number of posts in each page
+    public static final int PAGE_SIZE = 20;
+
+    // Number of posts from the end of the feed at which the next page is loaded
+    public static final int PREFETCH_DISTANCE = 5;
+
+    // Number of pages kept after the last visible post
+    private static final int RETAINED_PAGES = 3;
+
+    // Listener to be notified on the main thread when the feed has changed, with the System.nanoTime at which the change arrived
+    public interface Listener {
+        void onFeedChanged(CompactFeed feed, DiffUtil.DiffResult diff, long receivedNanos);
+    }
+
+    private final Listener listener;
+    private final FeedStore feedStore = new FeedStore();
+
+    // UID of the user whose home timeline is shown, null for the timeline of an author and for exploring
+    private final String uid;
+
+    // UID of the author whose posts are shown, null for the home timeline and for exploring
+    private final String authorUid;
+
+    // Null for the timeline of an author and for exploring
+    private final FeedCache feedCache;
+    private final PostOutbox postOutbox;
+
+    private final PostSearch postSearch;
+
+    // Serial executor that owns the state of the pager
+    private final Executor executor = AppExecutors.feed();
+
+    // Initialized on the feed executor on first use, so it is not created before the first frame
+    private FirebaseFirestore firebaseFirestore;
+
+    // Last feed handed to the listener, the next one is diffed against it
+    private CompactFeed publishedFeed = CompactFeed.EMPTY;
+
+    // Registration of the live head listener
+    private ListenerRegistration headRegistration;
+
+    // Query of the live head, kept to listen to it again after a pause
+    private Query headQuery;
+
+    // Whether the live head should not be listened to
+    private boolean paused;
+
+    // Last document of the first page, the live head ends at this document
+    private DocumentSnapshot headAnchor;
+
+    // Whether the live head has delivered its first snapshot
+    private boolean headSynced;
+
+    // Whether the pager is started, results arriving after stop are ignored
+    private boolean active;
+
+    private boolean loading;
+    private boolean endReached;
+
+    // Whether the home timeline shows every post because the user follows nobody
+    private boolean global;
+
+    // Pager of the home timeline of the user
+    public FeedPager(String uid, FeedCache feedCache, PostOutbox postOutbox, PostSearch postSearch, Listener listener) {
+        this(uid, null, feedCache, postOutbox, postSearch, listener);
+    }
+
+    // Pager of the posts of one author
+    public FeedPager(String authorUid, PostSearch postSearch, Listener listener) {
+        this(null, authorUid, null, null, postSearch, listener);
+    }
+
+    // Pager of every post
+    public FeedPager(PostSearch postSearch, Listener listener) {
+        this(null, null, null, null, postSearch, listener);
+    }
+
+    private FeedPager(String uid, String authorUid, FeedCache feedCache, PostOutbox postOutbox, PostSearch postSearch, Listener listener) {
+        this.uid = uid;
+        this.authorUid = authorUid;
+        this.feedCache = feedCache;
+        this.postOutbox = postOutbox;
+        this.postSearch = postSearch;
+        this.listener = listener;
+    }
+
+    // Method to get the cached posts synchronously, so they are shown in the first frame until the first page arrives
+    public CompactFeed restore() {
+        if (feedCache == null)
+            return CompactFeed.EMPTY;
+
+        List<Post> posts = feedCache.load(uid);
+        CompactFeed feed = CompactFeed.of(posts);
+        executor.execute(() -> {
+            // The adapter shows the restored feed, the next feed is diffed against it
+            publishedFeed = feed;
+            if (!active)
+                feedStore.setHead(posts);
+        });
+        return feed;
+    }
+
+    // Method to be called when the outbox changes, shows its posts on top of the feed
+    public void refreshPending() {
+        if (postOutbox == null)
+            return;
+
+        executor.execute(() -> {
+            long received = System.nanoTime();
+            feedStore.setPending(postOutbox.getPendingPosts());
+            publish(received);
+        });
+    }
+
+    // Method to be called when the visible posts change, loads the next page or drops the far pages
+    public void onScrolled(int lastVisiblePosition) {
+        executor.execute(() -> onScrolledOnFeed(lastVisiblePosition));
+    }
+
+    // Method to stop listening to the new posts while the feed is not shown, the loaded posts are kept
+    public void pause() {
+        executor.execute(() -> {
+            paused = true;
+            removeHead();
+        });
+    }
+
+    // Method to listen to the new posts, loads the first page if the pager is not started yet
+    public void resume() {
+        executor.execute(() -> {
+            paused = false;
+            if (!active) {
+                startOnFeed();
+                return;
+            }
+
+            if (headQuery != null && headRegistration == null)
+                listenHead();
+            if (uid != null)
+                checkFollowing();
+        });
+    }
+
+    // Method to stop listening to the new posts
+    public void stop() {
+        executor.execute(() -> {
+            active = false;
+            headQuery = null;
+            removeHead();
+        });
+    }
+
+    private void removeHead() {
+        if (headRegistration != null) {
+            headRegistration.remove();
+            headRegistration = null;
+        }
+    }
+
+    private void startOnFeed() {
+        if (active)
+            return;
+
+        active = true;
+        loading = true;
+        if (uid == null) {
+            loadFirstPage();
+            return;
+        }
+
+        readFollowsNobody(followsNobody -> {
+            if (!active) {
+                loading = false;
+                return;
+            }
+
+            global = followsNobody;
+            loadFirstPage();
+        });
+    }
+
+    // Switch between the home timeline and every post if the user has followed someone or unfollowed everyone meanwhile
+    private void checkFollowing() {
+        readFollowsNobody(followsNobody -> {
+            if (!active || loading || followsNobody == global)
+                return;
+
+            // Start over with the other query, its first page replaces the shown posts
+            removeHead();
+            headQuery = null;
+            headAnchor = null;
+            endReached = false;
+            feedStore.clearPages();
+            active = false;
+            startOnFeed();
+        });
+    }
+
+    // Read whether the user follows nobody, a failed read keeps the home timeline
+    private void readFollowsNobody(Consumer<Boolean> callback) {
+        UserStats.reference(firestore(), uid).get().addOnCompleteListener(executor, task -> {
+            if (!task.isSuccessful() || task.getResult() == null) {
+                callback.accept(false);
+                return;
+            }
+
+            Long following = task.getResult().getLong(UserStats.FIELD_FOLLOWING_COUNT);
+            callback.accept(following == null || following == 0);
+        });
+    }
+
+    private void loadFirstPage() {
+        query().limit(PAGE_SIZE).get().addOnCompleteListener(executor, task -> {
+            loading = false;
+
+            if (!active)
+                return;
+
+            // Let the next start try again
+            if (!task.isSuccessful() || task.getResult() == null) {
+                active = false;
+                return;
+            }
+
+            List<DocumentSnapshot> documents = task.getResult().getDocuments();
+
+            // Show the first page until the live head delivers its first snapshot
+            long received = PerfMetrics.begin(PerfMetrics.FEED_APPLY);
+            List<Post> posts = PostMapper.toPosts(documents);
+            feedStore.setHead(posts);
+            PerfMetrics.end(PerfMetrics.FEED_APPLY, received);
+            publish(received);
+            persist();
+            postSearch.putAll(posts);
+
+            headQuery = query();
+            if (documents.size() < PAGE_SIZE) {
+                // Every post fits in the head, there is nothing to page
+                endReached = true;
+            } else {
+                headAnchor = documents.get(documents.size() - 1);
+                headQuery = headQuery.endAt(headAnchor);
+            }
+
+            if (!paused)
+                listenHead();
+        });
+    }
+
+    // Method to load the page after the last loaded post
+    private void loadMore() {
+        if (!active || loading || endReached || headAnchor == null)
+            return;
+
+        // The home timeline is bounded, older posts are only found in the timelines of their authors
+        if (uid != null && !global && feedStore.size() >= HomeTimeline.MAX_POSTS) {
+            endReached = true;
+            return;
+        }
+
+        DocumentSnapshot cursor = feedStore.getLastCursor();
+        if (cursor == null)
+            cursor = headAnchor;
+
+        loading = true;
+        query().startAfter(cursor).limit(PAGE_SIZE).get().addOnCompleteListener(executor, task -> {
+            loading = false;
+
+            if (!active || !task.isSuccessful() || task.getResult() == null)
+                return;
+
+            List<DocumentSnapshot> documents = task.getResult().getDocuments();
+            if (documents.size() < PAGE_SIZE)
+                endReached = true;
+
+            if (!documents.isEmpty()) {
+                long received = PerfMetrics.begin(PerfMetrics.FEED_APPLY);
+                List<Post> posts = PostMapper.toPosts(documents);
+                feedStore.addPage(new FeedStore.Page(CompactFeed.of(posts), documents.get(documents.size() - 1)));
+                PerfMetrics.end(PerfMetrics.FEED_APPLY, received);
+                publish(received);
+                postSearch.putAll(posts);
+            }
+        });
+    }
+
+    private void onScrolledOnFeed(int lastVisiblePosition) {
+        if (lastVisiblePosition >= feedStore.size() - PREFETCH_DISTANCE) {
+            loadMore();
+        } else if (!loading && feedStore.dropPagesAfter(lastVisiblePosition, RETAINED_PAGES * PAGE_SIZE)) {
+            // The dropped pages are loaded again from the new last cursor
+            endReached = false;
+            publish(System.nanoTime());
+        }
+    }
+
+    // Method to listen to the posts of the live head, its first snapshot replaces the head
+    private void listenHead() {
+        headSynced = false;
+        headRegistration = headQuery.addSnapshotListener(executor, (value, error) -> {
+            // Check if there is an error
+            if (error == null && value != null) {
+                long received = PerfMetrics.begin(PerfMetrics.FEED_APPLY);
+
+                // The first snapshot contains the whole head, it replaces the first page
+                if (!headSynced) {
+                    feedStore.clearHead();
+                    headSynced = true;
+                }
+
+                // Apply only the changed documents and notify the listener in one update
+                boolean changed = feedStore.apply(value.getDocumentChanges());
+                PerfMetrics.end(PerfMetrics.FEED_APPLY, received);
+                if (changed) {
+                    publish(received);
+                    persist();
+                    index(value.getDocumentChanges());
+                }
+            }
+        });
+    }
+
+    // Hand the changed posts of the live head to the search, they are already mapped by the feed store
+    private void index(List<DocumentChange> changes) {
+        ArrayList<Post> changed = new ArrayList<>();
+        for (DocumentChange change : changes) {
+            String id = change.getDocument().getId();
+            Post post = feedStore.get(id);
+            if (change.getType() == DocumentChange.Type.REMOVED)
+                postSearch.remove(id);
+            else if (post != null) // Null if it was removed later in the same snapshot
+                changed.add(post);
+        }
+        postSearch.putAll(changed);
+    }
+
+    private FirebaseFirestore firestore() {
+        if (firebaseFirestore == null)
+            firebaseFirestore = FirebaseFirestore.getInstance();
+        return firebaseFirestore;
+    }
+
+    // The feed query, newest posts first and document ID to break the ties, needs the authorUid and date index for an author
+    private Query query() {
+        // Timeline copies are stored under the ID of their post and have its fields
+        Query query;
+        if (authorUid != null)
+            query = firestore().collection("Posts").whereEqualTo("authorUid", authorUid);
+        else if (uid != null && !global)
+            query = HomeTimeline.reference(firestore(), uid);
+        else
+            query = firestore().collection("Posts");
+
+        return query.orderBy("date", Query.Direction.DESCENDING)
+                .orderBy(FieldPath.documentId(), Query.Direction.DESCENDING);
+    }
+
+    // Save the most recent posts on the device for the next launch
+    private void persist() {
+        if (feedCache == null)
+            return;
+
+        List<Post> recent = feedStore.getRecentPosts(FeedCache.MAX_POSTS);
+        AppExecutors.disk().execute(() -> feedCache.save(uid, recent));
+    }
+
+    // Build the current feed, diff it against the last one and hand both to the listener on the main thread
+    private void publish(long receivedNanos) {
+        long start = PerfMetrics.begin(PerfMetrics.FEED_PUBLISH);
+        CompactFeed feed = feedStore.getFeed();
+
+        // Moves are only caused by edited dates, they are shown as a removal and an insertion
+        DiffUtil.DiffResult diff = DiffUtil.calculateDiff(new FeedDiffCallback(publishedFeed, feed), false);
+        publishedFeed = feed;
+        PerfMetrics.end(PerfMetrics.FEED_PUBLISH, start);
+
+        AppExecutors.mainThread().execute(() -> listener.onFeedChanged(feed, diff, receivedNanos));
+    }
+}
@@ -0,0 +1,195 @@
+package com.receparslan.basicsocialmedia.feed;
+
+import com.google.firebase.firestore.DocumentChange;
+import com.google.firebase.firestore.DocumentSnapshot;
+import com.receparslan.basicsocialmedia.model.CompactFeed;
+import com.receparslan.basicsocialmedia.model.Post;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+
+/**
+ * Ordered, ID-keyed copy of the feed.
+ * <p>
+ * The feed is made of a live head, which is kept up to date by applying snapshot events as deltas
+ * using the old/new indices reported by each {@link DocumentChange}, followed by older pages that
+ * are loaded once and can be dropped again when they are far away from the visible posts. Only the
+ * small live head is kept as {@link Post} objects, the pages are kept as {@link CompactFeed}s so a
+ * long session does not fill the heap with one object graph per post. The pending posts of the
+ * outbox are shown above the live head until their documents arrive.
+ * <p>
+ * Confined to the feed executor, it is not thread-safe.
+ */
+public class FeedStore {
+
+    // Pending posts of the outbox, newest first
+    private final ArrayList<Post> pending = new ArrayList<>();
+
+    // Posts of the live head in query order
+    private final ArrayList<Post> posts = new ArrayList<>();
+
+    // Posts of the live head by their Firestore document ID
+    private final HashMap<String, Post> postsById = new HashMap<>();
+
+    // Older pages after the live head
+    private final ArrayList<Page> pages = new ArrayList<>();
+
+    // Replace the live head, used before its listener delivers the first snapshot
+    public void setHead(List<Post> head) {
+        clearHead();
+        for (Post post : head) {
+            posts.add(post);
+            postsById.put(post.getId(), post);
+        }
+    }
+
+    public void setPending(List<Post> posts) {
+        pending.clear();
+        pending.addAll(posts);
+    }
+
+    public void clearHead() {
+        posts.clear();
+        postsById.clear();
+    }
+
+    // Apply the changes of a snapshot to the live head, returns true if the feed has changed
+    public boolean apply(List<DocumentChange> changes) {
+        for (DocumentChange change : changes) {
+            DocumentSnapshot documentSnapshot = change.getDocument();
+            String id = documentSnapshot.getId();
+
+            switch (change.getType()) {
+                case ADDED: {
+                    Post post = PostMapper.toPost(documentSnapshot);
+                    posts.add(change.getNewIndex(), post);
+                    postsById.put(id, post);
+                    break;
+                }
+                case MODIFIED: {
+                    Post post = PostMapper.toPost(documentSnapshot);
+                    if (change.getOldIndex() == change.getNewIndex()) {
+                        posts.set(change.getNewIndex(), post);
+                    } else {
+                        posts.remove(change.getOldIndex());
+                        posts.add(change.getNewIndex(), post);
+                    }
+                    postsById.put(id, post);
+                    break;
+                }
+                case REMOVED:
+                    posts.remove(change.getOldIndex());
+                    postsById.remove(id);
+                    break;
+            }
+        }
+        return !changes.isEmpty();
+    }
+
+    public void addPage(Page page) {
+        pages.add(page);
+    }
+
+    public void clearPages() {
+        pages.clear();
+    }
+
+    // Drop the last pages that start more than the given distance after the position, returns true if any page is dropped
+    public boolean dropPagesAfter(int position, int distance) {
+        boolean dropped = false;
+        while (!pages.isEmpty() && startOf(pages.size() - 1) > position + distance) {
+            pages.remove(pages.size() - 1);
+            dropped = true;
+        }
+        return dropped;
+    }
+
+    // Get the cursor to load the page after the last one, null if there is no page yet
+    public DocumentSnapshot getLastCursor() {
+        return pages.isEmpty() ? null : pages.get(pages.size() - 1).cursor;
+    }
+
+    // Get a snapshot of the feed to submit to the adapter
+    public CompactFeed getFeed() {
+        // A pending post is replaced by its document as soon as the document arrives
+        ArrayList<Post> top = new ArrayList<>(pending.size() + posts.size());
+        for (Post post : pending) {
+            if (!contains(post.getId()))
+                top.add(post);
+        }
+        top.addAll(posts);
+
+        CompactFeed.Builder builder = new CompactFeed.Builder(size());
+        for (Post post : top)
+            builder.add(post);
+
+        // A post whose date has changed may be both in the head and in a page, keep the first one
+        for (Page page : pages) {
+            BitSet duplicates = null;
+            for (Post post : posts) {
+                int position = page.feed.indexOf(post.getId());
+                if (position >= 0) {
+                    if (duplicates == null)
+                        duplicates = new BitSet(page.feed.size());
+                    duplicates.set(position);
+                }
+            }
+            builder.addAll(page.feed, duplicates);
+        }
+        return builder.build();
+    }
+
+    // Get the first posts of the feed, to be saved on the device
+    public List<Post> getRecentPosts(int count) {
+        ArrayList<Post> recent = new ArrayList<>(posts.subList(0, Math.min(posts.size(), count)));
+        for (int i = 0; i < pages.size() && recent.size() < count; i++) {
+            CompactFeed feed = pages.get(i).feed;
+            for (int position = 0; position < feed.size() && recent.size() < count; position++) {
+                if (!postsById.containsKey(feed.getId(position)))
+                    recent.add(feed.toPost(position));
+            }
+        }
+        return recent;
+    }
+
+    public Post get(String id) {
+        return postsById.get(id);
+    }
+
+    // Whether the post is in the live head or in a page
+    private boolean contains(String id) {
+        if (postsById.containsKey(id))
+            return true;
+        for (Page page : pages) {
+            if (page.feed.indexOf(id) >= 0)
+                return true;
+        }
+        return false;
+    }
+
+    public int size() {
+        return startOf(pages.size());
+    }
+
+    // Get the position of the first post of the page
+    private int startOf(int pageIndex) {
+        int start = pending.size() + posts.size();
+        for (int i = 0; i < pageIndex; i++)
+            start += pages.get(i).feed.size();
+        return start;
+    }
+
+    // A page of older posts with the cursor to load the next page
+    public static class Page {
+
+        final CompactFeed feed;
+        final DocumentSnapshot cursor;
+
+        public Page(CompactFeed feed, DocumentSnapshot cursor) {
+            this.feed = feed;
+            this.cursor = cursor;
+        }
+    }
+}
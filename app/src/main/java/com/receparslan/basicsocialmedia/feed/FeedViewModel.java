@@ -0,0 +1,206 @@
+package com.receparslan.basicsocialmedia.feed;
+
+import android.app.Application;
+import android.os.Handler;
+import android.os.Looper;
+
+import androidx.annotation.NonNull;
+import androidx.lifecycle.AndroidViewModel;
+import androidx.lifecycle.LiveData;
+import androidx.lifecycle.MutableLiveData;
+import androidx.lifecycle.ViewModel;
+import androidx.lifecycle.ViewModelProvider;
+import androidx.recyclerview.widget.DiffUtil;
+
+import com.google.firebase.firestore.FirebaseFirestore;
+import com.receparslan.basicsocialmedia.data.FeedCache;
+import com.receparslan.basicsocialmedia.follow.HomeTimeline;
+import com.receparslan.basicsocialmedia.model.CompactFeed;
+import com.receparslan.basicsocialmedia.outbox.PostOutbox;
+import com.receparslan.basicsocialmedia.search.PostSearch;
+import com.receparslan.basicsocialmedia.util.AppExecutors;
+
+import java.util.concurrent.ExecutionException;
+
+/**
+ * Owns the {@link FeedPager} of a screen, so a configuration change keeps the loaded pages and the
+ * one live head listener instead of starting another one.
+ * <p>
+ * The feed is listened to only while the screen observes it. When the last observer stops, the
+ * pager is paused after a short delay, so a rotation does not remove and add the listener again.
+ * Observing again resumes the paused pager from its loaded posts.
+ * <p>
+ * It also answers the searches of the screen from the {@link PostSearch}. Results are delivered
+ * only for the last query, the results of a query typed over are dropped.
+ */
+public class FeedViewModel extends AndroidViewModel {
+
+    // Time the pager keeps listening after the screen has stopped, longer than a rotation
+    private static final long PAUSE_DELAY_MILLIS = 5000;
+
+    /**
+     * A feed together with its changes against the previous feed.
+     */
+    public static final class Update {
+
+        public final CompactFeed feed;
+
+        // Feed the diff was calculated against
+        public final CompactFeed previous;
+
+        // Null if the feed was not diffed, such as the feed restored from the cache
+        public final DiffUtil.DiffResult diff;
+
+        // System.nanoTime at which the change arrived, 0 for the restored feed
+        public final long receivedNanos;
+
+        Update(CompactFeed feed, CompactFeed previous, DiffUtil.DiffResult diff, long receivedNanos) {
+            this.feed = feed;
+            this.previous = previous;
+            this.diff = diff;
+            this.receivedNanos = receivedNanos;
+        }
+    }
+
+    private final FeedPager feedPager;
+    private final PostSearch postSearch;
+    private final FeedLiveData feed = new FeedLiveData();
+    private final MutableLiveData<CompactFeed> searchResults = new MutableLiveData<>();
+    private final Handler handler = new Handler(Looper.getMainLooper());
+    private final Runnable pause = this::pause;
+
+    // Whether the pager is not listening, it is started by the first observer
+    private boolean paused = true;
+
+    // Last searched query, null if the screen is not searching
+    private String query;
+
+    private FeedViewModel(Application application, String uid, String authorUid) {
+        super(application);
+
+        postSearch = PostSearch.get(application);
+        if (uid != null) {
+            feedPager = new FeedPager(uid, new FeedCache(application), new PostOutbox(application), postSearch, this::onFeedChanged);
+
+            // Copy the own posts of the user once and pull the new posts of the followed accounts that do not copy them, the live head shows them
+            AppExecutors.background().execute(() -> {
+                try {
+                    HomeTimeline.seed(application, FirebaseFirestore.getInstance(), uid);
+                    HomeTimeline.pull(application, FirebaseFirestore.getInstance(), uid);
+                } catch (ExecutionException e) {
+                    // Pulled again the next time the feed is opened
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            });
+        } else if (authorUid != null) {
+            feedPager = new FeedPager(authorUid, postSearch, this::onFeedChanged);
+        } else {
+            feedPager = new FeedPager(postSearch, this::onFeedChanged);
+        }
+
+        // Show the posts saved on the device in the first frame, until the first page arrives
+        feed.setValue(new Update(feedPager.restore(), CompactFeed.EMPTY, null, 0));
+    }
+
+    // Factory of the view model of the home timeline of the user
+    public static ViewModelProvider.Factory homeFactory(Application application, String uid) {
+        return factory(application, uid, null);
+    }
+
+    // Factory of the view model of the posts of one author
+    public static ViewModelProvider.Factory authorFactory(Application application, String authorUid) {
+        return factory(application, null, authorUid);
+    }
+
+    // Factory of the view model of every post, for finding accounts to follow
+    public static ViewModelProvider.Factory exploreFactory(Application application) {
+        return factory(application, null, null);
+    }
+
+    private static ViewModelProvider.Factory factory(Application application, String uid, String authorUid) {
+        return new ViewModelProvider.Factory() {
+            @NonNull
+            @Override
+            @SuppressWarnings("unchecked")
+            public <T extends ViewModel> T create(@NonNull Class<T> modelClass) {
+                return (T) new FeedViewModel(application, uid, authorUid);
+            }
+        };
+    }
+
+    // The feed, listened to while it is observed
+    public LiveData<Update> getFeed() {
+        return feed;
+    }
+
+    // Results of the last query
+    public LiveData<CompactFeed> getSearchResults() {
+        return searchResults;
+    }
+
+    // Search the posts received on the device
+    public void search(String query) {
+        this.query = query;
+        postSearch.search(query, (searched, posts) -> {
+            CompactFeed results = CompactFeed.of(posts);
+            AppExecutors.mainThread().execute(() -> {
+                if (searched.equals(this.query))
+                    searchResults.setValue(results);
+            });
+        });
+    }
+
+    // Stop searching, the results of a running query are dropped
+    public void clearSearch() {
+        query = null;
+        searchResults.setValue(CompactFeed.EMPTY);
+    }
+
+    // Method to be called when the outbox changes
+    public void refreshPending() {
+        feedPager.refreshPending();
+    }
+
+    // Method to be called when the visible posts change
+    public void onScrolled(int lastVisiblePosition) {
+        feedPager.onScrolled(lastVisiblePosition);
+    }
+
+    private void onFeedChanged(CompactFeed newFeed, DiffUtil.DiffResult diff, long receivedNanos) {
+        Update current = feed.getValue();
+        feed.setValue(new Update(newFeed, current != null ? current.feed : CompactFeed.EMPTY, diff, receivedNanos));
+    }
+
+    private void pause() {
+        paused = true;
+        feedPager.pause();
+    }
+
+    @Override
+    protected void onCleared() {
+        super.onCleared();
+
+        // Stop listening to the posts
+        handler.removeCallbacks(pause);
+        feedPager.stop();
+    }
+
+    // Feed that resumes the pager when it is observed and pauses it when it is not
+    private class FeedLiveData extends MutableLiveData<Update> {
+
+        @Override
+        protected void onActive() {
+            handler.removeCallbacks(pause);
+            if (paused) {
+                paused = false;
+                feedPager.resume();
+            }
+        }
+
+        @Override
+        protected void onInactive() {
+            handler.postDelayed(pause, PAUSE_DELAY_MILLIS);
+        }
+    }
+}
@@ -0,0 +1,50 @@
+package com.receparslan.basicsocialmedia.feed;
+
+import com.receparslan.basicsocialmedia.model.AuthorTable;
+import com.receparslan.basicsocialmedia.model.ImageVariant;
+import com.receparslan.basicsocialmedia.model.Post;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Builds {@link Post}s from the field values of post documents.
+ * <p>
+ * Kept apart from {@link PostMapper} and free of Firebase and Android classes, so the mapping can
+ * also be measured on a plain JVM.
+ */
+public final class PostFactory {
+
+    private PostFactory() {
+    }
+
+    // Build a post, images is the value of the "images" field as Firestore returns it
+    public static Post toPost(String id, String authorUid, String email, String displayName, String comment, String imageUrl, Object images, long date) {
+        return new Post(id, AuthorTable.get().intern(authorUid, email, displayName), comment, imageUrl, toImages(images, imageUrl), date);
+    }
+
+    // Map the image variants of a post by image and width, posts without variants only have their original image
+    private static List<ImageVariant> toImages(Object value, String imageUrl) {
+        ArrayList<ImageVariant> images = new ArrayList<>();
+
+        if (value instanceof List) {
+            for (Object item : (List<?>) value) {
+                if (item instanceof Map) {
+                    Map<?, ?> image = (Map<?, ?>) item;
+                    images.add(new ImageVariant((String) image.get("path"), (String) image.get("url"), toInt(image.get("image")), toInt(image.get("width")), toInt(image.get("height")), (String) image.get("blurHash")));
+                }
+            }
+            images.sort((first, second) -> first.getImage() != second.getImage() ? Integer.compare(first.getImage(), second.getImage()) : Integer.compare(first.getWidth(), second.getWidth()));
+        }
+
+        if (images.isEmpty() && imageUrl != null)
+            images.add(new ImageVariant(null, imageUrl, Integer.MAX_VALUE, 0));
+
+        return images;
+    }
+
+    private static int toInt(Object value) {
+        return value instanceof Number ? ((Number) value).intValue() : 0;
+    }
+}
@@ -0,0 +1,42 @@
+package com.receparslan.basicsocialmedia.feed;
+
+import com.google.firebase.Timestamp;
+import com.google.firebase.firestore.DocumentSnapshot;
+import com.receparslan.basicsocialmedia.model.Post;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Maps post documents to {@link Post}s.
+ * <p>
+ * Runs on the feed executor, never on the main thread.
+ */
+public final class PostMapper {
+
+    private PostMapper() {
+    }
+
+    public static Post toPost(DocumentSnapshot documentSnapshot) {
+        // A post written by this device has no server date until the write lands, estimate it meanwhile
+        Timestamp timestamp = documentSnapshot.getTimestamp("date", DocumentSnapshot.ServerTimestampBehavior.ESTIMATE);
+
+        return PostFactory.toPost(
+                documentSnapshot.getId(),
+                documentSnapshot.getString("authorUid"),
+                documentSnapshot.getString("email"),
+                documentSnapshot.getString("displayName"),
+                documentSnapshot.getString("comment"),
+                documentSnapshot.getString("imageUrl"),
+                documentSnapshot.get("images"),
+                timestamp != null ? timestamp.toDate().getTime() : 0L
+        );
+    }
+
+    public static List<Post> toPosts(List<DocumentSnapshot> documents) {
+        ArrayList<Post> posts = new ArrayList<>(documents.size());
+        for (DocumentSnapshot documentSnapshot : documents)
+            posts.add(toPost(documentSnapshot));
+        return posts;
+    }
+}
@@ -0,0 +1,68 @@
+package com.receparslan.basicsocialmedia.feed;
+
+import android.text.SpannableString;
+import android.text.Spanned;
+import android.text.style.ForegroundColorSpan;
+import android.util.LruCache;
+
+import com.receparslan.basicsocialmedia.model.Author;
+import com.receparslan.basicsocialmedia.model.CompactFeed;
+import com.receparslan.basicsocialmedia.model.PostRow;
+import com.receparslan.basicsocialmedia.util.DateFormatter;
+
+/**
+ * Builds the {@link PostRow}s of the feed when they are bound.
+ * <p>
+ * The feed keeps no text per post, so the styled text and the formatted date of a row are built
+ * from the author, comment and date of its post. The rows of the last bound posts are kept by post
+ * ID, so a row that scrolls out and back in is not built again and its text keeps its identity,
+ * which lets the row view reuse its text layout. Only {@link #MAX_ROWS} rows are kept, a few screens
+ * of them, however long the feed grows.
+ * <p>
+ * Confined to the main thread.
+ */
+public class PostRowFactory {
+
+    // Number of rows kept
+    public static final int MAX_ROWS = 64;
+
+    // Color of the display name
+    private final int displayNameColor;
+
+    private final DateFormatter dateFormatter = new DateFormatter();
+
+    // Reused to compose the text of each row
+    private final StringBuilder rowText = new StringBuilder();
+
+    // Rows of the last bound posts by post ID
+    private final LruCache<String, PostRow> rows = new LruCache<>(MAX_ROWS);
+
+    public PostRowFactory(int displayNameColor) {
+        this.displayNameColor = displayNameColor;
+    }
+
+    // Get the row of the post at the position, building it if the post is new or has changed
+    public PostRow getRow(CompactFeed feed, int position) {
+        String id = feed.getId(position);
+        PostRow row = rows.get(id);
+        if (row == null || !row.isOf(feed, position)) {
+            row = toRow(feed, position);
+            rows.put(id, row);
+        }
+        return row;
+    }
+
+    private PostRow toRow(CompactFeed feed, int position) {
+        Author author = feed.getAuthor(position);
+        String comment = feed.getComment(position);
+        long date = feed.getDate(position);
+
+        // Display name in its color followed by the comment
+        rowText.setLength(0);
+        int nameEnd = RowText.append(rowText, author.getDisplayName(), comment);
+        SpannableString text = new SpannableString(rowText);
+        text.setSpan(new ForegroundColorSpan(displayNameColor), 0, nameEnd, Spanned.SPAN_EXCLUSIVE_EXCLUSIVE);
+
+        return new PostRow(author.getIndex(), comment, date, text, dateFormatter.format(date));
+    }
+}
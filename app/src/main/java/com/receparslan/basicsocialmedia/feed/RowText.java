@@ -0,0 +1,27 @@
+package com.receparslan.basicsocialmedia.feed;
+
+/**
+ * Composes the plain text of a row, the display name and then the comment.
+ * <p>
+ * Free of Android classes so it can also be measured on a plain JVM, {@link PostRowFactory} adds
+ * the styles.
+ */
+public final class RowText {
+
+    private static final String SEPARATOR = " : ";
+
+    private RowText() {
+    }
+
+    // Append the text of the row, returns the length of the text up to the end of the separator
+    public static int append(StringBuilder text, String displayName, String comment) {
+        if (displayName != null)
+            text.append(displayName);
+        text.append(SEPARATOR);
+
+        int nameEnd = text.length();
+        if (comment != null)
+            text.append(comment);
+        return nameEnd;
+    }
+}
@@ -0,0 +1,90 @@
+package com.receparslan.basicsocialmedia.follow;
+
+import com.google.android.gms.tasks.Task;
+import com.google.firebase.firestore.CollectionReference;
+import com.google.firebase.firestore.DocumentReference;
+import com.google.firebase.firestore.DocumentSnapshot;
+import com.google.firebase.firestore.FieldValue;
+import com.google.firebase.firestore.FirebaseFirestore;
+import com.google.firebase.firestore.SetOptions;
+import com.receparslan.basicsocialmedia.account.UserStats;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Who follows whom, kept as an edge on both sides in {@code Users/<uid>/following} and
+ * {@code Users/<uid>/followers}.
+ * <p>
+ * The following side is read by the user to find the accounts whose posts it has to pull, the
+ * followers side by the author to find the timelines it copies its posts to. Both edges and the
+ * counts of both users change in one transaction, which does nothing if the follow already is in
+ * the requested state, so a repeated tap never counts twice.
+ */
+public final class FollowGraph {
+
+    public static final String FOLLOWING = "following";
+    public static final String FOLLOWERS = "followers";
+    public static final String FIELD_DATE = "date";
+
+    private FollowGraph() {
+    }
+
+    public static CollectionReference following(FirebaseFirestore firebaseFirestore, String uid) {
+        return UserStats.reference(firebaseFirestore, uid).collection(FOLLOWING);
+    }
+
+    public static CollectionReference followers(FirebaseFirestore firebaseFirestore, String uid) {
+        return UserStats.reference(firebaseFirestore, uid).collection(FOLLOWERS);
+    }
+
+    // Whether the user follows the author
+    public static Task<Boolean> isFollowing(FirebaseFirestore firebaseFirestore, String uid, String authorUid) {
+        return following(firebaseFirestore, uid).document(authorUid).get().continueWith(task -> task.getResult().exists());
+    }
+
+    // Follow the author, the edge remembers whether the posts of the author have to be pulled
+    public static Task<Void> follow(FirebaseFirestore firebaseFirestore, String uid, String authorUid) {
+        DocumentReference followingReference = following(firebaseFirestore, uid).document(authorUid);
+        DocumentReference followerReference = followers(firebaseFirestore, authorUid).document(uid);
+        DocumentReference authorStats = UserStats.reference(firebaseFirestore, authorUid);
+
+        return firebaseFirestore.runTransaction(transaction -> {
+            if (transaction.get(followingReference).exists())
+                return null;
+
+            DocumentSnapshot stats = transaction.get(authorStats);
+            HashMap<String, Object> edge = new HashMap<>();
+            edge.put(FIELD_DATE, FieldValue.serverTimestamp());
+            edge.put(UserStats.FIELD_FAN_OUT_ON_READ, Boolean.TRUE.equals(stats.getBoolean(UserStats.FIELD_FAN_OUT_ON_READ)));
+
+            transaction.set(followingReference, edge);
+            transaction.set(followerReference, date());
+            transaction.set(UserStats.reference(firebaseFirestore, uid), UserStats.followingChanged(1), SetOptions.merge());
+            transaction.set(authorStats, UserStats.followersChanged(1), SetOptions.merge());
+            return null;
+        });
+    }
+
+    // Stop following the author
+    public static Task<Void> unfollow(FirebaseFirestore firebaseFirestore, String uid, String authorUid) {
+        DocumentReference followingReference = following(firebaseFirestore, uid).document(authorUid);
+
+        return firebaseFirestore.runTransaction(transaction -> {
+            if (!transaction.get(followingReference).exists())
+                return null;
+
+            transaction.delete(followingReference);
+            transaction.delete(followers(firebaseFirestore, authorUid).document(uid));
+            transaction.set(UserStats.reference(firebaseFirestore, uid), UserStats.followingChanged(-1), SetOptions.merge());
+            transaction.set(UserStats.reference(firebaseFirestore, authorUid), UserStats.followersChanged(-1), SetOptions.merge());
+            return null;
+        });
+    }
+
+    private static Map<String, Object> date() {
+        HashMap<String, Object> edge = new HashMap<>();
+        edge.put(FIELD_DATE, FieldValue.serverTimestamp());
+        return edge;
+    }
+}
@@ -0,0 +1,220 @@
+package com.receparslan.basicsocialmedia.follow;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+
+import com.google.android.gms.tasks.Tasks;
+import com.google.firebase.Timestamp;
+import com.google.firebase.firestore.CollectionReference;
+import com.google.firebase.firestore.DocumentSnapshot;
+import com.google.firebase.firestore.FieldPath;
+import com.google.firebase.firestore.FirebaseFirestore;
+import com.google.firebase.firestore.Query;
+import com.google.firebase.firestore.SetOptions;
+import com.google.firebase.firestore.Source;
+import com.google.firebase.firestore.WriteBatch;
+import com.receparslan.basicsocialmedia.account.UserStats;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Home timeline of a user, copies of the posts of the followed accounts in {@code Users/<uid>/timeline}.
+ * <p>
+ * A new post is copied by its author into its own timeline and the timeline of every follower, in
+ * batches of up to 500 writes, so the feed of a user is one query over a collection that only grows
+ * with the accounts it follows. Once an author has more than {@link #FAN_OUT_LIMIT} followers, it
+ * marks itself and the follow edges as fanned out on read and stops copying. Its followers then pull
+ * its new posts into their own timelines when they open the feed. Copies expire after
+ * {@link #RETENTION_DAYS} days through a TTL policy on {@link #FIELD_EXPIRE_AT}, and the feed reads
+ * at most {@link #MAX_POSTS} of them. The posts a user wrote before the home timeline existed are
+ * copied into it once by {@link #seed}.
+ * <p>
+ * Every method blocks on the network, call them off the main thread. Copies are written under the
+ * post ID, so writing them again after a failure changes nothing.
+ */
+public final class HomeTimeline {
+
+    public static final String COLLECTION = "timeline";
+    public static final String FIELD_EXPIRE_AT = "expireAt";
+
+    // Number of posts the feed pages through
+    public static final int MAX_POSTS = 800;
+
+    // Number of followers above which the posts of an author are pulled by the followers
+    public static final int FAN_OUT_LIMIT = 1000;
+
+    // Days a copy is kept in a timeline
+    public static final int RETENTION_DAYS = 30;
+
+    // Number of posts copied from an author when the author is followed
+    public static final int BACKFILL_POSTS = 20;
+
+    // Maximum number of writes in a batch
+    private static final int BATCH_SIZE = 500;
+
+    // Maximum number of authors in one whereIn query, and of posts in each page pulled from them
+    private static final int PULL_AUTHORS = 30;
+    private static final int PULL_POSTS = 100;
+
+    private static final String PREFERENCES = "home_timeline";
+    private static final String PREF_PULLED = "pulled_";
+    private static final String PREF_SEEDED = "seeded_";
+
+    private HomeTimeline() {
+    }
+
+    public static CollectionReference reference(FirebaseFirestore firebaseFirestore, String uid) {
+        return UserStats.reference(firebaseFirestore, uid).collection(COLLECTION);
+    }
+
+    // Copy a written post to the timeline of its author and of the followers of the author
+    public static void fanOut(FirebaseFirestore firebaseFirestore, DocumentSnapshot post) throws ExecutionException, InterruptedException {
+        String authorUid = post.getString("authorUid");
+        if (authorUid == null)
+            return;
+
+        Map<String, Object> entry = entry(post);
+        Tasks.await(reference(firebaseFirestore, authorUid).document(post.getId()).set(entry));
+
+        DocumentSnapshot stats = Tasks.await(UserStats.reference(firebaseFirestore, authorUid).get(Source.SERVER));
+        if (Boolean.TRUE.equals(stats.getBoolean(UserStats.FIELD_FAN_OUT_ON_READ)))
+            return; // The followers pull the post
+
+        // Too many followers to copy every post to, switch to fanning out on read. The author is
+        // marked first, so a follow made meanwhile reads the mark and its edge is marked too.
+        Long followerCount = stats.getLong(UserStats.FIELD_FOLLOWER_COUNT);
+        boolean switchToRead = followerCount != null && followerCount > FAN_OUT_LIMIT;
+        Map<String, Object> mark = Collections.singletonMap(UserStats.FIELD_FAN_OUT_ON_READ, true);
+        if (switchToRead)
+            Tasks.await(UserStats.reference(firebaseFirestore, authorUid).set(mark, SetOptions.merge()));
+
+        // Page through the followers, one batch per page
+        Query followers = FollowGraph.followers(firebaseFirestore, authorUid).orderBy(FieldPath.documentId()).limit(BATCH_SIZE);
+        DocumentSnapshot cursor = null;
+        while (true) {
+            List<DocumentSnapshot> page = Tasks.await((cursor != null ? followers.startAfter(cursor) : followers).get(Source.SERVER)).getDocuments();
+            if (page.isEmpty())
+                return;
+
+            WriteBatch batch = firebaseFirestore.batch();
+            for (DocumentSnapshot follower : page) {
+                if (switchToRead)
+                    batch.set(FollowGraph.following(firebaseFirestore, follower.getId()).document(authorUid), mark, SetOptions.merge());
+                else
+                    batch.set(reference(firebaseFirestore, follower.getId()).document(post.getId()), entry);
+            }
+            Tasks.await(batch.commit());
+
+            if (page.size() < BATCH_SIZE)
+                return;
+            cursor = page.get(page.size() - 1);
+        }
+    }
+
+    // Copy the latest posts of a followed author, so they show up before the author posts again
+    public static void backfill(FirebaseFirestore firebaseFirestore, String uid, String authorUid) throws ExecutionException, InterruptedException {
+        List<DocumentSnapshot> posts = Tasks.await(firebaseFirestore.collection("Posts")
+                .whereEqualTo("authorUid", authorUid)
+                .orderBy("date", Query.Direction.DESCENDING)
+                .limit(BACKFILL_POSTS)
+                .get(Source.SERVER)).getDocuments();
+        copy(firebaseFirestore, uid, posts);
+    }
+
+    // Copy the latest posts of the user once, posts written before the home timeline existed are not in it
+    public static void seed(Context context, FirebaseFirestore firebaseFirestore, String uid) throws ExecutionException, InterruptedException {
+        SharedPreferences preferences = context.getSharedPreferences(PREFERENCES, Context.MODE_PRIVATE);
+        if (preferences.getBoolean(PREF_SEEDED + uid, false))
+            return;
+
+        backfill(firebaseFirestore, uid, uid);
+        preferences.edit().putBoolean(PREF_SEEDED + uid, true).apply();
+    }
+
+    // Remove the posts of an unfollowed author
+    public static void removeAuthor(FirebaseFirestore firebaseFirestore, String uid, String authorUid) throws ExecutionException, InterruptedException {
+        Query copies = reference(firebaseFirestore, uid).whereEqualTo("authorUid", authorUid).limit(BATCH_SIZE);
+        List<DocumentSnapshot> page;
+        do {
+            page = Tasks.await(copies.get(Source.SERVER)).getDocuments();
+            WriteBatch batch = firebaseFirestore.batch();
+            for (DocumentSnapshot copy : page)
+                batch.delete(copy.getReference());
+            Tasks.await(batch.commit());
+        } while (page.size() == BATCH_SIZE);
+    }
+
+    // Copy the posts written since the last pull by the followed authors who do not copy them, the
+    // pull is remembered only once every post since the last one is copied
+    public static void pull(Context context, FirebaseFirestore firebaseFirestore, String uid) throws ExecutionException, InterruptedException {
+        List<DocumentSnapshot> authors = Tasks.await(FollowGraph.following(firebaseFirestore, uid)
+                .whereEqualTo(UserStats.FIELD_FAN_OUT_ON_READ, true)
+                .get(Source.SERVER)).getDocuments();
+        if (authors.isEmpty())
+            return;
+
+        // The first pull reaches back as far as the copies are kept
+        SharedPreferences preferences = context.getSharedPreferences(PREFERENCES, Context.MODE_PRIVATE);
+        long since = preferences.getLong(PREF_PULLED + uid, System.currentTimeMillis() - TimeUnit.DAYS.toMillis(RETENTION_DAYS));
+        long newest = since;
+
+        for (int start = 0; start < authors.size(); start += PULL_AUTHORS) {
+            ArrayList<String> chunk = new ArrayList<>();
+            for (DocumentSnapshot author : authors.subList(start, Math.min(start + PULL_AUTHORS, authors.size())))
+                chunk.add(author.getId());
+
+            // Needs the authorUid and date index of the timeline of an author
+            Query posts = firebaseFirestore.collection("Posts")
+                    .whereIn("authorUid", chunk)
+                    .whereGreaterThan("date", new Timestamp(new Date(since)))
+                    .orderBy("date", Query.Direction.DESCENDING)
+                    .limit(PULL_POSTS);
+
+            // Page down to the last pull, a short page is the last one
+            List<DocumentSnapshot> page;
+            DocumentSnapshot cursor = null;
+            do {
+                page = Tasks.await((cursor != null ? posts.startAfter(cursor) : posts).get(Source.SERVER)).getDocuments();
+                copy(firebaseFirestore, uid, page);
+                if (page.isEmpty())
+                    break;
+
+                // The first page starts with the newest post of the chunk
+                if (cursor == null) {
+                    Timestamp date = page.get(0).getTimestamp("date");
+                    if (date != null)
+                        newest = Math.max(newest, date.toDate().getTime());
+                }
+                cursor = page.get(page.size() - 1);
+            } while (page.size() == PULL_POSTS);
+        }
+        preferences.edit().putLong(PREF_PULLED + uid, newest).apply();
+    }
+
+    // Copy the posts into the timeline of the user
+    private static void copy(FirebaseFirestore firebaseFirestore, String uid, List<DocumentSnapshot> posts) throws ExecutionException, InterruptedException {
+        CollectionReference timeline = reference(firebaseFirestore, uid);
+        for (int start = 0; start < posts.size(); start += BATCH_SIZE) {
+            WriteBatch batch = firebaseFirestore.batch();
+            for (DocumentSnapshot post : posts.subList(start, Math.min(start + BATCH_SIZE, posts.size())))
+                batch.set(timeline.document(post.getId()), entry(post));
+            Tasks.await(batch.commit());
+        }
+    }
+
+    // Copy of a post with the date at which it expires
+    private static Map<String, Object> entry(DocumentSnapshot post) {
+        HashMap<String, Object> entry = new HashMap<>(post.getData());
+        Timestamp date = post.getTimestamp("date");
+        long created = date != null ? date.toDate().getTime() : System.currentTimeMillis();
+        entry.put(FIELD_EXPIRE_AT, new Timestamp(new Date(created + TimeUnit.DAYS.toMillis(RETENTION_DAYS))));
+        return entry;
+    }
+}
@@ -0,0 +1,190 @@
+package com.receparslan.basicsocialmedia.image;
+
+/**
+ * Encodes an image into a short BlurHash string and decodes it back into a blurred image.
+ * <p>
+ * The image is reduced to a few cosine components, a DC color and a grid of AC factors, quantized
+ * and written in base 83. With 4 by 3 components the hash is 28 characters, small enough to be
+ * stored with the post and painted as a placeholder before the image arrives. Pixels are packed
+ * ARGB ints, so the class has no Android dependency.
+ */
+public final class BlurHash {
+
+    private static final String CHARACTERS = "0123456789ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz#$%*+,-.:;=?@[]^_{|}~";
+
+    private BlurHash() {
+    }
+
+    // Encode the pixels with the given number of components on each axis, from 1 to 9
+    public static String encode(int[] pixels, int width, int height, int componentsX, int componentsY) {
+        if (componentsX < 1 || componentsX > 9 || componentsY < 1 || componentsY > 9)
+            throw new IllegalArgumentException("Components must be between 1 and 9");
+        if (width * height > pixels.length)
+            throw new IllegalArgumentException("Not enough pixels");
+
+        // Convert to linear light once instead of for every component
+        float[] red = new float[width * height];
+        float[] green = new float[width * height];
+        float[] blue = new float[width * height];
+        for (int i = 0; i < width * height; i++) {
+            red[i] = toLinear((pixels[i] >> 16) & 0xFF);
+            green[i] = toLinear((pixels[i] >> 8) & 0xFF);
+            blue[i] = toLinear(pixels[i] & 0xFF);
+        }
+
+        float[][] factors = new float[componentsX * componentsY][];
+        float[] cosX = new float[width];
+        float[] cosY = new float[height];
+        for (int j = 0; j < componentsY; j++) {
+            for (int y = 0; y < height; y++)
+                cosY[y] = (float) Math.cos(Math.PI * j * y / height);
+
+            for (int i = 0; i < componentsX; i++) {
+                for (int x = 0; x < width; x++)
+                    cosX[x] = (float) Math.cos(Math.PI * i * x / width);
+
+                float r = 0, g = 0, b = 0;
+                for (int y = 0; y < height; y++) {
+                    for (int x = 0; x < width; x++) {
+                        float basis = cosX[x] * cosY[y];
+                        int index = y * width + x;
+                        r += basis * red[index];
+                        g += basis * green[index];
+                        b += basis * blue[index];
+                    }
+                }
+
+                float scale = (i == 0 && j == 0 ? 1f : 2f) / (width * height);
+                factors[j * componentsX + i] = new float[]{r * scale, g * scale, b * scale};
+            }
+        }
+
+        StringBuilder hash = new StringBuilder(4 + 2 * factors.length);
+        encode83((componentsX - 1) + (componentsY - 1) * 9, 1, hash);
+
+        // The AC factors are scaled by their largest magnitude, which is stored first
+        float maximum = 1f;
+        if (factors.length > 1) {
+            float actualMaximum = 0f;
+            for (int i = 1; i < factors.length; i++) {
+                for (float value : factors[i])
+                    actualMaximum = Math.max(actualMaximum, Math.abs(value));
+            }
+            int quantizedMaximum = Math.max(0, Math.min(82, (int) Math.floor(actualMaximum * 166 - 0.5)));
+            maximum = (quantizedMaximum + 1) / 166f;
+            encode83(quantizedMaximum, 1, hash);
+        } else {
+            encode83(0, 1, hash);
+        }
+
+        float[] dc = factors[0];
+        encode83((toSrgb(dc[0]) << 16) + (toSrgb(dc[1]) << 8) + toSrgb(dc[2]), 4, hash);
+        for (int i = 1; i < factors.length; i++) {
+            float[] ac = factors[i];
+            encode83(quantizeAc(ac[0], maximum) * 19 * 19 + quantizeAc(ac[1], maximum) * 19 + quantizeAc(ac[2], maximum), 2, hash);
+        }
+        return hash.toString();
+    }
+
+    // Decode the hash into packed opaque ARGB pixels, null if the hash is not valid
+    public static int[] decode(String hash, int width, int height) {
+        if (hash == null || hash.length() < 6 || width <= 0 || height <= 0)
+            return null;
+
+        // At most 9 components on each axis, and two characters for each AC factor
+        int sizeFlag = decode83(hash, 0, 1);
+        if (sizeFlag < 0 || sizeFlag > 80)
+            return null;
+        int componentsX = sizeFlag % 9 + 1;
+        int componentsY = sizeFlag / 9 + 1;
+        if (hash.length() != 4 + 2 * componentsX * componentsY)
+            return null;
+
+        int quantizedMaximum = decode83(hash, 1, 2);
+        int dc = decode83(hash, 2, 6);
+        if (quantizedMaximum < 0 || dc < 0 || dc > 0xFFFFFF)
+            return null;
+
+        float maximum = (quantizedMaximum + 1) / 166f;
+        float[][] colors = new float[componentsX * componentsY][];
+        colors[0] = new float[]{toLinear(dc >> 16), toLinear((dc >> 8) & 0xFF), toLinear(dc & 0xFF)};
+        for (int i = 1; i < colors.length; i++) {
+            int ac = decode83(hash, 4 + i * 2, 6 + i * 2);
+            if (ac < 0 || ac >= 19 * 19 * 19)
+                return null;
+            colors[i] = new float[]{
+                    unquantizeAc(ac / (19 * 19), maximum),
+                    unquantizeAc((ac / 19) % 19, maximum),
+                    unquantizeAc(ac % 19, maximum)
+            };
+        }
+
+        int[] pixels = new int[width * height];
+        float[] cosX = new float[width * componentsX];
+        for (int x = 0; x < width; x++) {
+            for (int i = 0; i < componentsX; i++)
+                cosX[x * componentsX + i] = (float) Math.cos(Math.PI * x * i / width);
+        }
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                float r = 0, g = 0, b = 0;
+                for (int j = 0; j < componentsY; j++) {
+                    float cosY = (float) Math.cos(Math.PI * y * j / height);
+                    for (int i = 0; i < componentsX; i++) {
+                        float basis = cosX[x * componentsX + i] * cosY;
+                        float[] color = colors[j * componentsX + i];
+                        r += color[0] * basis;
+                        g += color[1] * basis;
+                        b += color[2] * basis;
+                    }
+                }
+                pixels[y * width + x] = 0xFF000000 | (toSrgb(r) << 16) | (toSrgb(g) << 8) | toSrgb(b);
+            }
+        }
+        return pixels;
+    }
+
+    private static int quantizeAc(float value, float maximum) {
+        return Math.max(0, Math.min(18, (int) Math.floor(signedPow(value / maximum, 0.5f) * 9 + 9.5)));
+    }
+
+    private static float unquantizeAc(int value, float maximum) {
+        return signedPow((value - 9) / 9f, 2f) * maximum;
+    }
+
+    private static float signedPow(float value, float exponent) {
+        return Math.copySign((float) Math.pow(Math.abs(value), exponent), value);
+    }
+
+    private static float toLinear(int value) {
+        float v = value / 255f;
+        return v <= 0.04045f ? v / 12.92f : (float) Math.pow((v + 0.055f) / 1.055f, 2.4f);
+    }
+
+    private static int toSrgb(float value) {
+        float v = Math.max(0f, Math.min(1f, value));
+        return v <= 0.0031308f ? (int) (v * 12.92f * 255 + 0.5f) : (int) ((1.055f * (float) Math.pow(v, 1 / 2.4f) - 0.055f) * 255 + 0.5f);
+    }
+
+    private static void encode83(int value, int length, StringBuilder hash) {
+        int divisor = 1;
+        for (int i = 1; i < length; i++)
+            divisor *= 83;
+        for (int i = 0; i < length; i++) {
+            hash.append(CHARACTERS.charAt((value / divisor) % 83));
+            divisor /= 83;
+        }
+    }
+
+    // Decode the characters from start to end, -1 if one of them is not a base 83 digit
+    private static int decode83(String hash, int start, int end) {
+        int value = 0;
+        for (int i = start; i < end; i++) {
+            int digit = CHARACTERS.indexOf(hash.charAt(i));
+            if (digit < 0)
+                return -1;
+            value = value * 83 + digit;
+        }
+        return value;
+    }
+}
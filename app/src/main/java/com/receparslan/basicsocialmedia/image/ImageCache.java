@@ -0,0 +1,161 @@
+package com.receparslan.basicsocialmedia.image;
+
+import android.app.ActivityManager;
+import android.content.Context;
+
+import com.receparslan.basicsocialmedia.model.ImageVariant;
+import com.squareup.picasso.LruCache;
+import com.squareup.picasso.OkHttp3Downloader;
+import com.squareup.picasso.Picasso;
+import com.squareup.picasso.RequestCreator;
+
+import java.io.File;
+import java.io.IOException;
+
+import okhttp3.Cache;
+import okhttp3.OkHttpClient;
+import okhttp3.Response;
+
+/**
+ * App-wide two-tier image cache used by Picasso.
+ * <p>
+ * Decoded bitmaps are kept in a memory LRU sized from the memory class of the device, and the
+ * downloaded bytes in a bounded disk cache that evicts the least recently used images once it is
+ * full. Post images are written once under a unique storage path and never change, so their
+ * responses are cached as immutable and scrolling back or relaunching needs no network. Bitmaps
+ * are keyed by the storage path of the image rather than by its tokenized download URL, and images
+ * with only a path are resolved by the {@link StorageRequestHandler}. The disk tier is the OkHttp
+ * cache, which keys responses by URL. The URL of a path is resolved once and kept by
+ * {@link StorageUrls}, so each path still maps to one disk entry.
+ * <p>
+ * The hits, misses and evictions of both tiers are shown by the performance overlay and exported
+ * with the metrics.
+ */
+public final class ImageCache {
+
+    // Size of the disk cache
+    private static final long DISK_CACHE_SIZE = 100L * 1024 * 1024;
+
+    // Share of the memory class of the app given to the memory cache
+    private static final int MEMORY_CACHE_DIVISOR = 7;
+
+    // Cache lifetime of the immutable post images
+    private static final String IMMUTABLE_CACHE_CONTROL = "public, max-age=31536000, immutable";
+
+    private static volatile ImageCache instance;
+
+    private final LruCache memoryCache;
+    private final Cache diskCache;
+    private final Picasso picasso;
+
+    private ImageCache(Context context) {
+        ActivityManager activityManager = (ActivityManager) context.getSystemService(Context.ACTIVITY_SERVICE);
+        int memoryClass = activityManager.getMemoryClass();
+        memoryCache = new LruCache(memoryClass * 1024 * 1024 / MEMORY_CACHE_DIVISOR);
+
+        diskCache = new Cache(new File(context.getCacheDir(), "images"), DISK_CACHE_SIZE);
+        OkHttpClient client = new OkHttpClient.Builder()
+                .cache(diskCache)
+                .addNetworkInterceptor(chain -> {
+                    Response response = chain.proceed(chain.request());
+                    if (!response.isSuccessful() || !chain.request().url().host().equals("firebasestorage.googleapis.com"))
+                        return response;
+
+                    // Storage answers with a private, no-cache header, cache the images as immutable instead
+                    return response.newBuilder()
+                            .removeHeader("Pragma")
+                            .header("Cache-Control", IMMUTABLE_CACHE_CONTROL)
+                            .build();
+                })
+                .build();
+
+        picasso = new Picasso.Builder(context)
+                .memoryCache(memoryCache)
+                .downloader(new OkHttp3Downloader(client))
+                .addRequestHandler(new StorageRequestHandler(client, new StorageUrls(context)))
+                .build();
+    }
+
+    // Install the cache as the Picasso singleton, called once from the application
+    public static void install(Context context) {
+        synchronized (ImageCache.class) {
+            if (instance == null) {
+                instance = new ImageCache(context.getApplicationContext());
+                Picasso.setSingletonInstance(instance.picasso);
+            }
+        }
+    }
+
+    public static ImageCache get() {
+        return instance;
+    }
+
+    public Picasso getPicasso() {
+        return picasso;
+    }
+
+    // Create the request of an image variant scaled down to the width, prefetches and rows must use the same request to share the cache entry
+    public static RequestCreator request(Picasso picasso, ImageVariant image, int width) {
+        RequestCreator request = image.getUrl() != null ? picasso.load(image.getUrl()) : picasso.load(StorageRequestHandler.uriOf(image.getPath()));
+        if (image.getPath() != null)
+            request.stableKey(image.getPath()); // Cache the image by its storage path
+        if (width > 0)
+            request.resize(width, 0).onlyScaleDown();
+        return request;
+    }
+
+    // Get the counters of both tiers, they are kept in memory so this does not touch the disk
+    public Stats getStats() {
+        return new Stats(
+                memoryCache.hitCount(),
+                memoryCache.missCount(),
+                memoryCache.evictionCount(),
+                memoryCache.size(),
+                memoryCache.maxSize(),
+                diskCache.hitCount(),
+                diskCache.networkCount(),
+                diskCache.maxSize()
+        );
+    }
+
+    // Get the bytes stored by the disk cache, -1 if it cannot be read, reads the journal on first use so call it off the main thread
+    public long getDiskSize() {
+        try {
+            return diskCache.size();
+        } catch (IOException e) {
+            return -1;
+        }
+    }
+
+    // Snapshot of the cache counters
+    public static final class Stats {
+
+        public final int memoryHits;
+        public final int memoryMisses;
+        public final int memoryEvictions;
+        public final int memorySize;
+        public final int memoryMaxSize;
+
+        // Requests served from the disk cache and from the network
+        public final int diskHits;
+        public final int diskMisses;
+        public final long diskMaxSize;
+
+        Stats(int memoryHits, int memoryMisses, int memoryEvictions, int memorySize, int memoryMaxSize, int diskHits, int diskMisses, long diskMaxSize) {
+            this.memoryHits = memoryHits;
+            this.memoryMisses = memoryMisses;
+            this.memoryEvictions = memoryEvictions;
+            this.memorySize = memorySize;
+            this.memoryMaxSize = memoryMaxSize;
+            this.diskHits = diskHits;
+            this.diskMisses = diskMisses;
+            this.diskMaxSize = diskMaxSize;
+        }
+
+        // Share of the requests served without the network
+        public float getHitRate() {
+            int requests = memoryHits + memoryMisses;
+            return requests == 0 ? 0f : (float) (memoryHits + diskHits) / requests;
+        }
+    }
+}
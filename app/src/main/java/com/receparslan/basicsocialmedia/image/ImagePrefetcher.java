@@ -0,0 +1,128 @@
+package com.receparslan.basicsocialmedia.image;
+
+import android.os.SystemClock;
+
+import androidx.annotation.NonNull;
+import androidx.recyclerview.widget.LinearLayoutManager;
+import androidx.recyclerview.widget.RecyclerView;
+
+import com.receparslan.basicsocialmedia.model.CompactFeed;
+import com.receparslan.basicsocialmedia.model.ImageVariant;
+import com.receparslan.basicsocialmedia.network.ConnectivityMonitor;
+import com.squareup.picasso.Picasso;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+
+/**
+ * Warms the image cache for the rows the feed is scrolling towards.
+ * <p>
+ * The images of the next rows in the direction of travel are fetched with the same request as the
+ * rows use, so they are in the memory cache when the rows are bound. Prefetches of rows that fall
+ * behind the visible rows are cancelled, and nothing is prefetched during very fast flings since
+ * those rows would be passed before their images arrive, nor on a metered network, where only the
+ * images of the rows that are shown are worth their traffic.
+ */
+public class ImagePrefetcher extends RecyclerView.OnScrollListener {
+
+    // Number of rows prefetched ahead of the visible rows
+    private static final int PREFETCH_COUNT = 4;
+
+    // Scroll speed in pixels per second above which prefetching backs off
+    private static final float FAST_FLING_VELOCITY = 8000f;
+
+    // Source of the rows, read on the main thread
+    public interface Rows {
+        CompactFeed getFeed();
+    }
+
+    private final Picasso picasso;
+    private final LinearLayoutManager layoutManager;
+    private final Rows rows;
+    private final ConnectivityMonitor connectivityMonitor;
+
+    // Positions of the prefetched images by their request tag
+    private final HashMap<String, Integer> prefetches = new HashMap<>();
+
+    // Smoothed scroll velocity in pixels per second
+    private float velocity;
+    private long lastScrollTime;
+
+    public ImagePrefetcher(Picasso picasso, LinearLayoutManager layoutManager, Rows rows, ConnectivityMonitor connectivityMonitor) {
+        this.picasso = picasso;
+        this.layoutManager = layoutManager;
+        this.rows = rows;
+        this.connectivityMonitor = connectivityMonitor;
+    }
+
+    @Override
+    public void onScrollStateChanged(@NonNull RecyclerView recyclerView, int newState) {
+        if (newState == RecyclerView.SCROLL_STATE_IDLE) {
+            velocity = 0f;
+            lastScrollTime = 0;
+        }
+    }
+
+    @Override
+    public void onScrolled(@NonNull RecyclerView recyclerView, int dx, int dy) {
+        if (dy == 0)
+            return;
+
+        // Estimate the scroll velocity from the distance since the last scroll event
+        long now = SystemClock.uptimeMillis();
+        if (lastScrollTime > 0) {
+            float instantVelocity = Math.abs(dy) * 1000f / Math.max(1, now - lastScrollTime);
+            velocity = (velocity + instantVelocity) / 2f;
+        }
+        lastScrollTime = now;
+
+        int first = layoutManager.findFirstVisibleItemPosition();
+        int last = layoutManager.findLastVisibleItemPosition();
+        if (first == RecyclerView.NO_POSITION)
+            return;
+
+        boolean down = dy > 0;
+        cancelBehind(down ? first : last, down);
+
+        // Back off during very fast flings and on metered networks
+        if (velocity > FAST_FLING_VELOCITY || connectivityMonitor.getCurrentState().isMetered()) {
+            cancelAll();
+            return;
+        }
+
+        CompactFeed feed = rows.getFeed();
+        int width = recyclerView.getWidth();
+        for (int i = 1; i <= PREFETCH_COUNT; i++) {
+            int position = down ? last + i : first - i;
+            if (position < 0 || position >= feed.size())
+                break;
+
+            ImageVariant image = feed.getImage(position, width);
+            if (image == null || prefetches.containsKey(image.getKey()))
+                continue;
+
+            prefetches.put(image.getKey(), position);
+            ImageCache.request(picasso, image, width).tag(image.getKey()).fetch();
+        }
+    }
+
+    // Cancel the prefetches of the rows that are behind the visible rows
+    private void cancelBehind(int edge, boolean down) {
+        Iterator<Map.Entry<String, Integer>> iterator = prefetches.entrySet().iterator();
+        while (iterator.hasNext()) {
+            Map.Entry<String, Integer> prefetch = iterator.next();
+            int position = prefetch.getValue();
+            if (down ? position < edge : position > edge) {
+                picasso.cancelTag(prefetch.getKey());
+                iterator.remove();
+            }
+        }
+    }
+
+    private void cancelAll() {
+        for (String tag : prefetches.keySet())
+            picasso.cancelTag(tag);
+        prefetches.clear();
+    }
+}
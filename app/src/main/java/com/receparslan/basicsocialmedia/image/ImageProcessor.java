@@ -0,0 +1,256 @@
+package com.receparslan.basicsocialmedia.image;
+
+import android.content.ContentResolver;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.graphics.Matrix;
+import android.net.Uri;
+
+import androidx.exifinterface.media.ExifInterface;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+/**
+ * Decodes, downscales, orients and re-encodes images picked from the gallery.
+ * <p>
+ * Images are decoded with an {@code inSampleSize} close to the requested size, so a 12 MP photo is
+ * never fully decoded, then scaled to fit the maximum dimension and rotated according to their
+ * EXIF orientation. Uploaded images are also written as smaller {@link Variant}s, so the feed can
+ * load the smallest one that covers a row, and as a BlurHash placeholder shown until it arrives.
+ * The files are named with the extension of the format they are encoded in, and their content type
+ * is read back from it when they are uploaded. Every method does I/O and must be called on a
+ * background thread.
+ */
+public class ImageProcessor {
+
+    // Longest side of an uploaded image in pixels
+    public static final int DEFAULT_MAX_DIMENSION = 1600;
+
+    // Quality of the re-encoded image
+    public static final int DEFAULT_QUALITY = 85;
+
+    // Longest side in pixels of the image a placeholder is encoded from
+    private static final int PLACEHOLDER_SIZE = 32;
+
+    // Resolutions produced for every uploaded image, from the smallest to the original
+    public enum Variant {
+        THUMBNAIL("_thumb", 240),
+        MEDIUM("_medium", 1080),
+        ORIGINAL("", 0);
+
+        // Suffix of the file name of the variant
+        final String suffix;
+
+        // Longest side of the variant in pixels, 0 for the maximum dimension of the processor
+        final int maxSize;
+
+        Variant(String suffix, int maxSize) {
+            this.suffix = suffix;
+            this.maxSize = maxSize;
+        }
+
+        // Get the file of the variant of the image with the given name, the extension includes the dot
+        public File file(File directory, String name, String extension) {
+            return new File(directory, name + suffix + extension);
+        }
+    }
+
+    private final ContentResolver contentResolver;
+    private final int maxDimension;
+    private final Bitmap.CompressFormat format;
+    private final int quality;
+
+    public ImageProcessor(ContentResolver contentResolver) {
+        this(contentResolver, DEFAULT_MAX_DIMENSION, Bitmap.CompressFormat.JPEG, DEFAULT_QUALITY);
+    }
+
+    public ImageProcessor(ContentResolver contentResolver, int maxDimension, Bitmap.CompressFormat format, int quality) {
+        this.contentResolver = contentResolver;
+        this.maxDimension = maxDimension;
+        this.format = format;
+        this.quality = quality;
+    }
+
+    // Decode the image so that its longest side is at most the given size, oriented upright
+    public Bitmap decode(Uri uri, int maxSize) throws IOException {
+        // Read the dimensions without decoding the pixels
+        BitmapFactory.Options options = new BitmapFactory.Options();
+        options.inJustDecodeBounds = true;
+        try (InputStream inputStream = open(uri)) {
+            BitmapFactory.decodeStream(inputStream, null, options);
+        }
+        if (options.outWidth <= 0 || options.outHeight <= 0)
+            throw new IOException("Image could not be decoded");
+
+        // Decode at the smallest power of two that is still at least the requested size
+        options.inJustDecodeBounds = false;
+        options.inSampleSize = sampleSize(options.outWidth, options.outHeight, maxSize);
+        Bitmap bitmap;
+        try (InputStream inputStream = open(uri)) {
+            bitmap = BitmapFactory.decodeStream(inputStream, null, options);
+        }
+        if (bitmap == null)
+            throw new IOException("Image could not be decoded");
+
+        // Scale down to the requested size and apply the EXIF orientation in one pass
+        Matrix matrix = orientation(readOrientation(uri));
+        float scale = Math.min(1f, (float) maxSize / Math.max(bitmap.getWidth(), bitmap.getHeight()));
+        if (scale < 1f)
+            matrix.postScale(scale, scale);
+
+        if (matrix.isIdentity())
+            return bitmap;
+
+        Bitmap transformed = Bitmap.createBitmap(bitmap, 0, 0, bitmap.getWidth(), bitmap.getHeight(), matrix, true);
+        if (transformed != bitmap)
+            bitmap.recycle();
+        return transformed;
+    }
+
+    // Downscale and re-encode the image into a file for every variant, the image is decoded only once
+    public void processVariants(Uri uri, File directory, String name) throws IOException {
+        Bitmap original = decode(uri, maxDimension);
+        try {
+            for (Variant variant : Variant.values()) {
+                Bitmap bitmap = variant.maxSize > 0 ? scale(original, variant.maxSize) : original;
+                try {
+                    encode(bitmap, variant.file(directory, name, getExtension()));
+                } finally {
+                    if (bitmap != original)
+                        bitmap.recycle();
+                }
+            }
+        } finally {
+            original.recycle();
+        }
+    }
+
+    // Read the dimensions of an image file without decoding it
+    public static int[] readSize(File file) {
+        BitmapFactory.Options options = new BitmapFactory.Options();
+        options.inJustDecodeBounds = true;
+        BitmapFactory.decodeFile(file.getAbsolutePath(), options);
+        return new int[]{Math.max(options.outWidth, 0), Math.max(options.outHeight, 0)};
+    }
+
+    // Encode a BlurHash placeholder of an image file, decoded at a few dozen pixels, null if it cannot be decoded
+    public static String blurHash(File file) {
+        int[] size = readSize(file);
+        BitmapFactory.Options options = new BitmapFactory.Options();
+        options.inSampleSize = sampleSize(size[0], size[1], PLACEHOLDER_SIZE);
+        Bitmap bitmap = BitmapFactory.decodeFile(file.getAbsolutePath(), options);
+        if (bitmap == null)
+            return null;
+
+        try {
+            int width = bitmap.getWidth();
+            int height = bitmap.getHeight();
+            int[] pixels = new int[width * height];
+            bitmap.getPixels(pixels, 0, width, 0, 0, width, height);
+
+            // More components along the longer side
+            return width >= height ? BlurHash.encode(pixels, width, height, 4, 3) : BlurHash.encode(pixels, width, height, 3, 4);
+        } finally {
+            bitmap.recycle();
+        }
+    }
+
+    private void encode(Bitmap bitmap, File file) throws IOException {
+        try (OutputStream outputStream = new FileOutputStream(file)) {
+            if (!bitmap.compress(format, quality, outputStream))
+                throw new IOException("Image could not be encoded");
+        }
+    }
+
+    private static Bitmap scale(Bitmap bitmap, int maxSize) {
+        float scale = (float) maxSize / Math.max(bitmap.getWidth(), bitmap.getHeight());
+        if (scale >= 1f)
+            return bitmap;
+        return Bitmap.createScaledBitmap(bitmap, Math.max(1, Math.round(bitmap.getWidth() * scale)), Math.max(1, Math.round(bitmap.getHeight() * scale)), true);
+    }
+
+    // File extension of the re-encoded images
+    public String getExtension() {
+        if (format == Bitmap.CompressFormat.JPEG)
+            return ".jpg";
+        if (format == Bitmap.CompressFormat.PNG)
+            return ".png";
+        return ".webp"; // Every other format is a kind of WebP
+    }
+
+    // Get the extension of an image file written by a processor, with the dot
+    public static String extensionOf(File file) {
+        String name = file.getName();
+        int dot = name.lastIndexOf('.');
+        return dot >= 0 ? name.substring(dot) : ".jpg";
+    }
+
+    // Get the content type of an image file written by a processor, from its extension
+    public static String contentTypeOf(File file) {
+        switch (extensionOf(file)) {
+            case ".webp":
+                return "image/webp";
+            case ".png":
+                return "image/png";
+            default:
+                return "image/jpeg";
+        }
+    }
+
+    private InputStream open(Uri uri) throws IOException {
+        InputStream inputStream = contentResolver.openInputStream(uri);
+        if (inputStream == null)
+            throw new IOException("Image could not be opened");
+        return inputStream;
+    }
+
+    private int readOrientation(Uri uri) {
+        try (InputStream inputStream = open(uri)) {
+            return new ExifInterface(inputStream).getAttributeInt(ExifInterface.TAG_ORIENTATION, ExifInterface.ORIENTATION_NORMAL);
+        } catch (IOException e) {
+            // Images without EXIF data are already upright
+            return ExifInterface.ORIENTATION_NORMAL;
+        }
+    }
+
+    private static int sampleSize(int width, int height, int maxSize) {
+        int sampleSize = 1;
+        while (Math.max(width, height) / (sampleSize * 2) >= maxSize)
+            sampleSize *= 2;
+        return sampleSize;
+    }
+
+    private static Matrix orientation(int orientation) {
+        Matrix matrix = new Matrix();
+        switch (orientation) {
+            case ExifInterface.ORIENTATION_FLIP_HORIZONTAL:
+                matrix.setScale(-1f, 1f);
+                break;
+            case ExifInterface.ORIENTATION_ROTATE_180:
+                matrix.setRotate(180f);
+                break;
+            case ExifInterface.ORIENTATION_FLIP_VERTICAL:
+                matrix.setScale(1f, -1f);
+                break;
+            case ExifInterface.ORIENTATION_TRANSPOSE:
+                matrix.setRotate(90f);
+                matrix.postScale(-1f, 1f);
+                break;
+            case ExifInterface.ORIENTATION_ROTATE_90:
+                matrix.setRotate(90f);
+                break;
+            case ExifInterface.ORIENTATION_TRANSVERSE:
+                matrix.setRotate(-90f);
+                matrix.postScale(-1f, 1f);
+                break;
+            case ExifInterface.ORIENTATION_ROTATE_270:
+                matrix.setRotate(-90f);
+                break;
+        }
+        return matrix;
+    }
+}
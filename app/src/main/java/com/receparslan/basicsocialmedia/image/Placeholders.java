@@ -0,0 +1,60 @@
+package com.receparslan.basicsocialmedia.image;
+
+import android.content.res.Resources;
+import android.graphics.Bitmap;
+import android.graphics.drawable.BitmapDrawable;
+import android.graphics.drawable.Drawable;
+import android.util.LruCache;
+
+import com.receparslan.basicsocialmedia.model.ImageVariant;
+
+/**
+ * Decodes the BlurHash placeholders of the images into small bitmaps.
+ * <p>
+ * A placeholder is decoded at a few dozen pixels in the aspect ratio of its image and stretched
+ * over the view with filtering, which blurs it further. The bitmaps are cached by hash, so binding
+ * a row again only costs a lookup. Called on the main thread while binding rows.
+ */
+public final class Placeholders {
+
+    // Longest side of a decoded placeholder in pixels
+    private static final int SIZE = 32;
+
+    // Number of decoded placeholders kept in memory
+    private static final int MEMORY_SIZE = 64;
+
+    private static final LruCache<String, Bitmap> bitmaps = new LruCache<>(MEMORY_SIZE);
+
+    private Placeholders() {
+    }
+
+    // Get the placeholder of the image, null if it has none
+    public static Drawable get(Resources resources, ImageVariant image) {
+        String hash = image.getBlurHash();
+        if (hash == null)
+            return null;
+
+        Bitmap bitmap = bitmaps.get(hash);
+        if (bitmap == null) {
+            int width = SIZE;
+            int height = SIZE;
+            if (image.getWidth() > 0 && image.getHeight() > 0) {
+                if (image.getWidth() >= image.getHeight())
+                    height = Math.max(1, SIZE * image.getHeight() / image.getWidth());
+                else
+                    width = Math.max(1, SIZE * image.getWidth() / image.getHeight());
+            }
+
+            int[] pixels = BlurHash.decode(hash, width, height);
+            if (pixels == null)
+                return null;
+
+            bitmap = Bitmap.createBitmap(pixels, width, height, Bitmap.Config.ARGB_8888);
+            bitmaps.put(hash, bitmap);
+        }
+
+        BitmapDrawable drawable = new BitmapDrawable(resources, bitmap);
+        drawable.setFilterBitmap(true);
+        return drawable;
+    }
+}
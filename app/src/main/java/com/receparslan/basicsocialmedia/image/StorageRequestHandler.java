@@ -0,0 +1,87 @@
+package com.receparslan.basicsocialmedia.image;
+
+import android.net.Uri;
+
+import androidx.annotation.NonNull;
+
+import com.squareup.picasso.NetworkPolicy;
+import com.squareup.picasso.Picasso;
+import com.squareup.picasso.Request;
+import com.squareup.picasso.RequestHandler;
+
+import java.io.IOException;
+import java.util.concurrent.ExecutionException;
+
+import okhttp3.CacheControl;
+import okhttp3.OkHttpClient;
+import okhttp3.Response;
+import okhttp3.ResponseBody;
+
+/**
+ * Loads images addressed by their storage path, as {@code storage:images/<name>.jpg}.
+ * <p>
+ * The path is resolved to its download URL with {@link StorageUrls} on the Picasso thread, then the
+ * image is fetched with the same client as every other image, so it shares the disk cache.
+ */
+final class StorageRequestHandler extends RequestHandler {
+
+    private static final String SCHEME = "storage";
+
+    private final OkHttpClient client;
+    private final StorageUrls storageUrls;
+
+    StorageRequestHandler(OkHttpClient client, StorageUrls storageUrls) {
+        this.client = client;
+        this.storageUrls = storageUrls;
+    }
+
+    // Get the URI of the image stored under the path
+    static Uri uriOf(String path) {
+        return new Uri.Builder().scheme(SCHEME).opaquePart(path).build();
+    }
+
+    @Override
+    public boolean canHandleRequest(Request data) {
+        return data.uri != null && SCHEME.equals(data.uri.getScheme());
+    }
+
+    @Override
+    public Result load(Request request, int networkPolicy) throws IOException {
+        String path = request.uri.getSchemeSpecificPart();
+        String url;
+        try {
+            url = storageUrls.resolve(path);
+        } catch (ExecutionException e) {
+            throw new IOException("Download URL of " + path + " could not be resolved", e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException(e);
+        }
+
+        Response response = client.newCall(new okhttp3.Request.Builder().url(url).cacheControl(cacheControl(networkPolicy)).build()).execute();
+        ResponseBody body = response.body();
+        if (!response.isSuccessful() || body == null) {
+            response.close();
+
+            // The token of the URL may have been revoked, resolve it again next time
+            if (response.code() == 403 || response.code() == 404)
+                storageUrls.invalidate(path);
+            throw new IOException("Image " + path + " could not be loaded: " + response.code());
+        }
+
+        return new Result(body.source(), response.cacheResponse() != null && response.networkResponse() == null ? Picasso.LoadedFrom.DISK : Picasso.LoadedFrom.NETWORK);
+    }
+
+    @NonNull
+    private static CacheControl cacheControl(int networkPolicy) {
+        if (NetworkPolicy.isOfflineOnly(networkPolicy))
+            return CacheControl.FORCE_CACHE;
+
+        CacheControl.Builder builder = new CacheControl.Builder();
+        if (!NetworkPolicy.shouldReadFromDiskCache(networkPolicy))
+            builder.noCache();
+        if (!NetworkPolicy.shouldWriteToDiskCache(networkPolicy))
+            builder.noStore();
+        return builder.build();
+    }
+}
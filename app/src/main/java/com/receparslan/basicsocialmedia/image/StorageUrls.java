@@ -0,0 +1,63 @@
+package com.receparslan.basicsocialmedia.image;
+
+import android.content.ContentValues;
+import android.content.Context;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.util.LruCache;
+
+import com.google.android.gms.tasks.Tasks;
+import com.google.firebase.storage.FirebaseStorage;
+import com.receparslan.basicsocialmedia.data.LocalDatabase;
+
+import java.util.concurrent.ExecutionException;
+
+/**
+ * Resolves storage paths of images to their download URLs on the reading side.
+ * <p>
+ * Posts store only the storage paths of their images, so sharing a post needs no download URL
+ * round trip. A path is resolved the first time its image is loaded and the URL is kept in memory
+ * and in the database, so an image costs one lookup per install rather than one per post.
+ */
+public final class StorageUrls {
+
+    // Number of URLs kept in memory
+    private static final int MEMORY_SIZE = 512;
+
+    private final LocalDatabase database;
+    private final LruCache<String, String> memory = new LruCache<>(MEMORY_SIZE);
+
+    public StorageUrls(Context context) {
+        this.database = LocalDatabase.get(context);
+    }
+
+    // Get the download URL of the path, blocks on the network for an unknown path, call it off the main thread
+    public String resolve(String path) throws ExecutionException, InterruptedException {
+        String url = memory.get(path);
+        if (url != null)
+            return url;
+
+        try (Cursor cursor = database.getReadableDatabase().query(LocalDatabase.TABLE_IMAGE_URLS, new String[]{"url"}, "path = ?", new String[]{path}, null, null, null)) {
+            if (cursor.moveToFirst())
+                url = cursor.getString(0);
+        }
+
+        if (url == null) {
+            url = Tasks.await(FirebaseStorage.getInstance().getReference().child(path).getDownloadUrl()).toString();
+
+            ContentValues values = new ContentValues();
+            values.put("path", path);
+            values.put("url", url);
+            database.getWritableDatabase().insertWithOnConflict(LocalDatabase.TABLE_IMAGE_URLS, null, values, SQLiteDatabase.CONFLICT_REPLACE);
+        }
+
+        memory.put(path, url);
+        return url;
+    }
+
+    // Forget the URL of the path, for a URL whose token has been revoked
+    public void invalidate(String path) {
+        memory.remove(path);
+        database.getWritableDatabase().delete(LocalDatabase.TABLE_IMAGE_URLS, "path = ?", new String[]{path});
+    }
+}
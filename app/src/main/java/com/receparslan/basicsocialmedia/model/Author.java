@@ -0,0 +1,55 @@
+package com.receparslan.basicsocialmedia.model;
+
+import java.util.Objects;
+
+/**
+ * Author of posts, interned in the {@link AuthorTable} so that every post of the same author
+ * shares one instance instead of its own copies of the strings.
+ */
+public final class Author {
+
+    // Position in the author table
+    private final int index;
+
+    // Firebase Auth UID, stable while the email can change, null for posts written before it was stored
+    private final String uid;
+
+    private final String email;
+    private final String displayName;
+
+    Author(int index, String uid, String email, String displayName) {
+        this.index = index;
+        this.uid = uid;
+        this.email = email;
+        this.displayName = displayName;
+    }
+
+    public int getIndex() {
+        return index;
+    }
+
+    public String getUid() {
+        return uid;
+    }
+
+    public String getEmail() {
+        return email;
+    }
+
+    public String getDisplayName() {
+        return displayName;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof Author)) return false;
+        Author author = (Author) o;
+        return Objects.equals(uid, author.uid) && Objects.equals(email, author.email) && Objects.equals(displayName, author.displayName);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(uid, email, displayName);
+    }
+}
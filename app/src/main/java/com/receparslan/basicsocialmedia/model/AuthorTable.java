@@ -0,0 +1,53 @@
+package com.receparslan.basicsocialmedia.model;
+
+import java.util.Arrays;
+import java.util.HashMap;
+
+/**
+ * Process-wide table of the authors of the feed.
+ * <p>
+ * Posts by the same few authors repeat the same UID, email and display name thousands of times in a
+ * long session, so each author is kept once and posts refer to it by its index. Authors are only
+ * ever added, an index stays valid for the life of the process.
+ * <p>
+ * Authors are interned on the feed executor and read on the main thread, so the table is
+ * synchronized.
+ */
+public final class AuthorTable {
+
+    private static final AuthorTable SHARED = new AuthorTable();
+
+    // Authors by themselves, two authors are equal if their UID, email and display name are
+    private final HashMap<Author, Author> authorsByKey = new HashMap<>();
+
+    // Authors by index
+    private Author[] authors = new Author[16];
+    private int size;
+
+    public static AuthorTable get() {
+        return SHARED;
+    }
+
+    // Get the author with the UID, email and display name, adding it on first use
+    public synchronized Author intern(String uid, String email, String displayName) {
+        Author key = new Author(-1, uid, email, displayName);
+        Author author = authorsByKey.get(key);
+        if (author == null) {
+            if (size == authors.length)
+                authors = Arrays.copyOf(authors, size * 2);
+
+            author = new Author(size, uid, email, displayName);
+            authors[size++] = author;
+            authorsByKey.put(author, author);
+        }
+        return author;
+    }
+
+    public synchronized Author get(int index) {
+        return authors[index];
+    }
+
+    public synchronized int size() {
+        return size;
+    }
+}
\ No newline at end of file
@@ -0,0 +1,343 @@
+package com.receparslan.basicsocialmedia.model;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * Immutable, column oriented snapshot of the feed.
+ * <p>
+ * Instead of one object per post with its own strings, every field is kept in an array indexed by
+ * the position of the post: authors as indices into the {@link AuthorTable}, dates as epoch millis
+ * and document IDs packed into two longs. A long session then holds a handful of arrays instead of
+ * hundreds of thousands of small objects, and two snapshots are diffed by comparing primitives. The
+ * text and the formatted date of a row are built from these columns when the row is bound.
+ * <p>
+ * Firestore auto IDs are 20 characters of a 62 character alphabet, so each half of an ID fits into
+ * a long. IDs of any other shape are kept as strings next to the packed ones. The position of an ID
+ * is found in a hash table of positions, built on the first lookup, so snapshots that are never
+ * searched do not pay for it.
+ */
+public final class CompactFeed {
+
+    public static final CompactFeed EMPTY = new Builder(0).build();
+
+    private static final String ID_ALPHABET = "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789";
+    private static final int ID_LENGTH = 20;
+    private static final int ID_HALF_LENGTH = ID_LENGTH / 2;
+
+    // Packed half of an ID that is not an auto ID, packed halves are never negative
+    private static final long IRREGULAR_ID = -1L;
+
+    private static final ImageVariant[] NO_IMAGES = new ImageVariant[0];
+
+    private final int size;
+
+    // Document IDs, the first and the second half packed in base 62
+    private final long[] idHighs;
+    private final long[] idLows;
+
+    // IDs that cannot be packed, null if every ID is an auto ID
+    private final String[] irregularIds;
+
+    // Epoch millis, 0 if the date is not known yet
+    private final long[] dates;
+
+    // Whether each post is still being uploaded
+    private final boolean[] pendings;
+
+    // Positions of the authors in the author table
+    private final int[] authors;
+
+    private final String[] comments;
+
+    // Image variants grouped by image, each from the smallest to the original image
+    private final ImageVariant[][] images;
+
+    // Open addressing table of position + 1 by ID hash, 0 for an empty slot, null until the first lookup
+    private volatile int[] positions;
+
+    private CompactFeed(Builder builder) {
+        size = builder.size;
+        idHighs = Arrays.copyOf(builder.idHighs, size);
+        idLows = Arrays.copyOf(builder.idLows, size);
+        irregularIds = builder.irregularIds != null ? Arrays.copyOf(builder.irregularIds, size) : null;
+        dates = Arrays.copyOf(builder.dates, size);
+        pendings = Arrays.copyOf(builder.pendings, size);
+        authors = Arrays.copyOf(builder.authors, size);
+        comments = Arrays.copyOf(builder.comments, size);
+        images = Arrays.copyOf(builder.images, size);
+    }
+
+    // Build the feed of the posts
+    public static CompactFeed of(List<Post> posts) {
+        Builder builder = new Builder(posts.size());
+        for (Post post : posts)
+            builder.add(post);
+        return builder.build();
+    }
+
+    public int size() {
+        return size;
+    }
+
+    // Unpack the document ID of the post, this allocates a string
+    public String getId(int position) {
+        if (idHighs[position] == IRREGULAR_ID)
+            return irregularIds[position];
+
+        char[] id = new char[ID_LENGTH];
+        unpack(idHighs[position], id, 0);
+        unpack(idLows[position], id, ID_HALF_LENGTH);
+        return new String(id);
+    }
+
+    // Whether the post has the same document ID as the post of the other feed, without allocating
+    public boolean sameId(int position, CompactFeed other, int otherPosition) {
+        if (idHighs[position] != other.idHighs[otherPosition] || idLows[position] != other.idLows[otherPosition])
+            return false;
+        return idHighs[position] != IRREGULAR_ID || irregularIds[position].equals(other.irregularIds[otherPosition]);
+    }
+
+    // Whether the post shows the same as the post of the other feed
+    public boolean sameContents(int position, CompactFeed other, int otherPosition) {
+        return dates[position] == other.dates[otherPosition]
+                && pendings[position] == other.pendings[otherPosition]
+                && authors[position] == other.authors[otherPosition]
+                && Objects.equals(comments[position], other.comments[otherPosition])
+                && (images[position] == other.images[otherPosition] || Arrays.equals(images[position], other.images[otherPosition]));
+    }
+
+    // Get the position of the post with the document ID, -1 if it is not in the feed
+    public int indexOf(String id) {
+        long high = pack(id, 0);
+        long low = pack(id, ID_HALF_LENGTH);
+        if (high == IRREGULAR_ID || low == IRREGULAR_ID) {
+            high = IRREGULAR_ID;
+            low = IRREGULAR_ID;
+        }
+
+        int[] table = positions;
+        if (table == null)
+            positions = table = buildPositions();
+
+        int mask = table.length - 1;
+        for (int slot = hash(high, low, id) & mask; table[slot] != 0; slot = (slot + 1) & mask) {
+            int i = table[slot] - 1;
+            if (idHighs[i] == high && idLows[i] == low && (high != IRREGULAR_ID || id.equals(irregularIds[i])))
+                return i;
+        }
+        return -1;
+    }
+
+    // Hash every position by its ID, at most two thirds full so probes stay short
+    private int[] buildPositions() {
+        int capacity = 2;
+        while (capacity * 2 < size * 3)
+            capacity <<= 1;
+
+        int[] table = new int[capacity];
+        int mask = capacity - 1;
+        for (int i = 0; i < size; i++) {
+            int slot = hash(idHighs[i], idLows[i], idHighs[i] == IRREGULAR_ID ? irregularIds[i] : null) & mask;
+            while (table[slot] != 0) {
+                if (sameId(table[slot] - 1, this, i))
+                    break; // A repeated ID is found at its first position
+                slot = (slot + 1) & mask;
+            }
+            if (table[slot] == 0)
+                table[slot] = i + 1;
+        }
+        return table;
+    }
+
+    private static int hash(long high, long low, String irregularId) {
+        if (high == IRREGULAR_ID)
+            return irregularId.hashCode() * 0x9E3779B9;
+
+        long hash = (high * 0x9E3779B97F4A7C15L) ^ low;
+        hash ^= hash >>> 29;
+        hash *= 0xBF58476D1CE4E5B9L;
+        return (int) (hash ^ (hash >>> 32));
+    }
+
+    public long getDate(int position) {
+        return dates[position];
+    }
+
+    public boolean isPending(int position) {
+        return pendings[position];
+    }
+
+    public Author getAuthor(int position) {
+        return AuthorTable.get().get(authors[position]);
+    }
+
+    public String getEmail(int position) {
+        return getAuthor(position).getEmail();
+    }
+
+    public String getComment(int position) {
+        return comments[position];
+    }
+
+    public List<ImageVariant> getImages(int position) {
+        return Arrays.asList(images[position]);
+    }
+
+    // Get the smallest variant of the first image that covers the width, or its largest one if none does
+    public ImageVariant getImage(int position, int width) {
+        ImageVariant largest = null;
+        for (ImageVariant image : images[position]) {
+            if (image.getImage() != 0)
+                break;
+            if (image.covers(width))
+                return image;
+            largest = image;
+        }
+        return largest;
+    }
+
+    // Number of images of the post
+    public int getImageCount(int position) {
+        ImageVariant[] variants = images[position];
+        return variants.length == 0 ? 0 : variants[variants.length - 1].getImage() + 1;
+    }
+
+    // Original variant of every image of the post
+    public List<ImageVariant> getOriginals(int position) {
+        ImageVariant[] variants = images[position];
+        ArrayList<ImageVariant> originals = new ArrayList<>();
+        for (int i = 0; i < variants.length; i++) {
+            if (i == variants.length - 1 || variants[i + 1].getImage() != variants[i].getImage())
+                originals.add(variants[i]);
+        }
+        return originals;
+    }
+
+    // Get the post at the position as an object, for the few places that need one
+    public Post toPost(int position) {
+        ImageVariant cover = getImage(position, Integer.MAX_VALUE);
+        return new Post(getId(position), getAuthor(position), comments[position], cover != null ? cover.getUrl() : null, getImages(position), dates[position], pendings[position]);
+    }
+
+    // Pack ten characters of an auto ID, IRREGULAR_ID if the ID is not an auto ID
+    private static long pack(String id, int start) {
+        if (id.length() != ID_LENGTH)
+            return IRREGULAR_ID;
+
+        long value = 0;
+        for (int i = start; i < start + ID_HALF_LENGTH; i++) {
+            int digit = ID_ALPHABET.indexOf(id.charAt(i));
+            if (digit < 0)
+                return IRREGULAR_ID;
+            value = value * ID_ALPHABET.length() + digit;
+        }
+        return value;
+    }
+
+    private static void unpack(long value, char[] id, int start) {
+        for (int i = start + ID_HALF_LENGTH - 1; i >= start; i--) {
+            id[i] = ID_ALPHABET.charAt((int) (value % ID_ALPHABET.length()));
+            value /= ID_ALPHABET.length();
+        }
+    }
+
+    /**
+     * Builds a {@link CompactFeed} post by post, the arrays grow like an {@code ArrayList}.
+     */
+    public static final class Builder {
+
+        private int size;
+        private long[] idHighs;
+        private long[] idLows;
+        private String[] irregularIds;
+        private long[] dates;
+        private boolean[] pendings;
+        private int[] authors;
+        private String[] comments;
+        private ImageVariant[][] images;
+
+        public Builder(int capacity) {
+            idHighs = new long[capacity];
+            idLows = new long[capacity];
+            dates = new long[capacity];
+            pendings = new boolean[capacity];
+            authors = new int[capacity];
+            comments = new String[capacity];
+            images = new ImageVariant[capacity][];
+        }
+
+        public Builder add(Post post) {
+            ensureCapacity(size + 1);
+
+            long high = pack(post.getId(), 0);
+            long low = pack(post.getId(), ID_HALF_LENGTH);
+            if (high == IRREGULAR_ID || low == IRREGULAR_ID) {
+                if (irregularIds == null)
+                    irregularIds = new String[idHighs.length];
+                irregularIds[size] = post.getId();
+                high = IRREGULAR_ID;
+                low = IRREGULAR_ID;
+            }
+
+            idHighs[size] = high;
+            idLows[size] = low;
+            dates[size] = post.getDate();
+            pendings[size] = post.isPending();
+            authors[size] = post.getAuthor().getIndex();
+            comments[size] = post.getComment();
+            images[size] = post.getImages().isEmpty() ? NO_IMAGES : post.getImages().toArray(NO_IMAGES);
+            size++;
+            return this;
+        }
+
+        // Add the posts of another feed, except the ones whose positions are set in skipped
+        public Builder addAll(CompactFeed feed, BitSet skipped) {
+            ensureCapacity(size + feed.size);
+
+            for (int i = 0; i < feed.size; i++) {
+                if (skipped != null && skipped.get(i))
+                    continue;
+
+                if (feed.idHighs[i] == IRREGULAR_ID) {
+                    if (irregularIds == null)
+                        irregularIds = new String[idHighs.length];
+                    irregularIds[size] = feed.irregularIds[i];
+                }
+
+                idHighs[size] = feed.idHighs[i];
+                idLows[size] = feed.idLows[i];
+                dates[size] = feed.dates[i];
+                pendings[size] = feed.pendings[i];
+                authors[size] = feed.authors[i];
+                comments[size] = feed.comments[i];
+                images[size] = feed.images[i];
+                size++;
+            }
+            return this;
+        }
+
+        public CompactFeed build() {
+            return new CompactFeed(this);
+        }
+
+        private void ensureCapacity(int capacity) {
+            if (capacity <= idHighs.length)
+                return;
+
+            int newCapacity = Math.max(capacity, idHighs.length + (idHighs.length >> 1));
+            idHighs = Arrays.copyOf(idHighs, newCapacity);
+            idLows = Arrays.copyOf(idLows, newCapacity);
+            if (irregularIds != null)
+                irregularIds = Arrays.copyOf(irregularIds, newCapacity);
+            dates = Arrays.copyOf(dates, newCapacity);
+            pendings = Arrays.copyOf(pendings, newCapacity);
+            authors = Arrays.copyOf(authors, newCapacity);
+            comments = Arrays.copyOf(comments, newCapacity);
+            images = Arrays.copyOf(images, newCapacity);
+        }
+    }
+}
@@ -0,0 +1,96 @@
+package com.receparslan.basicsocialmedia.model;
+
+import java.util.Objects;
+
+/**
+ * One resolution of a post image, stored next to the others under its own storage path.
+ * <p>
+ * Posts written since multi-image posts only store the path, the download URL is resolved when the
+ * image is first loaded. A post with several images has variants for each of them, told apart by
+ * the index of the image in the post. Their dimensions and placeholder let a row be laid out at its
+ * final size before the image is loaded.
+ */
+public final class ImageVariant {
+
+    // Part of a width a variant has to cover to be shown at it, a slight upscale is not visible in the feed
+    private static final float MIN_COVERAGE = 0.75f;
+
+    private final String path;
+
+    // Download URL, null if it is resolved from the path when the image is loaded
+    private final String url;
+
+    // Position of the image in the post
+    private final int image;
+
+    // Dimensions in pixels, 0 if they are not known
+    private final int width;
+    private final int height;
+
+    // BlurHash of the image shown until it is loaded, null if the post has none
+    private final String blurHash;
+
+    public ImageVariant(String path, String url, int width, int height) {
+        this(path, url, 0, width, height);
+    }
+
+    public ImageVariant(String path, String url, int image, int width, int height) {
+        this(path, url, image, width, height, null);
+    }
+
+    public ImageVariant(String path, String url, int image, int width, int height, String blurHash) {
+        this.path = path;
+        this.url = url;
+        this.image = image;
+        this.width = width;
+        this.height = height;
+        this.blurHash = blurHash;
+    }
+
+    public String getPath() {
+        return path;
+    }
+
+    public String getUrl() {
+        return url;
+    }
+
+    public int getImage() {
+        return image;
+    }
+
+    // Key of the image across caches, the storage path if it is known
+    public String getKey() {
+        return path != null ? path : url;
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+
+    public String getBlurHash() {
+        return blurHash;
+    }
+
+    // Whether the variant is wide enough to be shown at the width
+    public boolean covers(int width) {
+        return this.width >= width * MIN_COVERAGE;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof ImageVariant)) return false;
+        ImageVariant that = (ImageVariant) o;
+        return image == that.image && width == that.width && height == that.height && Objects.equals(path, that.path) && Objects.equals(url, that.url) && Objects.equals(blurHash, that.blurHash);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(path, url, image, width, height, blurHash);
+    }
+}
@@ -2,55 +2,119 @@ package com.receparslan.basicsocialmedia.model;
 
 import android.net.Uri;
 
-public class Post {
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * Immutable post of the feed.
+ * <p>
+ * The author is interned in the {@link AuthorTable} and shared by all of its posts, the date is
+ * kept as epoch millis and formatted only when it is displayed, the image URL is parsed into a
+ * {@link Uri} the first time it is requested. The image variants are sorted by the image they belong
+ * to and then from the smallest to the largest, the last variant of each image being the original.
+ * <p>
+ * A pending post is a post of the outbox shown before its upload has finished, its images are the
+ * local files and its date is the time it was created on the device.
+ */
+public final class Post {
+
+    private final String id;
+    private final Author author;
+    private final String comment;
+    private final String imageUrl;
+    private final List<ImageVariant> images;
+    private final long date;
+    private final boolean pending;
 
     private Uri imageUri;
 
-    private String displayName;
-    private String email;
-    private String date;
-    private String comment;
+    public Post(String id, Author author, String comment, String imageUrl, List<ImageVariant> images, long date) {
+        this(id, author, comment, imageUrl, images, date, false);
+    }
 
-    public Post() {
+    public Post(String id, Author author, String comment, String imageUrl, List<ImageVariant> images, long date, boolean pending) {
+        this.id = id;
+        this.author = author;
+        this.comment = comment;
+        this.imageUrl = imageUrl;
+        this.images = images;
+        this.date = date;
+        this.pending = pending;
     }
 
-    public Uri getImageUri() {
-        return imageUri;
+    public String getId() {
+        return id;
     }
 
-    public void setImageUri(Uri imageUri) {
-        this.imageUri = imageUri;
+    public Author getAuthor() {
+        return author;
     }
 
     public String getDisplayName() {
-        return displayName;
+        return author.getDisplayName();
     }
 
-    public void setDisplayName(String displayName) {
-        this.displayName = displayName;
+    public String getEmail() {
+        return author.getEmail();
     }
 
-    public String getEmail() {
-        return email;
+    public String getComment() {
+        return comment;
     }
 
-    public void setEmail(String email) {
-        this.email = email;
+    public String getImageUrl() {
+        return imageUrl;
     }
 
-    public String getDate() {
+    public Uri getImageUri() {
+        if (imageUri == null && imageUrl != null)
+            imageUri = Uri.parse(imageUrl);
+        return imageUri;
+    }
+
+    public List<ImageVariant> getImages() {
+        return images;
+    }
+
+    // Get the smallest variant of the first image that covers the width, or its largest one if none does
+    public ImageVariant getImage(int width) {
+        ImageVariant largest = null;
+        for (ImageVariant image : images) {
+            if (image.getImage() != 0)
+                break;
+            if (image.covers(width))
+                return image;
+            largest = image;
+        }
+        return largest;
+    }
+
+    // Epoch millis of the post, 0 if the date is not known yet
+    public long getDate() {
         return date;
     }
 
-    public void setDate(String date) {
-        this.date = date;
+    // Whether the post is still being uploaded
+    public boolean isPending() {
+        return pending;
     }
 
-    public String getComment() {
-        return comment;
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof Post)) return false;
+        Post post = (Post) o;
+        return date == post.date
+                && pending == post.pending
+                && Objects.equals(id, post.id)
+                && Objects.equals(author, post.author)
+                && Objects.equals(comment, post.comment)
+                && Objects.equals(imageUrl, post.imageUrl)
+                && Objects.equals(images, post.images);
     }
 
-    public void setComment(String comment) {
-        this.comment = comment;
+    @Override
+    public int hashCode() {
+        return Objects.hash(id, author, comment, imageUrl, images, date, pending);
     }
 }
@@ -0,0 +1,44 @@
+package com.receparslan.basicsocialmedia.model;
+
+import java.util.Objects;
+
+/**
+ * The text and the formatted date of a feed row, built when the row is bound.
+ * <p>
+ * Rows are only kept for the posts around the screen, so the feed itself holds no strings per post.
+ * A row remembers the author, comment and date it is built from and is built again when they change.
+ */
+public final class PostRow {
+
+    // Index of the author in the author table, comment and date the row is built from
+    private final int author;
+    private final String comment;
+    private final long date;
+
+    // Display name and comment, styled
+    private final CharSequence text;
+
+    // Formatted date
+    private final String dateText;
+
+    public PostRow(int author, String comment, long date, CharSequence text, String dateText) {
+        this.author = author;
+        this.comment = comment;
+        this.date = date;
+        this.text = text;
+        this.dateText = dateText;
+    }
+
+    // Whether the row is built from the post at the position of the feed
+    public boolean isOf(CompactFeed feed, int position) {
+        return feed.getAuthor(position).getIndex() == author && feed.getDate(position) == date && Objects.equals(feed.getComment(position), comment);
+    }
+
+    public CharSequence getText() {
+        return text;
+    }
+
+    public String getDateText() {
+        return dateText;
+    }
+}
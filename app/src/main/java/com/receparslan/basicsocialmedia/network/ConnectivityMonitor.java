@@ -0,0 +1,92 @@
+package com.receparslan.basicsocialmedia.network;
+
+import android.content.Context;
+import android.net.ConnectivityManager;
+import android.net.Network;
+import android.net.NetworkCapabilities;
+
+import androidx.annotation.NonNull;
+import androidx.lifecycle.LiveData;
+import androidx.lifecycle.MutableLiveData;
+
+/**
+ * Process-wide monitor of the default network.
+ * <p>
+ * Registers a single {@link ConnectivityManager.NetworkCallback} for the lifetime of the process and
+ * publishes every change of the {@link NetworkState} to a {@link LiveData}, so screens observe it for
+ * their own lifecycle without polling.
+ */
+public final class ConnectivityMonitor {
+
+    private static volatile ConnectivityMonitor instance;
+
+    private final ConnectivityManager connectivityManager;
+    private final MutableLiveData<NetworkState> state;
+
+    // Last published state, guarded by this monitor
+    private NetworkState lastState;
+
+    private ConnectivityMonitor(Context context) {
+        connectivityManager = (ConnectivityManager) context.getSystemService(Context.CONNECTIVITY_SERVICE);
+        lastState = toState(connectivityManager.getNetworkCapabilities(connectivityManager.getActiveNetwork()));
+        state = new MutableLiveData<>(lastState);
+
+        connectivityManager.registerDefaultNetworkCallback(new ConnectivityManager.NetworkCallback() {
+            @Override
+            public void onAvailable(@NonNull Network network) {
+                update(toState(connectivityManager.getNetworkCapabilities(network)));
+            }
+
+            @Override
+            public void onCapabilitiesChanged(@NonNull Network network, @NonNull NetworkCapabilities networkCapabilities) {
+                update(toState(networkCapabilities));
+            }
+
+            @Override
+            public void onLost(@NonNull Network network) {
+                update(NetworkState.OFFLINE);
+            }
+        });
+    }
+
+    // Start monitoring, called once from the application
+    public static void install(Context context) {
+        get(context);
+    }
+
+    public static ConnectivityMonitor get(Context context) {
+        if (instance == null) {
+            synchronized (ConnectivityMonitor.class) {
+                if (instance == null)
+                    instance = new ConnectivityMonitor(context.getApplicationContext());
+            }
+        }
+        return instance;
+    }
+
+    // Observable state of the default network
+    public LiveData<NetworkState> getState() {
+        return state;
+    }
+
+    // Current state of the default network, read on the main thread
+    public NetworkState getCurrentState() {
+        NetworkState current = state.getValue();
+        return current != null ? current : NetworkState.OFFLINE;
+    }
+
+    // Called on the connectivity thread, only changes are published
+    private synchronized void update(NetworkState newState) {
+        if (!newState.equals(lastState)) {
+            lastState = newState;
+            state.postValue(newState);
+        }
+    }
+
+    private static NetworkState toState(NetworkCapabilities capabilities) {
+        if (capabilities == null || !capabilities.hasCapability(NetworkCapabilities.NET_CAPABILITY_INTERNET))
+            return NetworkState.OFFLINE;
+
+        return new NetworkState(true, !capabilities.hasCapability(NetworkCapabilities.NET_CAPABILITY_NOT_METERED));
+    }
+}
@@ -0,0 +1,43 @@
+package com.receparslan.basicsocialmedia.network;
+
+import java.util.Objects;
+
+/**
+ * State of the default network.
+ */
+public final class NetworkState {
+
+    public static final NetworkState OFFLINE = new NetworkState(false, false);
+
+    // Whether the network has internet capability
+    private final boolean online;
+
+    // Whether the network may charge for traffic
+    private final boolean metered;
+
+    public NetworkState(boolean online, boolean metered) {
+        this.online = online;
+        this.metered = metered;
+    }
+
+    public boolean isOnline() {
+        return online;
+    }
+
+    public boolean isMetered() {
+        return metered;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof NetworkState)) return false;
+        NetworkState that = (NetworkState) o;
+        return online == that.online && metered == that.metered;
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(online, metered);
+    }
+}
@@ -0,0 +1,45 @@
+package com.receparslan.basicsocialmedia.network;
+
+import androidx.appcompat.app.AlertDialog;
+import androidx.appcompat.app.AppCompatActivity;
+
+/**
+ * Shows the "No Internet Connection" dialog of a screen while the device is offline.
+ * <p>
+ * The dialog observes the {@link ConnectivityMonitor} for the lifecycle of the activity, so it
+ * stops observing by itself when the activity is destroyed.
+ */
+public final class NoConnectionDialog {
+
+    private final AppCompatActivity activity;
+    private AlertDialog dialog;
+
+    private NoConnectionDialog(AppCompatActivity activity) {
+        this.activity = activity;
+    }
+
+    // Show the dialog whenever the activity is offline
+    public static void bind(AppCompatActivity activity) {
+        NoConnectionDialog noConnectionDialog = new NoConnectionDialog(activity);
+        ConnectivityMonitor.get(activity).getState().observe(activity, noConnectionDialog::onStateChanged);
+    }
+
+    private void onStateChanged(NetworkState state) {
+        if (state.isOnline()) {
+            // Close the dialog once the connection is back
+            if (dialog != null) {
+                dialog.dismiss();
+                dialog = null;
+            }
+        } else if (dialog == null && !activity.isFinishing()) {
+            AlertDialog.Builder builder = new AlertDialog.Builder(activity);
+            builder.setTitle("No Internet Connection");
+            builder.setMessage("Please check your internet connection and try again.");
+            builder.setPositiveButton("OK", (dialogInterface, i) -> {
+                dialogInterface.dismiss();
+                activity.finish();
+            });
+            dialog = builder.show();
+        }
+    }
+}
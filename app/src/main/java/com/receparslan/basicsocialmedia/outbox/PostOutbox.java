@@ -0,0 +1,263 @@
+package com.receparslan.basicsocialmedia.outbox;
+
+import android.content.ContentValues;
+import android.content.Context;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.net.Uri;
+
+import androidx.work.BackoffPolicy;
+import androidx.work.Constraints;
+import androidx.work.Data;
+import androidx.work.ExistingWorkPolicy;
+import androidx.work.NetworkType;
+import androidx.work.OneTimeWorkRequest;
+import androidx.work.WorkManager;
+
+import com.receparslan.basicsocialmedia.data.LocalDatabase;
+import com.receparslan.basicsocialmedia.image.ImageProcessor;
+import com.receparslan.basicsocialmedia.model.AuthorTable;
+import com.receparslan.basicsocialmedia.model.ImageVariant;
+import com.receparslan.basicsocialmedia.model.Post;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Durable queue of the posts waiting to be uploaded.
+ * <p>
+ * Each post is stored under a client-generated post ID together with its processed image files, so
+ * it survives process death and is uploaded by {@link PostUploadWorker} once the network is
+ * available. Adding the same post ID twice has no effect, which makes submitting a post idempotent.
+ * <p>
+ * Queued posts are shown at the top of the feed as pending posts until their document arrives. A
+ * post whose upload has failed for good is marked as failed and hidden, until it is retried or
+ * removed.
+ */
+public class PostOutbox {
+
+    // Tag of every upload work, to observe them all at once
+    public static final String WORK_TAG = "post-upload";
+
+    // Delay before the first retry, doubled on every attempt
+    private static final long BACKOFF_SECONDS = 10;
+
+    // Most images a post can have
+    public static final int MAX_IMAGES = 10;
+
+    private final Context context;
+    private final LocalDatabase database;
+
+    public PostOutbox(Context context) {
+        this.context = context.getApplicationContext();
+        this.database = LocalDatabase.get(context);
+    }
+
+    // Directory of the images waiting to be uploaded
+    public static File imageDirectory(Context context) {
+        File directory = new File(context.getFilesDir(), "outbox");
+        //noinspection ResultOfMethodCallIgnored
+        directory.mkdirs();
+        return directory;
+    }
+
+    // Storage path of an image file of the outbox
+    public static String storagePath(File file) {
+        return "images/" + file.getName();
+    }
+
+    // Name of the files of an image of the post, the first image is named after the post alone
+    public static String imageName(String postId, int image) {
+        return image == 0 ? postId : postId + "_" + image;
+    }
+
+    // Add the post to the outbox and schedule its upload, returns false if it is already queued
+    public boolean add(Entry entry) {
+        ContentValues values = new ContentValues();
+        values.put("post_id", entry.postId);
+        values.put("author_uid", entry.authorUid);
+        values.put("display_name", entry.displayName);
+        values.put("email", entry.email);
+        values.put("comment", entry.comment);
+        values.put("image_file", entry.imageFile.getAbsolutePath());
+        values.put("image_count", entry.imageCount);
+        values.put("created_at", entry.createdAt);
+
+        boolean added = database.getWritableDatabase().insertWithOnConflict(LocalDatabase.TABLE_OUTBOX, null, values, SQLiteDatabase.CONFLICT_IGNORE) != -1;
+        schedule(entry.postId);
+        return added;
+    }
+
+    public Entry get(String postId) {
+        try (Cursor cursor = database.getReadableDatabase().query(LocalDatabase.TABLE_OUTBOX, null, "post_id = ?", new String[]{postId}, null, null, null)) {
+            return cursor.moveToFirst() ? toEntry(cursor) : null;
+        }
+    }
+
+    // Get the posts that are being uploaded, oldest first
+    public List<Entry> getAll() {
+        return query("failed = 0");
+    }
+
+    // Get the posts whose upload has failed for good
+    public List<Entry> getFailed() {
+        return query("failed = 1");
+    }
+
+    // Get the posts that are being uploaded as pending posts of the feed, newest first
+    public List<Post> getPendingPosts() {
+        List<Entry> entries = getAll();
+        ArrayList<Post> posts = new ArrayList<>(entries.size());
+        for (int i = entries.size() - 1; i >= 0; i--)
+            posts.add(toPost(entries.get(i)));
+        return posts;
+    }
+
+    // Mark the post as failed, it stays in the outbox until it is retried or removed
+    public void setFailed(String postId) {
+        ContentValues values = new ContentValues();
+        values.put("failed", 1);
+        database.getWritableDatabase().update(LocalDatabase.TABLE_OUTBOX, values, "post_id = ?", new String[]{postId});
+    }
+
+    // Upload a failed post again
+    public void retry(Entry entry) {
+        ContentValues values = new ContentValues();
+        values.put("failed", 0);
+        database.getWritableDatabase().update(LocalDatabase.TABLE_OUTBOX, values, "post_id = ?", new String[]{entry.postId});
+        schedule(entry.postId);
+    }
+
+    // Get the upload session of the original of an image of the post, null if there is none
+    public Uri getSessionUri(String postId, int image) {
+        try (Cursor cursor = database.getReadableDatabase().query(LocalDatabase.TABLE_OUTBOX_SESSIONS, new String[]{"session_uri"}, "post_id = ? AND image = ?", new String[]{postId, String.valueOf(image)}, null, null, null)) {
+            return cursor.moveToFirst() ? Uri.parse(cursor.getString(0)) : null;
+        }
+    }
+
+    // Save the upload session of the original of an image, so its upload continues from the last byte sent
+    public void setSessionUri(String postId, int image, Uri sessionUri) {
+        SQLiteDatabase db = database.getWritableDatabase();
+        if (sessionUri == null) {
+            db.delete(LocalDatabase.TABLE_OUTBOX_SESSIONS, "post_id = ? AND image = ?", new String[]{postId, String.valueOf(image)});
+            return;
+        }
+
+        ContentValues values = new ContentValues();
+        values.put("post_id", postId);
+        values.put("image", image);
+        values.put("session_uri", sessionUri.toString());
+        db.insertWithOnConflict(LocalDatabase.TABLE_OUTBOX_SESSIONS, null, values, SQLiteDatabase.CONFLICT_REPLACE);
+    }
+
+    // Remove the uploaded post and the files of its image variants
+    public void remove(Entry entry) {
+        SQLiteDatabase db = database.getWritableDatabase();
+        db.delete(LocalDatabase.TABLE_OUTBOX, "post_id = ?", new String[]{entry.postId});
+        db.delete(LocalDatabase.TABLE_OUTBOX_SESSIONS, "post_id = ?", new String[]{entry.postId});
+        for (int image = 0; image < entry.imageCount; image++) {
+            for (ImageProcessor.Variant variant : ImageProcessor.Variant.values()) {
+                //noinspection ResultOfMethodCallIgnored
+                entry.imageFile(image, variant).delete();
+            }
+        }
+    }
+
+    // Schedule the upload of every queued post, used on start to resume the interrupted uploads
+    public void resume() {
+        for (Entry entry : getAll())
+            schedule(entry.postId);
+    }
+
+    private List<Entry> query(String selection) {
+        ArrayList<Entry> entries = new ArrayList<>();
+        try (Cursor cursor = database.getReadableDatabase().query(LocalDatabase.TABLE_OUTBOX, null, selection, null, null, null, "created_at")) {
+            while (cursor.moveToNext())
+                entries.add(toEntry(cursor));
+        }
+        return entries;
+    }
+
+    private void schedule(String postId) {
+        OneTimeWorkRequest request = new OneTimeWorkRequest.Builder(PostUploadWorker.class)
+                .addTag(WORK_TAG)
+                .setInputData(new Data.Builder().putString(PostUploadWorker.KEY_POST_ID, postId).build())
+                .setConstraints(new Constraints.Builder().setRequiredNetworkType(NetworkType.CONNECTED).build())
+                .setBackoffCriteria(BackoffPolicy.EXPONENTIAL, BACKOFF_SECONDS, TimeUnit.SECONDS)
+                .build();
+
+        // Keep the running upload of the post instead of starting a second one
+        WorkManager.getInstance(context).enqueueUniqueWork("post-upload-" + postId, ExistingWorkPolicy.KEEP, request);
+    }
+
+    // Show the post with its local image files and the time it was created on the device
+    private static Post toPost(Entry entry) {
+        ArrayList<ImageVariant> images = new ArrayList<>();
+        for (int image = 0; image < entry.imageCount; image++) {
+            // Variants are ordered from the smallest to the original
+            for (ImageProcessor.Variant variant : ImageProcessor.Variant.values()) {
+                File file = entry.imageFile(image, variant);
+                if (!file.exists())
+                    continue;
+
+                // Cached under the storage path of the upload, so the uploaded post shows the image without loading it again
+                int[] size = ImageProcessor.readSize(file);
+                images.add(new ImageVariant(storagePath(file), Uri.fromFile(file).toString(), image, size[0], size[1]));
+            }
+        }
+
+        // URL of the original of the first image
+        String imageUrl = null;
+        for (ImageVariant image : images) {
+            if (image.getImage() == 0)
+                imageUrl = image.getUrl();
+        }
+        return new Post(entry.postId, AuthorTable.get().intern(entry.authorUid, entry.email, entry.displayName), entry.comment, imageUrl, images, entry.createdAt, true);
+    }
+
+    private static Entry toEntry(Cursor cursor) {
+        return new Entry(
+                cursor.getString(cursor.getColumnIndexOrThrow("post_id")),
+                cursor.getString(cursor.getColumnIndexOrThrow("author_uid")),
+                cursor.getString(cursor.getColumnIndexOrThrow("display_name")),
+                cursor.getString(cursor.getColumnIndexOrThrow("email")),
+                cursor.getString(cursor.getColumnIndexOrThrow("comment")),
+                new File(cursor.getString(cursor.getColumnIndexOrThrow("image_file"))),
+                cursor.getInt(cursor.getColumnIndexOrThrow("image_count")),
+                cursor.getLong(cursor.getColumnIndexOrThrow("created_at"))
+        );
+    }
+
+    // A post waiting to be uploaded
+    public static class Entry {
+
+        public final String postId;
+        public final String authorUid;
+        public final String displayName;
+        public final String email;
+        public final String comment;
+
+        // Original file of the first image, the files of every image are next to it
+        public final File imageFile;
+        public final int imageCount;
+        public final long createdAt;
+
+        public Entry(String postId, String authorUid, String displayName, String email, String comment, File imageFile, int imageCount, long createdAt) {
+            this.postId = postId;
+            this.authorUid = authorUid;
+            this.displayName = displayName;
+            this.email = email;
+            this.comment = comment;
+            this.imageFile = imageFile;
+            this.imageCount = imageCount;
+            this.createdAt = createdAt;
+        }
+
+        // Get the file of a variant of an image of the post, in the format of the original of the first image
+        public File imageFile(int image, ImageProcessor.Variant variant) {
+            return variant.file(imageFile.getParentFile(), imageName(postId, image), ImageProcessor.extensionOf(imageFile));
+        }
+    }
+}
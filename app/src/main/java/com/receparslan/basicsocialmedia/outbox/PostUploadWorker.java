@@ -0,0 +1,226 @@
+package com.receparslan.basicsocialmedia.outbox;
+
+import android.content.Context;
+import android.net.Uri;
+
+import androidx.annotation.NonNull;
+import androidx.work.Worker;
+import androidx.work.WorkerParameters;
+
+import com.google.android.gms.tasks.Tasks;
+import com.google.firebase.auth.FirebaseAuth;
+import com.google.firebase.auth.FirebaseUser;
+import com.google.firebase.firestore.DocumentReference;
+import com.google.firebase.firestore.DocumentSnapshot;
+import com.google.firebase.firestore.FieldValue;
+import com.google.firebase.firestore.FirebaseFirestore;
+import com.google.firebase.firestore.SetOptions;
+import com.google.firebase.firestore.Source;
+import com.google.firebase.storage.FirebaseStorage;
+import com.google.firebase.storage.StorageMetadata;
+import com.google.firebase.storage.StorageReference;
+import com.google.firebase.storage.UploadTask;
+import com.receparslan.basicsocialmedia.account.UserStats;
+import com.receparslan.basicsocialmedia.follow.HomeTimeline;
+import com.receparslan.basicsocialmedia.image.ImageProcessor;
+import com.receparslan.basicsocialmedia.perf.PerfMetrics;
+import com.receparslan.basicsocialmedia.util.AppExecutors;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Uploads a post of the {@link PostOutbox}.
+ * <p>
+ * Every variant of every image is uploaded in parallel, a few at a time, so a post with several
+ * images takes about as long as its slowest image. The originals are uploaded with resumable
+ * sessions whose URIs are saved as soon as they are known, so a retry continues from the last byte
+ * sent instead of sending the whole image again. The document stores the storage paths of the
+ * images and no download URLs, which are resolved by the readers when they load them, along with
+ * the dimensions and a BlurHash placeholder of every image so the feed can lay out its rows before
+ * the images arrive. The post
+ * document is written under the client-generated post ID, so writing it again after a failure
+ * never creates a duplicate post. It is created in a transaction with the post count of the
+ * author, which is only incremented if the document did not exist yet.
+ * <p>
+ * The written post is then copied to the {@link HomeTimeline}s of the author and the followers. A
+ * retry first checks whether the document has already been written, so a failed copy does not
+ * upload the images again.
+ */
+public class PostUploadWorker extends Worker {
+
+    public static final String KEY_POST_ID = "post_id";
+
+    // Number of attempts before the post is marked as failed
+    private static final int MAX_ATTEMPTS = 8;
+
+    // Number of files uploaded at the same time
+    private static final int MAX_PARALLEL_UPLOADS = 4;
+
+    public PostUploadWorker(@NonNull Context context, @NonNull WorkerParameters workerParams) {
+        super(context, workerParams);
+    }
+
+    @NonNull
+    @Override
+    public Result doWork() {
+        PostOutbox outbox = new PostOutbox(getApplicationContext());
+        String postId = getInputData().getString(KEY_POST_ID);
+
+        PostOutbox.Entry entry = postId != null ? outbox.get(postId) : null;
+        if (entry == null)
+            return Result.success(); // Already uploaded
+
+        try {
+            FirebaseFirestore firebaseFirestore = FirebaseFirestore.getInstance();
+            DocumentReference postReference = firebaseFirestore.collection("Posts").document(entry.postId);
+
+            // A retry after the document has landed only has to copy it to the timelines
+            DocumentSnapshot post = getRunAttemptCount() > 0 ? Tasks.await(postReference.get(Source.SERVER)) : null;
+            if (post == null || !post.exists())
+                post = write(outbox, entry, postReference);
+
+            long start = System.nanoTime();
+            HomeTimeline.fanOut(firebaseFirestore, post);
+            PerfMetrics.record(PerfMetrics.UPLOAD_FAN_OUT, start);
+
+            // From the tap on share, including the time spent offline and in retries
+            PerfMetrics.histogram(PerfMetrics.UPLOAD_TOTAL).record(TimeUnit.MILLISECONDS.toNanos(System.currentTimeMillis() - entry.createdAt));
+
+            outbox.remove(entry);
+            return Result.success();
+        } catch (ExecutionException e) {
+            if (getRunAttemptCount() + 1 < MAX_ATTEMPTS)
+                return Result.retry();
+
+            // Take the pending post out of the feed, the user can retry it
+            outbox.setFailed(entry.postId);
+            return Result.failure();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return Result.retry();
+        }
+    }
+
+    // Upload the images of the post and write its document, returns the written document
+    private static DocumentSnapshot write(PostOutbox outbox, PostOutbox.Entry entry, DocumentReference postReference) throws ExecutionException, InterruptedException {
+        StorageReference storageReference = FirebaseStorage.getInstance().getReference();
+
+        // Upload the variants of all images at once, by image and from the smallest to the original
+        long start = System.nanoTime();
+        ArrayList<Callable<Map<String, Object>>> uploads = new ArrayList<>();
+        for (int image = 0; image < entry.imageCount; image++) {
+            // Every variant of the image carries the placeholder of its thumbnail
+            String blurHash = ImageProcessor.blurHash(entry.imageFile(image, ImageProcessor.Variant.THUMBNAIL));
+            for (ImageProcessor.Variant variant : ImageProcessor.Variant.values()) {
+                int index = image;
+                uploads.add(() -> upload(outbox, entry, storageReference, index, variant, blurHash));
+            }
+        }
+
+        ArrayList<Map<String, Object>> images = new ArrayList<>();
+        ExecutorService pool = Executors.newFixedThreadPool(MAX_PARALLEL_UPLOADS);
+        try {
+            for (Future<Map<String, Object>> future : pool.invokeAll(uploads))
+                images.add(future.get());
+        } finally {
+            pool.shutdownNow();
+        }
+        PerfMetrics.record(PerfMetrics.UPLOAD_IMAGES, start);
+
+        // Posts queued before the author UID was stored belong to the signed in user
+        String authorUid = entry.authorUid;
+        FirebaseUser user = FirebaseAuth.getInstance().getCurrentUser();
+        if (authorUid == null && user != null)
+            authorUid = user.getUid();
+
+        // Create a post data
+        HashMap<String, Object> postData = new HashMap<>();
+        postData.put("authorUid", authorUid);
+        postData.put("displayName", entry.displayName);
+        postData.put("email", entry.email);
+        postData.put("date", FieldValue.serverTimestamp());
+        postData.put("comment", entry.comment);
+        postData.put("images", images);
+
+        // Write the post data under its ID and count it, a retry after the write has landed changes nothing
+        FirebaseFirestore firebaseFirestore = FirebaseFirestore.getInstance();
+        DocumentReference statsReference = authorUid != null ? UserStats.reference(firebaseFirestore, authorUid) : null;
+        start = System.nanoTime();
+        Tasks.await(firebaseFirestore.runTransaction(transaction -> {
+            if (!transaction.get(postReference).exists()) {
+                transaction.set(postReference, postData);
+                if (statsReference != null)
+                    transaction.set(statsReference, UserStats.postCreated(), SetOptions.merge());
+            }
+            return null;
+        }));
+        PerfMetrics.record(PerfMetrics.UPLOAD_DOCUMENT, start);
+
+        // The copies carry the date set by the server
+        return Tasks.await(postReference.get(Source.SERVER));
+    }
+
+    // Upload a variant of an image of the post, returns its item of the images field
+    private static Map<String, Object> upload(PostOutbox outbox, PostOutbox.Entry entry, StorageReference storageReference, int image, ImageProcessor.Variant variant, String blurHash) throws ExecutionException, InterruptedException {
+        File file = entry.imageFile(image, variant);
+        String path = PostOutbox.storagePath(file);
+        StorageReference imageReference = storageReference.child(path);
+
+        if (variant == ImageProcessor.Variant.ORIGINAL)
+            uploadResumable(outbox, entry.postId, image, file, imageReference);
+        else
+            Tasks.await(imageReference.putFile(Uri.fromFile(file), metadata(file)));
+
+        int[] size = ImageProcessor.readSize(file);
+        HashMap<String, Object> item = new HashMap<>();
+        item.put("image", image);
+        item.put("path", path);
+        item.put("width", size[0]);
+        item.put("height", size[1]);
+        if (blurHash != null)
+            item.put("blurHash", blurHash);
+        return item;
+    }
+
+    // Upload an original image with a resumable session, continuing the saved session if there is one
+    private static void uploadResumable(PostOutbox outbox, String postId, int image, File imageFile, StorageReference imageReference) throws ExecutionException, InterruptedException {
+        Uri file = Uri.fromFile(imageFile);
+        StorageMetadata metadata = metadata(imageFile);
+
+        Uri savedSession = outbox.getSessionUri(postId, image);
+        if (savedSession != null) {
+            try {
+                Tasks.await(imageReference.putFile(file, metadata, savedSession));
+                return;
+            } catch (ExecutionException e) {
+                // The session may have expired, start a new one
+                outbox.setSessionUri(postId, image, null);
+            }
+        }
+
+        // Save the session once it is created
+        AtomicBoolean sessionSaved = new AtomicBoolean();
+        UploadTask uploadTask = imageReference.putFile(file, metadata);
+        uploadTask.addOnProgressListener(AppExecutors.background(), snapshot -> {
+            Uri sessionUri = snapshot.getUploadSessionUri();
+            if (sessionUri != null && sessionSaved.compareAndSet(false, true))
+                outbox.setSessionUri(postId, image, sessionUri);
+        });
+        Tasks.await(uploadTask);
+    }
+
+    // Metadata of an image file, with the content type of the format it is encoded in
+    private static StorageMetadata metadata(File file) {
+        return new StorageMetadata.Builder().setContentType(ImageProcessor.contentTypeOf(file)).build();
+    }
+}
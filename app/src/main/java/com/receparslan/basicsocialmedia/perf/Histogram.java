@@ -0,0 +1,100 @@
+package com.receparslan.basicsocialmedia.perf;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Lock-free histogram of durations in microseconds.
+ * <p>
+ * Durations below 16 microseconds have a bucket each, every power of two above is split into 8 buckets, so a
+ * percentile is off by at most 12.5% while the whole histogram is a fixed array of a few hundred
+ * counters. Recording is a handful of atomic increments and never allocates.
+ */
+public final class Histogram {
+
+    // Buckets below the first power of two that is split
+    private static final int LINEAR_BUCKETS = 16;
+    private static final int SUB_BUCKET_BITS = 3;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+
+    // Durations up to 2^40 microseconds, about 12 days, longer ones are counted in the last bucket
+    private static final int MAX_EXPONENT = 40;
+    private static final int BUCKETS = LINEAR_BUCKETS + (MAX_EXPONENT - 4 + 1) * SUB_BUCKETS;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+    private final AtomicLong count = new AtomicLong();
+    private final AtomicLong sum = new AtomicLong();
+    private final AtomicLong max = new AtomicLong();
+
+    // Record a duration in nanoseconds
+    public void record(long nanos) {
+        long micros = Math.max(0, nanos / 1000);
+        counts.incrementAndGet(bucketOf(micros));
+        count.incrementAndGet();
+        sum.addAndGet(micros);
+
+        long current;
+        while (micros > (current = max.get()) && !max.compareAndSet(current, micros)) {
+            // Another thread has recorded a larger maximum in between, try again
+        }
+    }
+
+    public long getCount() {
+        return count.get();
+    }
+
+    // Mean duration in microseconds, 0 if nothing is recorded
+    public long getMeanMicros() {
+        long n = count.get();
+        return n == 0 ? 0 : sum.get() / n;
+    }
+
+    public long getMaxMicros() {
+        return max.get();
+    }
+
+    // Upper bound of the bucket of the percentile, in microseconds, 0 if nothing is recorded
+    public long getPercentileMicros(double percentile) {
+        long n = count.get();
+        if (n == 0)
+            return 0;
+
+        long rank = Math.max(1, (long) Math.ceil(n * percentile / 100));
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += counts.get(i);
+            if (seen >= rank)
+                return Math.min(upperBoundOf(i), max.get());
+        }
+        return max.get();
+    }
+
+    public void reset() {
+        for (int i = 0; i < BUCKETS; i++)
+            counts.set(i, 0);
+        count.set(0);
+        sum.set(0);
+        max.set(0);
+    }
+
+    private static int bucketOf(long micros) {
+        if (micros < LINEAR_BUCKETS)
+            return (int) micros;
+
+        int exponent = 63 - Long.numberOfLeadingZeros(micros);
+        if (exponent > MAX_EXPONENT)
+            return BUCKETS - 1;
+
+        int subBucket = (int) (micros >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+        return LINEAR_BUCKETS + (exponent - 4) * SUB_BUCKETS + subBucket;
+    }
+
+    private static long upperBoundOf(int bucket) {
+        if (bucket < LINEAR_BUCKETS)
+            return bucket;
+
+        int exponent = (bucket - LINEAR_BUCKETS) / SUB_BUCKETS + 4;
+        int subBucket = (bucket - LINEAR_BUCKETS) % SUB_BUCKETS;
+        return (1L << exponent) + ((long) (subBucket + 1) << (exponent - SUB_BUCKET_BITS)) - 1;
+    }
+}
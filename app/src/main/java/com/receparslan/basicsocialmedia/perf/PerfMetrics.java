@@ -0,0 +1,197 @@
+package com.receparslan.basicsocialmedia.perf;
+
+import android.content.Context;
+import android.os.Build;
+import android.view.View;
+import android.view.ViewTreeObserver;
+
+import androidx.tracing.Trace;
+
+import com.receparslan.basicsocialmedia.image.ImageCache;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Durations of the hot paths of the app, kept in a {@link Histogram} per metric.
+ * <p>
+ * A synchronous stage is wrapped in {@link #begin(String)} and {@link #end(String, long)}, which also
+ * open and close a trace section of the same name, so the stage shows up in a Perfetto trace. Stages
+ * that end on another thread or in a later frame record their start time and call
+ * {@link #record(String, long)}. The numbers are shown by the {@link PerfOverlay} of debuggable
+ * builds and can be exported as JSON with their p50 and p99, together with the counters of the
+ * image cache.
+ */
+public final class PerfMetrics {
+
+    // Snapshot received until the changed posts are mapped and applied
+    public static final String FEED_APPLY = "feed.apply";
+
+    // Building the feed and diffing it against the shown one
+    public static final String FEED_PUBLISH = "feed.publish";
+
+    // Snapshot received until the changed feed is drawn
+    public static final String FEED_RENDER = "feed.render";
+
+    public static final String ROW_BIND = "row.bind";
+
+    // Row bound until its image is shown
+    public static final String IMAGE_DISPLAY = "image.display";
+
+    // Stages of sharing a post, from the tap to the written document
+    public static final String POST_PROCESS = "post.process";
+    public static final String POST_QUEUE = "post.queue";
+    public static final String UPLOAD_IMAGES = "upload.images";
+    public static final String UPLOAD_DOCUMENT = "upload.document";
+
+    // Copying a written post to the home timelines of the followers of its author
+    public static final String UPLOAD_FAN_OUT = "upload.fanout";
+
+    // Post created until its document is written, across retries and restarts
+    public static final String UPLOAD_TOTAL = "upload.total";
+
+    // Query typed until its results are loaded from the archive
+    public static final String SEARCH = "search";
+
+    private static final ConcurrentHashMap<String, Histogram> HISTOGRAMS = new ConcurrentHashMap<>();
+
+    // Cookies of the asynchronous trace sections
+    private static final AtomicInteger COOKIES = new AtomicInteger();
+
+    private PerfMetrics() {
+    }
+
+    public static Histogram histogram(String name) {
+        Histogram histogram = HISTOGRAMS.get(name);
+        if (histogram == null) {
+            histogram = new Histogram();
+            Histogram existing = HISTOGRAMS.putIfAbsent(name, histogram);
+            if (existing != null)
+                histogram = existing;
+        }
+        return histogram;
+    }
+
+    // Start a stage on this thread, returns its start time for end
+    public static long begin(String name) {
+        Trace.beginSection(name);
+        return System.nanoTime();
+    }
+
+    // End the stage started on this thread
+    public static void end(String name, long startNanos) {
+        histogram(name).record(System.nanoTime() - startNanos);
+        Trace.endSection();
+    }
+
+    // Record a stage that started at the time, on any thread
+    public static void record(String name, long startNanos) {
+        histogram(name).record(System.nanoTime() - startNanos);
+    }
+
+    // Record a stage that ends when the view draws its next frame, shown as an asynchronous trace section
+    public static void recordOnNextFrame(View view, String name, long startNanos) {
+        int cookie = COOKIES.incrementAndGet();
+        Trace.beginAsyncSection(name, cookie);
+        view.getViewTreeObserver().addOnPreDrawListener(new ViewTreeObserver.OnPreDrawListener() {
+            @Override
+            public boolean onPreDraw() {
+                view.getViewTreeObserver().removeOnPreDrawListener(this);
+                record(name, startNanos);
+                Trace.endAsyncSection(name, cookie);
+                return true;
+            }
+        });
+    }
+
+    // Every metric recorded so far by name, sorted by name
+    public static SortedMap<String, Histogram> histograms() {
+        return new TreeMap<>(HISTOGRAMS);
+    }
+
+    public static void reset() {
+        for (Histogram histogram : HISTOGRAMS.values())
+            histogram.reset();
+    }
+
+    // Summary of every metric in milliseconds, sorted by name, and the counters of the image cache, call it off the main thread
+    public static JSONObject toJson() throws JSONException {
+        JSONObject metrics = new JSONObject();
+        for (Map.Entry<String, Histogram> entry : histograms().entrySet()) {
+            Histogram histogram = entry.getValue();
+            JSONObject metric = new JSONObject();
+            metric.put("count", histogram.getCount());
+            metric.put("meanMs", histogram.getMeanMicros() / 1000.0);
+            metric.put("p50Ms", histogram.getPercentileMicros(50) / 1000.0);
+            metric.put("p99Ms", histogram.getPercentileMicros(99) / 1000.0);
+            metric.put("maxMs", histogram.getMaxMicros() / 1000.0);
+            metrics.put(entry.getKey(), metric);
+        }
+
+        JSONObject startup = new JSONObject();
+        for (Map.Entry<String, Long> stage : StartupTimer.getStages().entrySet())
+            startup.put(stage.getKey(), stage.getValue());
+
+        JSONObject report = new JSONObject();
+        report.put("device", Build.MANUFACTURER + " " + Build.MODEL);
+        report.put("sdk", Build.VERSION.SDK_INT);
+        report.put("exportedAt", System.currentTimeMillis());
+        report.put("startupMs", startup);
+        report.put("metrics", metrics);
+        if (ImageCache.get() != null)
+            report.put("imageCache", imageCacheJson(ImageCache.get()));
+        return report;
+    }
+
+    // Counters of the image cache, reads the size of its disk tier
+    private static JSONObject imageCacheJson(ImageCache imageCache) throws JSONException {
+        ImageCache.Stats stats = imageCache.getStats();
+        JSONObject memory = new JSONObject();
+        memory.put("hits", stats.memoryHits);
+        memory.put("misses", stats.memoryMisses);
+        memory.put("evictions", stats.memoryEvictions);
+        memory.put("sizeBytes", stats.memorySize);
+        memory.put("maxSizeBytes", stats.memoryMaxSize);
+
+        JSONObject disk = new JSONObject();
+        disk.put("hits", stats.diskHits);
+        disk.put("network", stats.diskMisses);
+        disk.put("sizeBytes", imageCache.getDiskSize());
+        disk.put("maxSizeBytes", stats.diskMaxSize);
+
+        JSONObject cache = new JSONObject();
+        cache.put("hitRate", stats.getHitRate());
+        cache.put("memory", memory);
+        cache.put("disk", disk);
+        return cache;
+    }
+
+    // Write the summary to the app storage, returns the written file, call it off the main thread
+    public static File export(Context context) throws IOException {
+        File directory = context.getExternalFilesDir("perf");
+        if (directory == null)
+            directory = new File(context.getFilesDir(), "perf");
+        //noinspection ResultOfMethodCallIgnored
+        directory.mkdirs();
+
+        File file = new File(directory, "perf-" + System.currentTimeMillis() + ".json");
+        try (Writer writer = new OutputStreamWriter(new FileOutputStream(file), StandardCharsets.UTF_8)) {
+            writer.write(toJson().toString(2));
+        } catch (JSONException e) {
+            throw new IOException(e);
+        }
+        return file;
+    }
+}
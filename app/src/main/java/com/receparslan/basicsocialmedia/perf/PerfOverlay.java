@@ -0,0 +1,101 @@
+package com.receparslan.basicsocialmedia.perf;
+
+import android.app.Activity;
+import android.content.pm.ApplicationInfo;
+import android.graphics.Color;
+import android.graphics.Typeface;
+import android.view.Gravity;
+import android.view.ViewGroup;
+import android.widget.FrameLayout;
+import android.widget.TextView;
+import android.widget.Toast;
+
+import com.receparslan.basicsocialmedia.image.ImageCache;
+import com.receparslan.basicsocialmedia.util.AppExecutors;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Small panel over the content of a screen that shows the p50 and p99 of every metric recorded so
+ * far, sorted by name and refreshed every second, followed by the hit rate, hits and evictions of
+ * the image cache since launch. A long click exports the numbers with {@link PerfMetrics#export}, a
+ * click resets the metrics. Only attached in debuggable builds.
+ */
+public final class PerfOverlay implements Runnable {
+
+    private static final long REFRESH_MILLIS = 1000;
+
+    private final TextView textView;
+    private final StringBuilder text = new StringBuilder();
+
+    private PerfOverlay(TextView textView) {
+        this.textView = textView;
+    }
+
+    // Show the overlay over the content of the activity, if the app is debuggable
+    public static void attach(Activity activity) {
+        if ((activity.getApplicationInfo().flags & ApplicationInfo.FLAG_DEBUGGABLE) == 0)
+            return;
+
+        TextView textView = new TextView(activity);
+        textView.setTypeface(Typeface.MONOSPACE);
+        textView.setTextSize(10);
+        textView.setTextColor(Color.WHITE);
+        textView.setBackgroundColor(0x99000000);
+        textView.setPadding(8, 8, 8, 8);
+
+        PerfOverlay overlay = new PerfOverlay(textView);
+        textView.setOnClickListener(view -> {
+            PerfMetrics.reset();
+            overlay.refresh();
+        });
+        textView.setOnLongClickListener(view -> {
+            AppExecutors.background().execute(() -> {
+                String message;
+                try {
+                    File file = PerfMetrics.export(activity.getApplicationContext());
+                    message = "Exported to " + file.getAbsolutePath();
+                } catch (IOException e) {
+                    message = "Export failed: " + e.getMessage();
+                }
+                String result = message;
+                AppExecutors.mainThread().execute(() -> Toast.makeText(activity.getApplicationContext(), result, Toast.LENGTH_LONG).show());
+            });
+            return true;
+        });
+
+        FrameLayout.LayoutParams params = new FrameLayout.LayoutParams(ViewGroup.LayoutParams.WRAP_CONTENT, ViewGroup.LayoutParams.WRAP_CONTENT, Gravity.TOP | Gravity.START);
+        ((FrameLayout) activity.findViewById(android.R.id.content)).addView(textView, params);
+        overlay.run();
+    }
+
+    // Refresh the numbers while the overlay is attached
+    @Override
+    public void run() {
+        refresh();
+        textView.postDelayed(this, REFRESH_MILLIS);
+    }
+
+    private void refresh() {
+        text.setLength(0);
+        text.append(String.format(Locale.US, "%-16s %6s %8s %8s", "metric", "n", "p50 ms", "p99 ms"));
+        for (Map.Entry<String, Histogram> entry : PerfMetrics.histograms().entrySet()) {
+            Histogram histogram = entry.getValue();
+            text.append('\n').append(String.format(Locale.US, "%-16s %6d %8.1f %8.1f", entry.getKey(), histogram.getCount(),
+                    histogram.getPercentileMicros(50) / 1000.0, histogram.getPercentileMicros(99) / 1000.0));
+        }
+
+        // Memory hits out of the requests, disk hits out of the memory misses
+        ImageCache imageCache = ImageCache.get();
+        if (imageCache != null) {
+            ImageCache.Stats stats = imageCache.getStats();
+            text.append('\n').append(String.format(Locale.US, "images %5.1f%% hit, memory %d/%d, %d evicted, disk %d/%d",
+                    stats.getHitRate() * 100, stats.memoryHits, stats.memoryHits + stats.memoryMisses, stats.memoryEvictions,
+                    stats.diskHits, stats.diskHits + stats.diskMisses));
+        }
+        textView.setText(text);
+    }
+}
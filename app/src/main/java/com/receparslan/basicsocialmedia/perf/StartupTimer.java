@@ -0,0 +1,91 @@
+package com.receparslan.basicsocialmedia.perf;
+
+import android.app.Activity;
+import android.os.Process;
+import android.os.SystemClock;
+import android.util.Log;
+import android.view.View;
+import android.view.ViewTreeObserver;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Times the stages of a cold start, from the start of the process to the first frame of the live
+ * feed, and logs them in one line under the {@code Startup} tag.
+ * <p>
+ * Every stage is measured from {@link Process#getStartUptimeMillis()} and only its first time is
+ * kept, so later activities of the same process do not change the numbers. Marked on the main
+ * thread only.
+ */
+public final class StartupTimer {
+
+    private static final String TAG = "Startup";
+
+    public static final String APPLICATION_CREATED = "application created";
+    public static final String MAIN_CREATED = "main created";
+    public static final String FIRST_FRAME = "first frame";
+    public static final String LIVE_FEED_FRAME = "live feed frame";
+
+    // Time of each reached stage since the process start, in the order they are reached
+    private static final LinkedHashMap<String, Long> STAGES = new LinkedHashMap<>();
+
+    // Whether the startup is over and logged
+    private static boolean finished;
+
+    private StartupTimer() {
+    }
+
+    // Record the time of the stage, if it is the first time it is reached
+    public static synchronized void mark(String stage) {
+        if (finished || STAGES.containsKey(stage))
+            return;
+        STAGES.put(stage, SystemClock.uptimeMillis() - Process.getStartUptimeMillis());
+    }
+
+    // Times of the reached stages in milliseconds since the process start, for an export on any thread
+    public static synchronized Map<String, Long> getStages() {
+        return new LinkedHashMap<>(STAGES);
+    }
+
+    // Record the stage when the view draws its next frame
+    public static void markNextFrame(View view, String stage) {
+        markNextFrame(view, stage, null);
+    }
+
+    // Record the last stage when the activity draws its next frame, then log the startup
+    public static void finishOnNextFrame(Activity activity, String stage) {
+        markNextFrame(activity.getWindow().getDecorView(), stage, activity);
+    }
+
+    private static void markNextFrame(View view, String stage, Activity finishing) {
+        if (finished)
+            return;
+
+        view.getViewTreeObserver().addOnPreDrawListener(new ViewTreeObserver.OnPreDrawListener() {
+            @Override
+            public boolean onPreDraw() {
+                view.getViewTreeObserver().removeOnPreDrawListener(this);
+                mark(stage);
+                if (finishing != null)
+                    finish(finishing);
+                return true;
+            }
+        });
+    }
+
+    private static void finish(Activity activity) {
+        if (finished)
+            return;
+        finished = true;
+
+        StringBuilder line = new StringBuilder("Cold start:");
+        for (Map.Entry<String, Long> stage : STAGES.entrySet())
+            line.append(' ').append(stage.getKey()).append(' ').append(stage.getValue()).append(" ms,");
+        line.setLength(line.length() - 1);
+        Log.i(TAG, line.toString());
+
+        // Also reported to the system, shown as "Fully drawn" in the log and by am start -W
+        activity.reportFullyDrawn();
+    }
+}
@@ -0,0 +1,110 @@
+package com.receparslan.basicsocialmedia.search;
+
+import android.content.Context;
+
+import com.receparslan.basicsocialmedia.data.PostArchive;
+import com.receparslan.basicsocialmedia.model.Post;
+import com.receparslan.basicsocialmedia.perf.PerfMetrics;
+import com.receparslan.basicsocialmedia.util.AppExecutors;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+
+/**
+ * Searches the posts the feed has received, on the device and without network reads.
+ * <p>
+ * The feed hands every page and every changed post of its live head to the search, which writes
+ * them to the {@link PostArchive} and updates the {@link SearchIndex} in the same step, and removes
+ * the posts whose documents are removed. The index is built from the archive once per process.
+ * A query is answered from the index and only the matched posts are loaded from the archive. Both
+ * hold the timeline of the signed in user and are emptied when the user signs out.
+ * <p>
+ * The index and the archive are confined to the search executor, which also runs the queries.
+ */
+public final class PostSearch {
+
+    // Number of results of a query
+    public static final int MAX_RESULTS = 50;
+
+    // Listener of the results of a query, called on the search executor
+    public interface Callback {
+        void onResults(String query, List<Post> posts);
+    }
+
+    private static volatile PostSearch instance;
+
+    private final PostArchive archive;
+    private SearchIndex index = new SearchIndex();
+
+    // Serial executor that owns the index and the archive
+    private final Executor executor = AppExecutors.search();
+
+    private PostSearch(Context context) {
+        archive = new PostArchive(context);
+
+        // Index the archived posts before the first update or query
+        executor.execute(() -> archive.readAll(index::put));
+    }
+
+    public static PostSearch get(Context context) {
+        if (instance == null) {
+            synchronized (PostSearch.class) {
+                if (instance == null)
+                    instance = new PostSearch(context.getApplicationContext());
+            }
+        }
+        return instance;
+    }
+
+    // Add the received posts or update their older versions, pending posts are skipped
+    public void putAll(List<Post> posts) {
+        ArrayList<Post> received = new ArrayList<>(posts.size());
+        for (Post post : posts) {
+            if (!post.isPending())
+                received.add(post);
+        }
+        if (received.isEmpty())
+            return;
+
+        executor.execute(() -> {
+            archive.putAll(received);
+            for (Post post : received)
+                index.put(post.getId(), post.getDisplayName(), post.getComment(), post.getDate());
+
+            // Keep only the newest posts
+            if (index.size() > PostArchive.MAX_POSTS) {
+                for (String id : archive.trim(PostArchive.MAX_POSTS))
+                    index.remove(id);
+            }
+        });
+    }
+
+    // Remove a post whose document is removed
+    public void remove(String id) {
+        executor.execute(() -> {
+            if (index.contains(id)) {
+                index.remove(id);
+                archive.remove(id);
+            }
+        });
+    }
+
+    // Forget the received posts, when the user signs out or the account is deleted
+    public void clear() {
+        executor.execute(() -> {
+            archive.clear();
+            index = new SearchIndex();
+        });
+    }
+
+    // Find the best posts for the query
+    public void search(String query, Callback callback) {
+        long start = System.nanoTime();
+        executor.execute(() -> {
+            List<Post> posts = archive.load(index.search(query, MAX_RESULTS));
+            PerfMetrics.record(PerfMetrics.SEARCH, start);
+            callback.onResults(query, posts);
+        });
+    }
+}
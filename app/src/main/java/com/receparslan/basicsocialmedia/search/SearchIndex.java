@@ -0,0 +1,349 @@
+package com.receparslan.basicsocialmedia.search;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * In-memory inverted index of the display names and comments of posts.
+ * <p>
+ * Text is split into tokens of letters and digits, case folded and stripped of accents. Every token
+ * maps to a postings list of the documents that contain it with the weight of the token in each of
+ * them, a display name counting twice as much as a comment and repeated tokens saturating. The
+ * tokens are kept sorted, so the last token of a query matches every token it is a prefix of, and
+ * all tokens of a query have to match. Results are ranked by the sum of the weights times the
+ * rarity of the matched tokens, and then by date.
+ * <p>
+ * A post is indexed again when it changes. The old document is only marked as deleted and skipped
+ * by queries, the postings are compacted once deleted documents make up half of the index. Each
+ * postings list counts its live documents, so the rarity of a token ignores the deleted ones.
+ * <p>
+ * Free of Android classes so it can also be measured on a plain JVM. It is not thread-safe.
+ */
+public final class SearchIndex {
+
+    // Weight of a token of the display name, a token of the comment weighs 1
+    private static final float DISPLAY_NAME_WEIGHT = 2f;
+
+    // Saturation of repeated tokens, as in BM25
+    private static final float SATURATION = 1.2f;
+
+    // Share of the weight of a token matched only by its prefix
+    private static final float PREFIX_WEIGHT = 0.5f;
+
+    // Number of deleted documents that triggers a compaction, if they are also half of the index
+    private static final int MIN_COMPACTION = 1024;
+
+    private static final String[] NO_TOKENS = new String[0];
+
+    // Postings by token, sorted so the tokens with a prefix are a range
+    private final TreeMap<String, Postings> terms = new TreeMap<>();
+
+    // Post ID and date of each document, documents are numbered in the order they are added
+    private String[] ids = new String[64];
+    private long[] dates = new long[64];
+    private int documentCount;
+
+    // Postings of each document, its tokens are counted out of them when it is deleted
+    private Postings[][] documentPostings = new Postings[64][];
+
+    // Live document of each post
+    private final HashMap<String, Integer> documents = new HashMap<>();
+    private final BitSet deleted = new BitSet();
+
+    // Scratch buffers of the queries, by document
+    private float[] scores = new float[64];
+    private float[] tokenScores = new float[64];
+    private int[] matchedTokens = new int[64];
+    private int[] candidates = new int[64];
+    private int[] touched = new int[64];
+
+    // Number of indexed posts
+    public int size() {
+        return documents.size();
+    }
+
+    // Index the post, replacing its previous version
+    public void put(String id, String displayName, String comment, long date) {
+        remove(id);
+
+        // Sum the weights of the tokens of the post
+        HashMap<String, Float> weights = new HashMap<>();
+        for (String token : tokenize(displayName))
+            weights.merge(token, DISPLAY_NAME_WEIGHT, Float::sum);
+        for (String token : tokenize(comment))
+            weights.merge(token, 1f, Float::sum);
+
+        int document = documentCount++;
+        ensureCapacity(documentCount);
+        ids[document] = id;
+        dates[document] = date;
+        documents.put(id, document);
+
+        // Documents are added in increasing order, so the postings stay sorted
+        Postings[] own = new Postings[weights.size()];
+        int count = 0;
+        for (Map.Entry<String, Float> weight : weights.entrySet()) {
+            Postings postings = terms.get(weight.getKey());
+            if (postings == null) {
+                postings = new Postings();
+                terms.put(weight.getKey(), postings);
+            }
+            float value = weight.getValue();
+            postings.add(document, value * (SATURATION + 1) / (value + SATURATION));
+            own[count++] = postings;
+        }
+        documentPostings[document] = own;
+    }
+
+    public void remove(String id) {
+        Integer document = documents.remove(id);
+        if (document == null)
+            return;
+
+        deleted.set(document);
+        for (Postings postings : documentPostings[document])
+            postings.live--;
+        documentPostings[document] = null;
+
+        int deletedCount = documentCount - documents.size();
+        if (deletedCount >= MIN_COMPACTION && deletedCount * 2 >= documentCount)
+            compact();
+    }
+
+    public boolean contains(String id) {
+        return documents.containsKey(id);
+    }
+
+    // Get the IDs of the best posts that match every token of the query, the last token also as a prefix
+    public List<String> search(String query, int limit) {
+        // Repeated tokens of the query count once
+        String[] tokens = new LinkedHashSet<>(Arrays.asList(tokenize(query))).toArray(NO_TOKENS);
+        if (tokens.length == 0 || limit <= 0)
+            return Collections.emptyList();
+
+        // Documents that matched the first token, every result is one of them
+        int candidateCount = 0;
+        for (int t = 0; t < tokens.length; t++) {
+            String token = tokens[t];
+            int[] touched = t == 0 ? candidates : this.touched;
+            int touchedCount = 0;
+
+            // The best score of the token in each document, over the tokens it is a prefix of
+            Map<String, Postings> matches = t == tokens.length - 1 ? terms.subMap(token, token + Character.MAX_VALUE) : single(token);
+            for (Map.Entry<String, Postings> match : matches.entrySet()) {
+                Postings postings = match.getValue();
+                if (postings.live == 0)
+                    continue; // Only deleted documents have the token
+
+                float weight = (float) Math.log(1 + (double) documents.size() / postings.live);
+                if (match.getKey().length() != token.length())
+                    weight *= PREFIX_WEIGHT;
+
+                for (int i = 0; i < postings.size; i++) {
+                    int document = postings.documents[i];
+                    if (matchedTokens[document] != t || deleted.get(document))
+                        continue;
+
+                    if (tokenScores[document] == 0f)
+                        touched[touchedCount++] = document;
+                    tokenScores[document] = Math.max(tokenScores[document], postings.weights[i] * weight);
+                }
+            }
+
+            for (int i = 0; i < touchedCount; i++) {
+                int document = touched[i];
+                matchedTokens[document] = t + 1;
+                scores[document] += tokenScores[document];
+                tokenScores[document] = 0f;
+            }
+            if (t == 0)
+                candidateCount = touchedCount;
+        }
+
+        // Keep the best results in a heap whose root is the worst of them
+        int[] heap = new int[Math.min(limit, candidateCount)];
+        int heapSize = 0;
+        for (int i = 0; i < candidateCount; i++) {
+            int document = candidates[i];
+            if (matchedTokens[document] != tokens.length)
+                continue;
+
+            if (heapSize < heap.length) {
+                heap[heapSize] = document;
+                siftUp(heap, heapSize++);
+            } else if (ranksBefore(document, heap[0])) {
+                heap[0] = document;
+                siftDown(heap, heapSize);
+            }
+        }
+
+        // Take the worst result first, filling the list from its end
+        String[] found = new String[heapSize];
+        for (int i = heapSize - 1; i >= 0; i--) {
+            found[i] = ids[heap[0]];
+            heap[0] = heap[i];
+            siftDown(heap, i);
+        }
+
+        // Clear the scratch buffers for the next query
+        for (int i = 0; i < candidateCount; i++) {
+            scores[candidates[i]] = 0f;
+            matchedTokens[candidates[i]] = 0;
+        }
+        return Arrays.asList(found);
+    }
+
+    // Whether the first document ranks before the second, by score and then by date
+    private boolean ranksBefore(int first, int second) {
+        return scores[first] != scores[second] ? scores[first] > scores[second] : dates[first] > dates[second];
+    }
+
+    private void siftUp(int[] heap, int index) {
+        while (index > 0) {
+            int parent = (index - 1) / 2;
+            if (!ranksBefore(heap[parent], heap[index]))
+                return;
+            swap(heap, parent, index);
+            index = parent;
+        }
+    }
+
+    private void siftDown(int[] heap, int size) {
+        int index = 0;
+        while (true) {
+            int worst = index;
+            int left = 2 * index + 1;
+            int right = left + 1;
+            if (left < size && ranksBefore(heap[worst], heap[left]))
+                worst = left;
+            if (right < size && ranksBefore(heap[worst], heap[right]))
+                worst = right;
+            if (worst == index)
+                return;
+            swap(heap, worst, index);
+            index = worst;
+        }
+    }
+
+    private static void swap(int[] heap, int first, int second) {
+        int document = heap[first];
+        heap[first] = heap[second];
+        heap[second] = document;
+    }
+
+    // Split the text into case folded tokens of letters and digits without accents
+    public static String[] tokenize(String text) {
+        if (text == null || text.isEmpty())
+            return NO_TOKENS;
+
+        String folded = Normalizer.normalize(text, Normalizer.Form.NFD).toLowerCase(Locale.ROOT);
+        ArrayList<String> tokens = new ArrayList<>();
+        StringBuilder token = new StringBuilder();
+        for (int i = 0; i < folded.length(); i++) {
+            char c = folded.charAt(i);
+            if (Character.getType(c) == Character.NON_SPACING_MARK)
+                continue; // Accent separated by the normalization
+
+            if (Character.isLetterOrDigit(c)) {
+                token.append(c);
+            } else if (token.length() > 0) {
+                tokens.add(token.toString());
+                token.setLength(0);
+            }
+        }
+        if (token.length() > 0)
+            tokens.add(token.toString());
+        return tokens.toArray(NO_TOKENS);
+    }
+
+    private Map<String, Postings> single(String token) {
+        Postings postings = terms.get(token);
+        return postings != null ? Collections.singletonMap(token, postings) : Collections.emptyMap();
+    }
+
+    // Renumber the live documents and drop the deleted ones from the postings
+    private void compact() {
+        int[] renumbered = new int[documentCount];
+        int live = 0;
+        for (int document = 0; document < documentCount; document++) {
+            if (deleted.get(document)) {
+                renumbered[document] = -1;
+                continue;
+            }
+            renumbered[document] = live;
+            ids[live] = ids[document];
+            dates[live] = dates[document];
+            documentPostings[live] = documentPostings[document];
+            documents.put(ids[live], live);
+            live++;
+        }
+        Arrays.fill(ids, live, documentCount, null);
+        Arrays.fill(documentPostings, live, documentCount, null);
+        documentCount = live;
+        deleted.clear();
+
+        terms.values().removeIf(postings -> postings.renumber(renumbered) == 0);
+    }
+
+    private void ensureCapacity(int capacity) {
+        if (capacity <= ids.length)
+            return;
+
+        int newCapacity = Math.max(capacity, ids.length + (ids.length >> 1));
+        ids = Arrays.copyOf(ids, newCapacity);
+        dates = Arrays.copyOf(dates, newCapacity);
+        documentPostings = Arrays.copyOf(documentPostings, newCapacity);
+        scores = Arrays.copyOf(scores, newCapacity);
+        tokenScores = Arrays.copyOf(tokenScores, newCapacity);
+        matchedTokens = Arrays.copyOf(matchedTokens, newCapacity);
+        candidates = new int[newCapacity];
+        touched = new int[newCapacity];
+    }
+
+    // Documents of a token in increasing order, with the weight of the token in each of them
+    private static final class Postings {
+
+        int[] documents = new int[4];
+        float[] weights = new float[4];
+        int size;
+
+        // Number of the documents that are not deleted
+        int live;
+
+        void add(int document, float weight) {
+            if (size == documents.length) {
+                documents = Arrays.copyOf(documents, size * 2);
+                weights = Arrays.copyOf(weights, size * 2);
+            }
+            documents[size] = document;
+            weights[size] = weight;
+            size++;
+            live++;
+        }
+
+        // Apply the new document numbers, -1 for a dropped document, returns the new size
+        int renumber(int[] renumbered) {
+            int kept = 0;
+            for (int i = 0; i < size; i++) {
+                int document = renumbered[documents[i]];
+                if (document >= 0) {
+                    documents[kept] = document;
+                    weights[kept] = weights[i];
+                    kept++;
+                }
+            }
+            size = kept;
+            live = kept;
+            return kept;
+        }
+    }
+}
@@ -0,0 +1,56 @@
+package com.receparslan.basicsocialmedia.util;
+
+import android.os.Handler;
+import android.os.Looper;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Process-wide executors shared by the app.
+ * <p>
+ * The feed executor is a single thread, so the feed state it works on is confined to that thread
+ * and needs no locking. Results are handed to the main thread with {@link #mainThread()}.
+ */
+public final class AppExecutors {
+
+    private static final ExecutorService FEED = Executors.newSingleThreadExecutor(runnable -> new Thread(runnable, "feed"));
+
+    private static final ExecutorService DISK = Executors.newSingleThreadExecutor(runnable -> new Thread(runnable, "disk"));
+
+    private static final ExecutorService SEARCH = Executors.newSingleThreadExecutor(runnable -> new Thread(runnable, "search"));
+
+    private static final ExecutorService BACKGROUND = Executors.newFixedThreadPool(Math.max(2, Runtime.getRuntime().availableProcessors() - 1), runnable -> new Thread(runnable, "background"));
+
+    private static final Handler MAIN_HANDLER = new Handler(Looper.getMainLooper());
+
+    private static final Executor MAIN_THREAD = MAIN_HANDLER::post;
+
+    private AppExecutors() {
+    }
+
+    // Serial executor that owns the feed state
+    public static ExecutorService feed() {
+        return FEED;
+    }
+
+    // Serial executor for database writes, so they are applied in the order they are made
+    public static ExecutorService disk() {
+        return DISK;
+    }
+
+    // Serial executor that owns the search index and its archive
+    public static ExecutorService search() {
+        return SEARCH;
+    }
+
+    // Executor for independent background work such as decoding images
+    public static ExecutorService background() {
+        return BACKGROUND;
+    }
+
+    public static Executor mainThread() {
+        return MAIN_THREAD;
+    }
+}
@@ -0,0 +1,46 @@
+package com.receparslan.basicsocialmedia.util;
+
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Formats epoch millis as {@code yyyy-MM-dd HH:mm:ss} and caches the rendered strings.
+ * <p>
+ * Not thread-safe: every thread that formats dates owns its own instance, which lets the
+ * {@link SimpleDateFormat}, the {@link Date} and the cache be reused without locking.
+ */
+public class DateFormatter {
+
+    // Number of rendered dates kept in the cache
+    private static final int CACHE_SIZE = 256;
+
+    private final SimpleDateFormat format = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss", Locale.getDefault());
+    private final Date date = new Date();
+
+    // Rendered dates by epoch second, least recently used first
+    private final LinkedHashMap<Long, String> cache = new LinkedHashMap<Long, String>(CACHE_SIZE, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Long, String> eldest) {
+            return size() > CACHE_SIZE;
+        }
+    };
+
+    // Format the date, returns an empty string for an unknown date
+    public String format(long millis) {
+        if (millis <= 0)
+            return "";
+
+        // The pattern has no fraction of a second, so dates in the same second render the same
+        Long second = Math.floorDiv(millis, 1000L);
+        String formatted = cache.get(second);
+        if (formatted == null) {
+            date.setTime(second * 1000L);
+            formatted = format.format(date);
+            cache.put(second, formatted);
+        }
+        return formatted;
+    }
+}
@@ -0,0 +1,95 @@
+package com.receparslan.basicsocialmedia.views;
+
+import android.os.Bundle;
+import android.view.ViewGroup;
+import android.widget.ImageView;
+
+import androidx.activity.EdgeToEdge;
+import androidx.annotation.NonNull;
+import androidx.appcompat.app.AppCompatActivity;
+import androidx.core.graphics.Insets;
+import androidx.core.view.ViewCompat;
+import androidx.core.view.WindowInsetsCompat;
+import androidx.recyclerview.widget.LinearLayoutManager;
+import androidx.recyclerview.widget.PagerSnapHelper;
+import androidx.recyclerview.widget.RecyclerView;
+
+import com.receparslan.basicsocialmedia.R;
+import com.receparslan.basicsocialmedia.databinding.ActivityImageBinding;
+import com.receparslan.basicsocialmedia.image.ImageCache;
+import com.receparslan.basicsocialmedia.model.ImageVariant;
+import com.squareup.picasso.Picasso;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class ImageActivity extends AppCompatActivity {
+
+    // Storage paths and URLs of the original images to show, a URL is null if it is resolved from the path
+    public static final String EXTRA_IMAGE_PATHS = "image_paths";
+    public static final String EXTRA_IMAGE_URLS = "image_urls";
+
+    @Override
+    protected void onCreate(Bundle savedInstanceState) {
+        super.onCreate(savedInstanceState);
+        EdgeToEdge.enable(this);
+
+        // Initialize view binding and set the content view
+        ActivityImageBinding binding = ActivityImageBinding.inflate(getLayoutInflater());
+        setContentView(binding.getRoot());
+
+        ViewCompat.setOnApplyWindowInsetsListener(findViewById(R.id.main), (v, insets) -> {
+            Insets systemBars = insets.getInsets(WindowInsetsCompat.Type.systemBars());
+            v.setPadding(systemBars.left, systemBars.top, systemBars.right, systemBars.bottom);
+            return insets;
+        });
+
+        ArrayList<String> paths = getIntent().getStringArrayListExtra(EXTRA_IMAGE_PATHS);
+        ArrayList<String> urls = getIntent().getStringArrayListExtra(EXTRA_IMAGE_URLS);
+        ArrayList<ImageVariant> images = new ArrayList<>();
+        if (paths != null && urls != null) {
+            for (int i = 0; i < paths.size() && i < urls.size(); i++)
+                images.add(new ImageVariant(paths.get(i), urls.get(i), i, 0, 0));
+        }
+
+        // Swipe between the images of the post, one page each
+        RecyclerView recyclerView = binding.imageRecyclerView;
+        recyclerView.setLayoutManager(new LinearLayoutManager(this, LinearLayoutManager.HORIZONTAL, false));
+        recyclerView.setAdapter(new ImageAdapter(images));
+        new PagerSnapHelper().attachToRecyclerView(recyclerView);
+    }
+
+    // Pages of the original images, only this screen loads them
+    private class ImageAdapter extends RecyclerView.Adapter<RecyclerView.ViewHolder> {
+
+        private final List<ImageVariant> images;
+
+        ImageAdapter(List<ImageVariant> images) {
+            this.images = images;
+        }
+
+        @NonNull
+        @Override
+        public RecyclerView.ViewHolder onCreateViewHolder(@NonNull ViewGroup parent, int viewType) {
+            ImageView imageView = new ImageView(parent.getContext());
+            imageView.setLayoutParams(new RecyclerView.LayoutParams(ViewGroup.LayoutParams.MATCH_PARENT, ViewGroup.LayoutParams.MATCH_PARENT));
+            imageView.setScaleType(ImageView.ScaleType.FIT_CENTER);
+            imageView.setContentDescription(getString(R.string.image));
+
+            // Close the image on click
+            imageView.setOnClickListener(view -> finish());
+            return new RecyclerView.ViewHolder(imageView) {
+            };
+        }
+
+        @Override
+        public void onBindViewHolder(@NonNull RecyclerView.ViewHolder holder, int position) {
+            ImageCache.request(Picasso.get(), images.get(position), 0).into((ImageView) holder.itemView);
+        }
+
+        @Override
+        public int getItemCount() {
+            return images.size();
+        }
+    }
+}
@@ -1,17 +1,11 @@
 package com.receparslan.basicsocialmedia.views;
 
-import android.content.Context;
 import android.content.Intent;
-import android.net.ConnectivityManager;
-import android.net.NetworkCapabilities;
 import android.os.Bundle;
-import android.os.Handler;
-import android.os.Looper;
 import android.widget.EditText;
 import android.widget.Toast;
 
 import androidx.activity.EdgeToEdge;
-import androidx.appcompat.app.AlertDialog;
 import androidx.appcompat.app.AppCompatActivity;
 import androidx.core.graphics.Insets;
 import androidx.core.view.ViewCompat;
@@ -20,6 +14,7 @@ import androidx.core.view.WindowInsetsCompat;
 import com.google.firebase.auth.FirebaseAuth;
 import com.receparslan.basicsocialmedia.R;
 import com.receparslan.basicsocialmedia.databinding.ActivityLoginBinding;
+import com.receparslan.basicsocialmedia.network.NoConnectionDialog;
 
 public class LoginActivity extends AppCompatActivity {
 
@@ -36,6 +31,16 @@ public class LoginActivity extends AppCompatActivity {
     @Override
     protected void onCreate(Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
+
+        // Initialize Firebase Auth
+        mAuth = FirebaseAuth.getInstance();
+
+        // Reuse the persisted session, a signed in user goes straight to the feed
+        if (mAuth.getCurrentUser() != null) {
+            loginIntent();
+            return;
+        }
+
         EdgeToEdge.enable(this);
 
         // Initialize view binding and set the content view
@@ -52,15 +57,11 @@ public class LoginActivity extends AppCompatActivity {
         emailEditText = binding.emailEditText;
         passwordEditText = binding.passwordEditText;
 
-        // Initialize Firebase Auth
-        mAuth = FirebaseAuth.getInstance();
-        mAuth.signOut();
-
         // Set the buttons' onClickListeners
         binding.loginButton.setOnClickListener(view -> setLoginButton());
         binding.registerButton.setOnClickListener(view -> startActivity(new Intent(LoginActivity.this, RegisterActivity.class)));
 
-        checkConnection(); // Check the internet connection
+        NoConnectionDialog.bind(this); // Show a dialog while the internet connection is not available
     }
 
     // Sign in with email and password
@@ -91,31 +92,6 @@ public class LoginActivity extends AppCompatActivity {
         Intent intent = new Intent(LoginActivity.this, MainActivity.class);
         intent.addFlags(Intent.FLAG_ACTIVITY_CLEAR_TOP);
         startActivity(intent);
-    }
-
-    // Check the internet connection in every 3 seconds
-    private void checkConnection() {
-        Handler handler = new Handler(Looper.getMainLooper());
-        Runnable runnable = new Runnable() {
-            @Override
-            public void run() {
-                ConnectivityManager connectivityManager = (ConnectivityManager) binding.getRoot().getContext().getSystemService(Context.CONNECTIVITY_SERVICE);
-                NetworkCapabilities capabilities = connectivityManager.getNetworkCapabilities(connectivityManager.getActiveNetwork());
-
-                if (capabilities == null || !capabilities.hasCapability(NetworkCapabilities.NET_CAPABILITY_INTERNET)) {
-                    AlertDialog.Builder builder = new AlertDialog.Builder(LoginActivity.this);
-                    builder.setTitle("No Internet Connection");
-                    builder.setMessage("Please check your internet connection and try again.");
-                    builder.setPositiveButton("OK", (dialogInterface, i) -> {
-                        dialogInterface.dismiss();
-                        finish();
-                    });
-                    if (!isFinishing())
-                        builder.show();
-                }
-                handler.postDelayed(this, 3000);
-            }
-        };
-        handler.post(runnable);
+        finish();
     }
 }
\ No newline at end of file
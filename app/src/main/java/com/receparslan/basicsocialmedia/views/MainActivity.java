@@ -1,54 +1,62 @@
 package com.receparslan.basicsocialmedia.views;
 
-import android.content.Context;
 import android.content.Intent;
-import android.net.ConnectivityManager;
-import android.net.NetworkCapabilities;
-import android.net.Uri;
 import android.os.Bundle;
-import android.os.Handler;
-import android.os.Looper;
 import android.text.InputType;
 import android.view.View;
 import android.widget.EditText;
 import android.widget.Toast;
 
 import androidx.activity.EdgeToEdge;
+import androidx.activity.OnBackPressedCallback;
+import androidx.annotation.NonNull;
 import androidx.appcompat.app.AlertDialog;
 import androidx.appcompat.app.AppCompatActivity;
 import androidx.appcompat.content.res.AppCompatResources;
+import androidx.appcompat.widget.SearchView;
 import androidx.core.graphics.Insets;
 import androidx.core.view.ViewCompat;
 import androidx.core.view.WindowInsetsCompat;
+import androidx.lifecycle.ViewModelProvider;
 import androidx.recyclerview.widget.LinearLayoutManager;
 import androidx.recyclerview.widget.RecyclerView;
+import androidx.work.WorkInfo;
+import androidx.work.WorkManager;
 
 import com.google.android.material.floatingactionbutton.ExtendedFloatingActionButton;
-import com.google.firebase.Timestamp;
 import com.google.firebase.auth.EmailAuthProvider;
 import com.google.firebase.auth.FirebaseAuth;
 import com.google.firebase.auth.FirebaseUser;
-import com.google.firebase.firestore.DocumentSnapshot;
-import com.google.firebase.firestore.FirebaseFirestore;
-import com.google.firebase.firestore.Query;
-import com.google.firebase.storage.FirebaseStorage;
-import com.google.firebase.storage.StorageReference;
 import com.receparslan.basicsocialmedia.R;
+import com.receparslan.basicsocialmedia.account.AccountDeletionWorker;
 import com.receparslan.basicsocialmedia.adapter.RecyclerAdapter;
+import com.receparslan.basicsocialmedia.data.FeedCache;
 import com.receparslan.basicsocialmedia.databinding.ActivityMainBinding;
-import com.receparslan.basicsocialmedia.model.Post;
-
-import java.util.ArrayList;
-import java.util.Map;
+import com.receparslan.basicsocialmedia.feed.FeedViewModel;
+import com.receparslan.basicsocialmedia.image.ImagePrefetcher;
+import com.receparslan.basicsocialmedia.model.CompactFeed;
+import com.receparslan.basicsocialmedia.network.ConnectivityMonitor;
+import com.receparslan.basicsocialmedia.network.NoConnectionDialog;
+import com.receparslan.basicsocialmedia.outbox.PostOutbox;
+import com.receparslan.basicsocialmedia.perf.PerfMetrics;
+import com.receparslan.basicsocialmedia.perf.PerfOverlay;
+import com.receparslan.basicsocialmedia.perf.StartupTimer;
+import com.receparslan.basicsocialmedia.search.PostSearch;
+import com.receparslan.basicsocialmedia.util.AppExecutors;
+import com.squareup.picasso.Picasso;
+
+import java.util.HashSet;
+import java.util.List;
 import java.util.Objects;
 
 public class MainActivity extends AppCompatActivity {
 
-    // ArrayList to store the posts
-    private ArrayList<Post> postArrayList;
+    // View model that loads the posts page by page and keeps them across configuration changes
+    private FeedViewModel feedViewModel;
 
     // RecyclerView to show the posts
     private RecyclerView recyclerView;
+    private RecyclerAdapter recyclerAdapter;
 
     // View binding
     private ActivityMainBinding binding;
@@ -58,11 +66,31 @@ public class MainActivity extends AppCompatActivity {
     private ExtendedFloatingActionButton logoutEFAB;
     private ExtendedFloatingActionButton deleteAccountEFAB;
     private ExtendedFloatingActionButton addPostEFAB;
+    private ExtendedFloatingActionButton exploreEFAB;
+
+    // Progress dialog of the account deletion
+    private AlertDialog deletionDialog;
+
+    // Outbox of the posts being uploaded
+    private PostOutbox postOutbox;
+
+    // IDs of the failed posts that are already asked about
+    private final HashSet<String> shownFailures = new HashSet<>();
+
+    // Whether the search results are shown instead of the feed
+    private boolean searching;
+
+    // Leaves the search on back instead of closing the screen
+    private final OnBackPressedCallback closeSearch = new OnBackPressedCallback(false) {
+        @Override
+        public void handleOnBackPressed() {
+            binding.searchView.setQuery("", false);
+        }
+    };
 
     // Firebase Auth
     private FirebaseAuth mAuth;
     private FirebaseUser user;
-    private FirebaseFirestore firebaseFirestore;
 
     @Override
     protected void onCreate(Bundle savedInstanceState) {
@@ -79,23 +107,54 @@ public class MainActivity extends AppCompatActivity {
             return insets;
         });
 
-        // Initialize the postArrayList
-        postArrayList = new ArrayList<>();
-
-        // Initialize Firebase Auth and get the current user
+        // Initialize Firebase Auth and get the persisted user, Firestore is initialized by the feed pager on its own thread
         mAuth = FirebaseAuth.getInstance();
-        firebaseFirestore = FirebaseFirestore.getInstance();
         user = mAuth.getCurrentUser();
 
+        // Initialize the outbox
+        postOutbox = new PostOutbox(getApplicationContext());
+
+        // Initialize the RecyclerView
+        recyclerView = binding.recyclerView;
+        recyclerAdapter = new RecyclerAdapter();
+        recyclerView.setAdapter(recyclerAdapter);
+        LinearLayoutManager layoutManager = new LinearLayoutManager(this);
+        recyclerView.setLayoutManager(layoutManager);
+
+        // Prefetch the images of the rows in the direction of scrolling
+        recyclerView.addOnScrollListener(new ImagePrefetcher(Picasso.get(), layoutManager, recyclerAdapter::getFeed, ConnectivityMonitor.get(this)));
+
+        // Load the next page when the end of the feed is close, drop the pages far below
+        recyclerView.addOnScrollListener(new RecyclerView.OnScrollListener() {
+            @Override
+            public void onScrolled(@NonNull RecyclerView recyclerView, int dx, int dy) {
+                if (feedViewModel != null && !searching)
+                    feedViewModel.onScrolled(layoutManager.findLastVisibleItemPosition());
+            }
+        });
+
         // Check if the user is signed in
         if (user == null) {
             // User is not signed in, redirect to the login page
             Intent intent = new Intent(MainActivity.this, LoginActivity.class);
             intent.addFlags(Intent.FLAG_ACTIVITY_CLEAR_TOP);
             startActivity(intent);
+            finish();
         } else {
             // Get the posts from the Firestore
             getData();
+
+            // Resume the uploads of the posts left in the outbox
+            AppExecutors.background().execute(() -> postOutbox.resume());
+
+            // Show the posts being uploaded on top of the feed
+            observeUploads();
+
+            // Show the progress of a running account deletion
+            observeAccountDeletion();
+
+            // Search the posts on the device as the query is typed
+            setSearch();
         }
 
         // Inflate the layout for this activity
@@ -103,11 +162,7 @@ public class MainActivity extends AppCompatActivity {
         logoutEFAB = binding.logoutEFAB;
         deleteAccountEFAB = binding.deleteAccountEFAB;
         addPostEFAB = binding.addPostEFAB;
-
-        // Initialize the RecyclerView
-        recyclerView = binding.recyclerView;
-        recyclerView.setAdapter(new RecyclerAdapter(postArrayList));
-        recyclerView.setLayoutManager(new LinearLayoutManager(this));
+        exploreEFAB = binding.exploreEFAB;
 
         // Set the layout for the first time
         moreEFAB.shrink();
@@ -117,15 +172,72 @@ public class MainActivity extends AppCompatActivity {
         deleteAccountEFAB.shrink();
         addPostEFAB.hide();
         addPostEFAB.shrink();
+        exploreEFAB.hide();
+        exploreEFAB.shrink();
 
         // Set the click listeners for the FABs
         addPostEFAB.setOnClickListener(view -> setAddPostEFAB());
+        exploreEFAB.setOnClickListener(view -> setExploreEFAB());
         deleteAccountEFAB.setOnClickListener(view -> setDeleteAccountEFAB());
         logoutEFAB.setOnClickListener(view -> setLogoutEFAB());
         moreEFAB.setOnClickListener(view -> setMoreEFAB());
 
         // Check if the internet connection is available
-        checkConnection();
+        NoConnectionDialog.bind(this); // Show a dialog while the internet connection is not available
+
+        // Show the performance numbers in debuggable builds
+        PerfOverlay.attach(this);
+
+        StartupTimer.mark(StartupTimer.MAIN_CREATED);
+        StartupTimer.markNextFrame(recyclerView, StartupTimer.FIRST_FRAME);
+    }
+
+    // Method to show the changed feed, the first live feed ends the startup
+    private void onFeedChanged(FeedViewModel.Update update) {
+        // The feed is shown again with its latest posts when the search ends
+        if (searching)
+            return;
+
+        recyclerAdapter.submitFeed(update.feed, update.previous, update.diff);
+        if (update.diff != null) {
+            PerfMetrics.recordOnNextFrame(recyclerView, PerfMetrics.FEED_RENDER, update.receivedNanos);
+            StartupTimer.finishOnNextFrame(this, StartupTimer.LIVE_FEED_FRAME);
+        }
+    }
+
+    // Method to switch between the feed and the search results of the typed query
+    private void setSearch() {
+        getOnBackPressedDispatcher().addCallback(this, closeSearch);
+        feedViewModel.getSearchResults().observe(this, results -> {
+            if (searching)
+                recyclerAdapter.setFeed(results);
+        });
+
+        binding.searchView.setOnQueryTextListener(new SearchView.OnQueryTextListener() {
+            @Override
+            public boolean onQueryTextSubmit(String query) {
+                // Results are shown while typing, only hide the keyboard
+                binding.searchView.clearFocus();
+                return true;
+            }
+
+            @Override
+            public boolean onQueryTextChange(String query) {
+                if (!query.trim().isEmpty()) {
+                    searching = true;
+                    closeSearch.setEnabled(true);
+                    feedViewModel.search(query);
+                } else if (searching) {
+                    // Show the feed again
+                    searching = false;
+                    closeSearch.setEnabled(false);
+                    feedViewModel.clearSearch();
+                    FeedViewModel.Update update = feedViewModel.getFeed().getValue();
+                    recyclerAdapter.setFeed(update != null ? update.feed : CompactFeed.EMPTY);
+                }
+                return true;
+            }
+        });
     }
 
     // Method to redirect to the post activity
@@ -152,31 +264,8 @@ public class MainActivity extends AppCompatActivity {
             // Re-authenticate the user and delete the account
             user.reauthenticate(EmailAuthProvider.getCredential(Objects.requireNonNull(user.getEmail()), String.valueOf(passwordEditText.getText()))).addOnCompleteListener(task -> {
                 if (task.isSuccessful()) {
-                    // Delete user's posts
-                    firebaseFirestore.collection("Posts").whereEqualTo("email", user.getEmail()).get().addOnCompleteListener(task2 -> {
-                        if (task2.isSuccessful()) {
-                            StorageReference storageReference = FirebaseStorage.getInstance().getReference();
-                            for (DocumentSnapshot documentSnapshot : task2.getResult().getDocuments()) {
-                                String imageUrl = documentSnapshot.getString("imageUrl");
-                                String path = "images/" + Objects.requireNonNull(imageUrl).substring(imageUrl.indexOf("%2F") + 3, imageUrl.indexOf(".jpg")) + ".jpg";
-                                storageReference.child(path).delete().addOnSuccessListener(voidTask -> documentSnapshot.getReference().delete());
-                            }
-                        }
-                    });
-
-                    // Delete the user account
-                    user.delete().addOnCompleteListener(voidTask -> {
-                        if (voidTask.isSuccessful()) {
-                            // Account deleted successfully
-                            Toast.makeText(MainActivity.this, "Account deleted successfully", Toast.LENGTH_LONG).show();
-
-                            // Redirect to the login page
-                            logoutIntent();
-                        } else {
-                            // Account deletion failed
-                            Toast.makeText(MainActivity.this, "Account deletion failed, try again later!", Toast.LENGTH_LONG).show();
-                        }
-                    });
+                    // Delete the posts and then the account in the background
+                    AccountDeletionWorker.enqueue(getApplicationContext(), user.getUid(), user.getEmail());
                 } else {
                     // Re-authentication failed due to incorrect password
                     Toast.makeText(MainActivity.this, "Re-authentication failed, please check your password and try again later!", Toast.LENGTH_LONG).show();
@@ -188,11 +277,114 @@ public class MainActivity extends AppCompatActivity {
         builder.show();
     }
 
+    // Method to show the progress and the result of the account deletion, also after a restart
+    private void observeAccountDeletion() {
+        WorkManager.getInstance(this).getWorkInfosForUniqueWorkLiveData(AccountDeletionWorker.WORK_NAME).observe(this, workInfos -> {
+            if (workInfos == null || workInfos.isEmpty())
+                return;
+
+            WorkInfo workInfo = workInfos.get(0);
+            switch (workInfo.getState()) {
+                case ENQUEUED:
+                case RUNNING:
+                case BLOCKED:
+                    // Show the number of deleted posts
+                    if (deletionDialog == null) {
+                        deletionDialog = new AlertDialog.Builder(MainActivity.this)
+                                .setTitle("Deleting Account")
+                                .setMessage("0 posts deleted")
+                                .setCancelable(false)
+                                .show();
+                    }
+                    deletionDialog.setMessage(workInfo.getProgress().getInt(AccountDeletionWorker.KEY_DELETED, 0) + " posts deleted");
+                    break;
+                case SUCCEEDED:
+                    dismissDeletionDialog();
+
+                    // Account deleted successfully
+                    WorkManager.getInstance(this).pruneWork();
+                    Toast.makeText(MainActivity.this, "Account deleted successfully", Toast.LENGTH_LONG).show();
+
+                    // Redirect to the login page
+                    mAuth.signOut();
+                    clearLocalFeed();
+                    logoutIntent();
+                    break;
+                case FAILED:
+                case CANCELLED:
+                    dismissDeletionDialog();
+                    WorkManager.getInstance(this).pruneWork();
+
+                    // Account deletion failed
+                    if (workInfo.getOutputData().getBoolean(AccountDeletionWorker.KEY_REAUTHENTICATE, false))
+                        Toast.makeText(MainActivity.this, "Please enter your password again to delete your account", Toast.LENGTH_LONG).show();
+                    else
+                        Toast.makeText(MainActivity.this, "Account deletion failed, try again later!", Toast.LENGTH_LONG).show();
+                    break;
+            }
+        });
+    }
+
+    // Method to update the pending posts whenever an upload is queued, finishes or fails
+    private void observeUploads() {
+        WorkManager.getInstance(this).getWorkInfosByTagLiveData(PostOutbox.WORK_TAG).observe(this, workInfos -> {
+            feedViewModel.refreshPending();
+
+            // Ask what to do with the posts that could not be uploaded
+            AppExecutors.background().execute(() -> {
+                List<PostOutbox.Entry> failed = postOutbox.getFailed();
+                AppExecutors.mainThread().execute(() -> {
+                    if (isDestroyed())
+                        return;
+                    for (PostOutbox.Entry entry : failed) {
+                        if (shownFailures.add(entry.postId))
+                            showUploadFailed(entry);
+                    }
+                });
+            });
+        });
+    }
+
+    // Method to let the user retry or discard a post whose upload has failed
+    private void showUploadFailed(PostOutbox.Entry entry) {
+        new AlertDialog.Builder(MainActivity.this)
+                .setTitle("Post Not Shared")
+                .setMessage("Your post \"" + entry.comment + "\" could not be uploaded.")
+                .setPositiveButton("Retry", (dialogInterface, i) -> {
+                    shownFailures.remove(entry.postId);
+                    AppExecutors.background().execute(() -> postOutbox.retry(entry));
+                })
+                .setNegativeButton("Discard", (dialogInterface, i) -> AppExecutors.background().execute(() -> postOutbox.remove(entry)))
+                .setCancelable(false)
+                .show();
+    }
+
+    private void dismissDeletionDialog() {
+        if (deletionDialog != null) {
+            deletionDialog.dismiss();
+            deletionDialog = null;
+        }
+    }
+
     // Method to logout the user
     private void setLogoutEFAB() {
         logoutIntent(); // Redirect to the login page
 
         mAuth.signOut(); // Sign out the user
+
+        clearLocalFeed(); // The cached and the searched posts are the timeline of this user
+    }
+
+    private void clearLocalFeed() {
+        FeedCache feedCache = new FeedCache(getApplicationContext());
+        AppExecutors.disk().execute(feedCache::clear);
+        PostSearch.get(getApplicationContext()).clear();
+    }
+
+    // Method to redirect to every post, to find accounts to follow
+    private void setExploreEFAB() {
+        Intent intent = new Intent(MainActivity.this, TimelineActivity.class);
+        startActivity(intent);
     }
 
     // Method to handle the click event of the more FAB
@@ -208,6 +400,8 @@ public class MainActivity extends AppCompatActivity {
             deleteAccountEFAB.shrink();
             addPostEFAB.hide();
             addPostEFAB.shrink();
+            exploreEFAB.hide();
+            exploreEFAB.shrink();
         } else {
             // Extend the FAB and show the other FABs
             moreEFAB.extend();
@@ -218,6 +412,8 @@ public class MainActivity extends AppCompatActivity {
             deleteAccountEFAB.extend();
             addPostEFAB.show();
             addPostEFAB.extend();
+            exploreEFAB.show();
+            exploreEFAB.extend();
         }
     }
 
@@ -228,61 +424,10 @@ public class MainActivity extends AppCompatActivity {
         finish();
     }
 
-    // Method to check the internet connection
-    private void checkConnection() {
-        Handler handler = new Handler(Looper.getMainLooper());
-        Runnable runnable = new Runnable() {
-            @Override
-            public void run() {
-                ConnectivityManager connectivityManager = (ConnectivityManager) binding.getRoot().getContext().getSystemService(Context.CONNECTIVITY_SERVICE);
-                NetworkCapabilities capabilities = connectivityManager.getNetworkCapabilities(connectivityManager.getActiveNetwork());
-
-                if (capabilities == null || !capabilities.hasCapability(NetworkCapabilities.NET_CAPABILITY_INTERNET)) {
-                    AlertDialog.Builder builder = new AlertDialog.Builder(MainActivity.this);
-                    builder.setTitle("No Internet Connection");
-                    builder.setMessage("Please check your internet connection and try again.");
-                    builder.setPositiveButton("OK", (dialogInterface, i) -> {
-                        dialogInterface.dismiss();
-                        finish();
-                    });
-                    if (!isFinishing())
-                        builder.show();
-                }
-                handler.postDelayed(this, 3000);
-            }
-        };
-        handler.post(runnable);
-    }
-
     // Method to get the posts from the Firestore
     private void getData() {
-        firebaseFirestore.collection("Posts").orderBy("date", Query.Direction.DESCENDING).addSnapshotListener((value, error) -> {
-            // Check if there is an error
-            if (error == null && value != null) {
-                // Get the posts from the Firestore and add them to the postArrayList
-                for (DocumentSnapshot documentSnapshot : value.getDocuments()) {
-                    Map<String, Object> data = documentSnapshot.getData();
-
-                    if (data != null) {
-                        Post post = new Post();
-                        post.setDisplayName((String) data.get("displayName"));
-                        post.setEmail((String) data.get("email"));
-                        post.setComment((String) data.get("comment"));
-                        post.setImageUri(Uri.parse((String) data.get("imageUrl")));
-
-                        // Set the date of the post
-                        Timestamp ts = ((Timestamp) data.get("date"));
-                        if (ts != null)
-                            post.setDate(new java.sql.Timestamp(ts.toDate().getTime()).toString().split("\\.")[0]);
-
-                        postArrayList.add(post);
-
-                        // Notify the adapter that the data has changed
-                        if (recyclerView.getAdapter() != null)
-                            recyclerView.getAdapter().notifyItemInserted(postArrayList.size() - 1);
-                    }
-                }
-            }
-        });
+        // The view model shows the posts saved on the device first and listens to the home timeline of the user while this screen is started
+        feedViewModel = new ViewModelProvider(this, FeedViewModel.homeFactory(getApplication(), user.getUid())).get(FeedViewModel.class);
+        feedViewModel.getFeed().observe(this, this::onFeedChanged);
     }
 }
\ No newline at end of file
@@ -2,15 +2,13 @@ package com.receparslan.basicsocialmedia.views;
 
 import static android.Manifest.permission.READ_EXTERNAL_STORAGE;
 
-import android.content.Context;
+import android.content.ClipData;
 import android.content.Intent;
 import android.content.pm.PackageManager;
-import android.net.ConnectivityManager;
-import android.net.NetworkCapabilities;
+import android.graphics.Bitmap;
+import android.net.Uri;
 import android.os.Build;
 import android.os.Bundle;
-import android.os.Handler;
-import android.os.Looper;
 import android.provider.MediaStore;
 import android.view.View;
 import android.widget.EditText;
@@ -21,7 +19,7 @@ import androidx.activity.EdgeToEdge;
 import androidx.activity.result.ActivityResultLauncher;
 import androidx.activity.result.PickVisualMediaRequest;
 import androidx.activity.result.contract.ActivityResultContracts;
-import androidx.appcompat.app.AlertDialog;
+import androidx.annotation.NonNull;
 import androidx.appcompat.app.AppCompatActivity;
 import androidx.core.content.ContextCompat;
 import androidx.core.graphics.Insets;
@@ -31,51 +29,61 @@ import androidx.core.view.WindowInsetsCompat;
 import com.google.android.material.snackbar.Snackbar;
 import com.google.firebase.auth.FirebaseAuth;
 import com.google.firebase.auth.FirebaseUser;
-import com.google.firebase.firestore.FieldValue;
 import com.google.firebase.firestore.FirebaseFirestore;
-import com.google.firebase.storage.FirebaseStorage;
-import com.google.firebase.storage.StorageReference;
 import com.receparslan.basicsocialmedia.R;
 import com.receparslan.basicsocialmedia.databinding.ActivityPostBinding;
-import com.receparslan.basicsocialmedia.model.Post;
+import com.receparslan.basicsocialmedia.image.ImageProcessor;
+import com.receparslan.basicsocialmedia.network.NoConnectionDialog;
+import com.receparslan.basicsocialmedia.outbox.PostOutbox;
+import com.receparslan.basicsocialmedia.perf.PerfMetrics;
+import com.receparslan.basicsocialmedia.util.AppExecutors;
 
-import java.util.HashMap;
-import java.util.UUID;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
 
 public class PostActivity extends AppCompatActivity {
 
+    private static final String KEY_POST_ID = "post_id";
+
     // View Binding
     private ActivityPostBinding binding;
 
     // Firebase
-    private FirebaseFirestore firebaseFirestore;
-    private StorageReference storageReference;
     private FirebaseUser user;
 
+    // Client-generated ID of the post, kept across recreation so the post is queued only once
+    private String postId;
+
     // Views
     private ImageView selectedImageView;
     private EditText commentEditText;
 
-    // Model
-    private Post post;
+    // Selected images, the first one is previewed
+    private final ArrayList<Uri> imageUris = new ArrayList<>();
+
+    // Downscales and re-encodes the selected image
+    private ImageProcessor imageProcessor;
 
     // Activity Result Launcher for gallery access (Android 13 and above)
-    private final ActivityResultLauncher<PickVisualMediaRequest> pickGalleryLauncher = registerForActivityResult(new ActivityResultContracts.PickVisualMedia(), uri -> {
-        if (uri != null) {
-            post.setImageUri(uri);
-            selectedImageView.setImageURI(post.getImageUri());
-        }
-    });
+    private final ActivityResultLauncher<PickVisualMediaRequest> pickGalleryLauncher = registerForActivityResult(new ActivityResultContracts.PickMultipleVisualMedia(PostOutbox.MAX_IMAGES), this::setSelectedImages);
 
     // Activity Result Launcher for legacy gallery access (before Android 13)
     private final ActivityResultLauncher<Intent> legacyGalleryLauncher = registerForActivityResult(new ActivityResultContracts.StartActivityForResult(), result -> {
         if (result.getResultCode() == RESULT_OK) {
             Intent intentFromResult = result.getData();
             if (intentFromResult != null) {
-                post.setImageUri(intentFromResult.getData());
-                if (post.getImageUri() != null) {
-                    selectedImageView.setImageURI(post.getImageUri());
+                // Several images are returned as clip data, a single one as the data
+                ArrayList<Uri> uris = new ArrayList<>();
+                ClipData clipData = intentFromResult.getClipData();
+                if (clipData != null) {
+                    for (int i = 0; i < clipData.getItemCount() && i < PostOutbox.MAX_IMAGES; i++)
+                        uris.add(clipData.getItemAt(i).getUri());
+                } else if (intentFromResult.getData() != null) {
+                    uris.add(intentFromResult.getData());
                 }
+                setSelectedImages(uris);
             }
         }
     });
@@ -85,6 +93,7 @@ public class PostActivity extends AppCompatActivity {
         if (isGranted) {
             // Permission is granted
             Intent intentToGallery = new Intent(Intent.ACTION_PICK, MediaStore.Images.Media.EXTERNAL_CONTENT_URI);
+            intentToGallery.putExtra(Intent.EXTRA_ALLOW_MULTIPLE, true);
             legacyGalleryLauncher.launch(intentToGallery);
         } else {
             // Permission is denied
@@ -108,11 +117,14 @@ public class PostActivity extends AppCompatActivity {
         });
 
         // Initialize Firebase
-        firebaseFirestore = FirebaseFirestore.getInstance();
-        storageReference = FirebaseStorage.getInstance().getReference();
         user = FirebaseAuth.getInstance().getCurrentUser();
 
-        post = new Post(); // Initialize post
+        // Generate the ID of the post
+        postId = savedInstanceState != null ? savedInstanceState.getString(KEY_POST_ID) : null;
+        if (postId == null)
+            postId = FirebaseFirestore.getInstance().collection("Posts").document().getId();
+
+        imageProcessor = new ImageProcessor(getContentResolver()); // Initialize image processor
 
         // Inflate views
         selectedImageView = binding.selectImageView;
@@ -122,7 +134,13 @@ public class PostActivity extends AppCompatActivity {
 
         binding.uploadButton.setOnClickListener(this::setUploadButton); // Set onClickListener for upload button
 
-        checkConnection(); // Check the internet connection every 3 seconds
+        NoConnectionDialog.bind(this); // Show a dialog while the internet connection is not available
+    }
+
+    @Override
+    protected void onSaveInstanceState(@NonNull Bundle outState) {
+        super.onSaveInstanceState(outState);
+        outState.putString(KEY_POST_ID, postId);
     }
 
     // Method to select an image from the gallery
@@ -138,61 +156,95 @@ public class PostActivity extends AppCompatActivity {
         }
     }
 
+    // Method to keep the selected images and preview the first one
+    private void setSelectedImages(List<Uri> uris) {
+        if (uris == null || uris.isEmpty())
+            return;
+
+        imageUris.clear();
+        imageUris.addAll(uris);
+        showPreview(imageUris.get(0));
+        if (imageUris.size() > 1)
+            Toast.makeText(this, imageUris.size() + " images selected", Toast.LENGTH_SHORT).show();
+    }
+
     // Method to upload the post
     private void setUploadButton(View view) {
         // Check if an image is selected
-        if (post.getImageUri() == null) {
+        if (imageUris.isEmpty()) {
             Snackbar.make(view, "Please select an image", Snackbar.LENGTH_LONG).setAction("Select Image", this::setSelectedImageView).show();
         } else {
             // Check if a comment is entered
-            post.setComment(commentEditText.getText().toString());
+            String comment = commentEditText.getText().toString();
 
-            if (post.getComment().isEmpty()) {
+            if (comment.isEmpty()) {
                 Snackbar.make(view, "Please enter a comment", Snackbar.LENGTH_LONG).show();
             } else {
-                // Upload the post
-                String imageName = "images/" + UUID.randomUUID() + ".jpg"; // Create a unique image name
-
-                // Upload the image to Firebase Storage
-                storageReference.child(imageName).putFile(post.getImageUri()).addOnCompleteListener(taskSnapshot -> {
-                    if (taskSnapshot.isSuccessful()) {
-                        // Get the download URL of the image
-                        storageReference.child(imageName).getDownloadUrl().addOnCompleteListener(task -> {
-                            if (task.isSuccessful()) {
-                                // Create a post data
-                                HashMap<String, Object> postData = new HashMap<>();
-                                postData.put("displayName", user.getDisplayName());
-                                postData.put("email", user.getEmail());
-                                postData.put("date", FieldValue.serverTimestamp());
-                                postData.put("comment", post.getComment());
-                                postData.put("imageUrl", task.getResult());
-
-                                // Upload the post data to Firestore
-                                firebaseFirestore.collection("Posts").add(postData).addOnCompleteListener(task2 -> {
-                                    if (task2.isSuccessful()) {
-                                        Intent intent = new Intent(PostActivity.this, MainActivity.class);
-                                        intent.addFlags(Intent.FLAG_ACTIVITY_CLEAR_TOP);
-                                        startActivity(intent);
-                                    } else {
-                                        Toast.makeText(PostActivity.this, task2.getException() != null ? task2.getException().getMessage() : "Post could not be uploaded", Toast.LENGTH_LONG).show();
-                                    }
-                                });
-                            } else {
-                                Toast.makeText(PostActivity.this, task.getException() != null ? task.getException().getMessage() : "Post could not be uploaded", Toast.LENGTH_LONG).show();
-                            }
+                // Queue the post in the outbox, it is uploaded in the background
+                binding.uploadButton.setEnabled(false);
+                ArrayList<Uri> selectedUris = new ArrayList<>(imageUris);
+                String authorUid = user.getUid();
+                String displayName = user.getDisplayName();
+                String email = user.getEmail();
+                PostOutbox outbox = new PostOutbox(this);
+
+                // Downscale and re-encode the image variants in the background before queueing them, one image at a time to bound the memory
+                AppExecutors.background().execute(() -> {
+                    try {
+                        // The post is already queued if the button was tapped again
+                        if (outbox.get(postId) == null) {
+                            File directory = PostOutbox.imageDirectory(this);
+                            long start = System.nanoTime();
+                            for (int i = 0; i < selectedUris.size(); i++)
+                                imageProcessor.processVariants(selectedUris.get(i), directory, PostOutbox.imageName(postId, i));
+                            PerfMetrics.record(PerfMetrics.POST_PROCESS, start);
+
+                            start = System.nanoTime();
+                            outbox.add(new PostOutbox.Entry(postId, authorUid, displayName, email, comment, ImageProcessor.Variant.ORIGINAL.file(directory, PostOutbox.imageName(postId, 0), imageProcessor.getExtension()), selectedUris.size(), System.currentTimeMillis()));
+                            PerfMetrics.record(PerfMetrics.POST_QUEUE, start);
+                        }
+
+                        AppExecutors.mainThread().execute(() -> {
+                            Intent intent = new Intent(PostActivity.this, MainActivity.class);
+                            // Go back to the running feed instead of creating another one
+                            intent.addFlags(Intent.FLAG_ACTIVITY_CLEAR_TOP | Intent.FLAG_ACTIVITY_SINGLE_TOP);
+                            startActivity(intent);
+                        });
+                    } catch (IOException e) {
+                        AppExecutors.mainThread().execute(() -> {
+                            binding.uploadButton.setEnabled(true);
+                            Toast.makeText(PostActivity.this, "Image could not be processed", Toast.LENGTH_LONG).show();
                         });
-                    } else {
-                        Toast.makeText(PostActivity.this, taskSnapshot.getException() != null ? taskSnapshot.getException().getMessage() : "Post could not be uploaded", Toast.LENGTH_LONG).show();
                     }
                 });
             }
         }
     }
 
+    // Method to show a downsampled preview of the selected image
+    private void showPreview(Uri uri) {
+        int previewSize = Math.max(getResources().getDisplayMetrics().widthPixels, getResources().getDisplayMetrics().heightPixels) / 2;
+
+        // Decode the preview in the background
+        AppExecutors.background().execute(() -> {
+            try {
+                Bitmap preview = imageProcessor.decode(uri, previewSize);
+                AppExecutors.mainThread().execute(() -> {
+                    // Ignore the preview if another image is selected meanwhile
+                    if (!imageUris.isEmpty() && uri.equals(imageUris.get(0)) && !isDestroyed())
+                        selectedImageView.setImageBitmap(preview);
+                });
+            } catch (IOException e) {
+                AppExecutors.mainThread().execute(() -> Toast.makeText(PostActivity.this, "Image could not be loaded", Toast.LENGTH_LONG).show());
+            }
+        });
+    }
+
     // Method to request permission to access the gallery
     private void requestPermission(View view) {
         if (ContextCompat.checkSelfPermission(this, READ_EXTERNAL_STORAGE) == PackageManager.PERMISSION_GRANTED) {
             Intent intentToGallery = new Intent(Intent.ACTION_PICK, MediaStore.Images.Media.EXTERNAL_CONTENT_URI);
+            intentToGallery.putExtra(Intent.EXTRA_ALLOW_MULTIPLE, true);
             legacyGalleryLauncher.launch(intentToGallery);
         } else if (shouldShowRequestPermissionRationale(READ_EXTERNAL_STORAGE)) {
             Snackbar.make(view, "Permission is required to access the gallery.", Snackbar.LENGTH_LONG).setAction("Allow", v -> requestPermissionLauncher.launch(READ_EXTERNAL_STORAGE)).show();
@@ -200,30 +252,4 @@ public class PostActivity extends AppCompatActivity {
             requestPermissionLauncher.launch(READ_EXTERNAL_STORAGE);
         }
     }
-
-    // Method to check the internet connection
-    private void checkConnection() {
-        Handler handler = new Handler(Looper.getMainLooper());
-        Runnable runnable = new Runnable() {
-            @Override
-            public void run() {
-                ConnectivityManager connectivityManager = (ConnectivityManager) binding.getRoot().getContext().getSystemService(Context.CONNECTIVITY_SERVICE);
-                NetworkCapabilities capabilities = connectivityManager.getNetworkCapabilities(connectivityManager.getActiveNetwork());
-
-                if (capabilities == null || !capabilities.hasCapability(NetworkCapabilities.NET_CAPABILITY_INTERNET)) {
-                    AlertDialog.Builder builder = new AlertDialog.Builder(PostActivity.this);
-                    builder.setTitle("No Internet Connection");
-                    builder.setMessage("Please check your internet connection and try again.");
-                    builder.setPositiveButton("OK", (dialogInterface, i) -> {
-                        dialogInterface.dismiss();
-                        finish();
-                    });
-                    if (!isFinishing())
-                        builder.show();
-                }
-                handler.postDelayed(this, 3000);
-            }
-        };
-        handler.post(runnable);
-    }
 }
\ No newline at end of file
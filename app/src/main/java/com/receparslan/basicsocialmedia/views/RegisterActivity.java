@@ -1,12 +1,7 @@
 package com.receparslan.basicsocialmedia.views;
 
-import android.content.Context;
 import android.content.Intent;
-import android.net.ConnectivityManager;
-import android.net.NetworkCapabilities;
 import android.os.Bundle;
-import android.os.Handler;
-import android.os.Looper;
 import android.view.View;
 import android.widget.EditText;
 import android.widget.Toast;
@@ -23,6 +18,7 @@ import com.google.firebase.auth.FirebaseUser;
 import com.google.firebase.auth.UserProfileChangeRequest;
 import com.receparslan.basicsocialmedia.R;
 import com.receparslan.basicsocialmedia.databinding.ActivityRegisterBinding;
+import com.receparslan.basicsocialmedia.network.NoConnectionDialog;
 
 public class RegisterActivity extends AppCompatActivity {
 
@@ -64,7 +60,7 @@ public class RegisterActivity extends AppCompatActivity {
 
         mAuth = FirebaseAuth.getInstance(); // Initialize Firebase Auth
 
-        checkConnection(); // Check the internet connection every 3 seconds
+        NoConnectionDialog.bind(this); // Show a dialog while the internet connection is not available
     }
 
     // Method to register the user
@@ -97,6 +93,9 @@ public class RegisterActivity extends AppCompatActivity {
                             .setMessage("User registered successfully. Please log in !")
                             .setPositiveButton("OK", (dialogInterface, i) -> {
                                 dialogInterface.dismiss();
+
+                                // Registering signs the user in, sign out so the new account logs in on the login page
+                                mAuth.signOut();
                                 Intent loginIntent = new Intent(RegisterActivity.this, LoginActivity.class);
                                 loginIntent.addFlags(Intent.FLAG_ACTIVITY_CLEAR_TOP);
                                 startActivity(loginIntent);
@@ -109,30 +108,4 @@ public class RegisterActivity extends AppCompatActivity {
             });
         }
     }
-
-    // Method to check the internet connection
-    private void checkConnection() {
-        Handler handler = new Handler(Looper.getMainLooper());
-        Runnable runnable = new Runnable() {
-            @Override
-            public void run() {
-                ConnectivityManager connectivityManager = (ConnectivityManager) binding.getRoot().getContext().getSystemService(Context.CONNECTIVITY_SERVICE);
-                NetworkCapabilities capabilities = connectivityManager.getNetworkCapabilities(connectivityManager.getActiveNetwork());
-
-                if (capabilities == null || !capabilities.hasCapability(NetworkCapabilities.NET_CAPABILITY_INTERNET)) {
-                    AlertDialog.Builder builder = new AlertDialog.Builder(RegisterActivity.this);
-                    builder.setTitle("No Internet Connection");
-                    builder.setMessage("Please check your internet connection and try again.");
-                    builder.setPositiveButton("OK", (dialogInterface, i) -> {
-                        dialogInterface.dismiss();
-                        finish();
-                    });
-                    if (!isFinishing())
-                        builder.show();
-                }
-                handler.postDelayed(this, 3000);
-            }
-        };
-        handler.post(runnable);
-    }
 }
\ No newline at end of file
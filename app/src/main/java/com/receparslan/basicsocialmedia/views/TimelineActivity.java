@@ -0,0 +1,181 @@
+package com.receparslan.basicsocialmedia.views;
+
+import android.os.Bundle;
+import android.view.View;
+import android.widget.Toast;
+
+import androidx.activity.EdgeToEdge;
+import androidx.annotation.NonNull;
+import androidx.appcompat.app.AppCompatActivity;
+import androidx.core.graphics.Insets;
+import androidx.core.view.ViewCompat;
+import androidx.core.view.WindowInsetsCompat;
+import androidx.lifecycle.ViewModelProvider;
+import androidx.recyclerview.widget.LinearLayoutManager;
+import androidx.recyclerview.widget.RecyclerView;
+
+import com.google.firebase.Timestamp;
+import com.google.firebase.auth.FirebaseAuth;
+import com.google.firebase.auth.FirebaseUser;
+import com.google.firebase.firestore.DocumentSnapshot;
+import com.google.firebase.firestore.FirebaseFirestore;
+import com.receparslan.basicsocialmedia.R;
+import com.receparslan.basicsocialmedia.account.UserStats;
+import com.receparslan.basicsocialmedia.adapter.RecyclerAdapter;
+import com.receparslan.basicsocialmedia.databinding.ActivityTimelineBinding;
+import com.receparslan.basicsocialmedia.feed.FeedViewModel;
+import com.receparslan.basicsocialmedia.follow.FollowGraph;
+import com.receparslan.basicsocialmedia.follow.HomeTimeline;
+import com.receparslan.basicsocialmedia.image.ImagePrefetcher;
+import com.receparslan.basicsocialmedia.network.ConnectivityMonitor;
+import com.receparslan.basicsocialmedia.network.NoConnectionDialog;
+import com.receparslan.basicsocialmedia.util.AppExecutors;
+import com.receparslan.basicsocialmedia.util.DateFormatter;
+import com.squareup.picasso.Picasso;
+
+import java.util.concurrent.ExecutionException;
+
+/**
+ * Posts of one author, newest first, paged like the main feed.
+ * <p>
+ * The signed in user can follow the author here. Following copies the latest posts of the author
+ * into the home timeline of the user, unfollowing removes the posts of the author from it.
+ * <p>
+ * Started without an author it shows every post instead, so the user can find accounts to follow
+ * by opening their authors.
+ */
+public class TimelineActivity extends AppCompatActivity {
+
+    // UID and email of the author whose posts are shown, every post is shown without them
+    public static final String EXTRA_AUTHOR_UID = "author_uid";
+    public static final String EXTRA_EMAIL = "email";
+
+    // View model that loads the posts of the author page by page
+    private FeedViewModel feedViewModel;
+
+    private RecyclerAdapter recyclerAdapter;
+
+    // View binding
+    private ActivityTimelineBinding binding;
+
+    // Whether the signed in user follows the author, null until it is known
+    private Boolean following;
+
+    @Override
+    protected void onCreate(Bundle savedInstanceState) {
+        super.onCreate(savedInstanceState);
+        EdgeToEdge.enable(this);
+
+        // Set the content view using view binding
+        binding = ActivityTimelineBinding.inflate(getLayoutInflater());
+        setContentView(binding.getRoot());
+
+        ViewCompat.setOnApplyWindowInsetsListener(findViewById(R.id.main), (v, insets) -> {
+            Insets systemBars = insets.getInsets(WindowInsetsCompat.Type.systemBars());
+            v.setPadding(systemBars.left, systemBars.top, systemBars.right, systemBars.bottom);
+            return insets;
+        });
+
+        String authorUid = getIntent().getStringExtra(EXTRA_AUTHOR_UID);
+        if (authorUid != null) {
+            binding.authorTextView.setText(getIntent().getStringExtra(EXTRA_EMAIL));
+        } else {
+            binding.authorTextView.setText(R.string.explore);
+            binding.statsTextView.setText(R.string.explore_hint);
+        }
+
+        // Initialize the view model of the author or of every post, it keeps the loaded posts across configuration changes
+        ViewModelProvider.Factory factory = authorUid != null ? FeedViewModel.authorFactory(getApplication(), authorUid) : FeedViewModel.exploreFactory(getApplication());
+        feedViewModel = new ViewModelProvider(this, factory).get(FeedViewModel.class);
+
+        // Initialize the RecyclerView, the author is already shown on the screen of an author
+        RecyclerView recyclerView = binding.recyclerView;
+        recyclerAdapter = new RecyclerAdapter();
+        recyclerAdapter.setAuthorClickable(authorUid == null);
+        recyclerView.setAdapter(recyclerAdapter);
+        LinearLayoutManager layoutManager = new LinearLayoutManager(this);
+        recyclerView.setLayoutManager(layoutManager);
+
+        // Prefetch the images of the rows in the direction of scrolling
+        recyclerView.addOnScrollListener(new ImagePrefetcher(Picasso.get(), layoutManager, recyclerAdapter::getFeed, ConnectivityMonitor.get(this)));
+
+        // Load the next page when the end of the timeline is close, drop the pages far below
+        recyclerView.addOnScrollListener(new RecyclerView.OnScrollListener() {
+            @Override
+            public void onScrolled(@NonNull RecyclerView recyclerView, int dx, int dy) {
+                feedViewModel.onScrolled(layoutManager.findLastVisibleItemPosition());
+            }
+        });
+
+        // Let the signed in user follow the author and show the post count of the author
+        if (authorUid != null) {
+            FirebaseUser user = FirebaseAuth.getInstance().getCurrentUser();
+            if (user != null && !user.getUid().equals(authorUid))
+                setFollowButton(user.getUid(), authorUid);
+            getStats(authorUid);
+        }
+
+        // Load the first page
+        feedViewModel.getFeed().observe(this, update -> recyclerAdapter.submitFeed(update.feed, update.previous, update.diff));
+
+        // Check if the internet connection is available
+        NoConnectionDialog.bind(this); // Show a dialog while the internet connection is not available
+    }
+
+    // Method to follow or unfollow the author on click
+    private void setFollowButton(String uid, String authorUid) {
+        FirebaseFirestore firebaseFirestore = FirebaseFirestore.getInstance();
+        FollowGraph.isFollowing(firebaseFirestore, uid, authorUid).addOnSuccessListener(this, isFollowing -> {
+            following = isFollowing;
+            binding.followButton.setText(following ? R.string.unfollow : R.string.follow);
+            binding.followButton.setVisibility(View.VISIBLE);
+        });
+
+        binding.followButton.setOnClickListener(view -> {
+            if (following == null)
+                return;
+
+            boolean follow = !following;
+            binding.followButton.setEnabled(false);
+            (follow ? FollowGraph.follow(firebaseFirestore, uid, authorUid) : FollowGraph.unfollow(firebaseFirestore, uid, authorUid)).addOnCompleteListener(this, task -> {
+                binding.followButton.setEnabled(true);
+                if (!task.isSuccessful()) {
+                    Toast.makeText(TimelineActivity.this, "Follow failed, please try again!", Toast.LENGTH_LONG).show();
+                    return;
+                }
+
+                following = follow;
+                binding.followButton.setText(following ? R.string.unfollow : R.string.follow);
+                getStats(authorUid);
+
+                // Bring the home timeline in line with the follow, it shows the change live
+                AppExecutors.background().execute(() -> {
+                    try {
+                        if (follow)
+                            HomeTimeline.backfill(firebaseFirestore, uid, authorUid);
+                        else
+                            HomeTimeline.removeAuthor(firebaseFirestore, uid, authorUid);
+                    } catch (ExecutionException e) {
+                        // New posts of the author still arrive, or stop arriving, through the follow
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                });
+            });
+        });
+    }
+
+    // Method to get the statistics of the author, one document instead of counting the posts and the followers
+    private void getStats(String authorUid) {
+        UserStats.reference(FirebaseFirestore.getInstance(), authorUid).get().addOnSuccessListener(this, documentSnapshot -> {
+            Long postCount = documentSnapshot.getLong(UserStats.FIELD_POST_COUNT);
+            Long followerCount = documentSnapshot.getLong(UserStats.FIELD_FOLLOWER_COUNT);
+            Timestamp lastPostDate = documentSnapshot.getTimestamp(UserStats.FIELD_LAST_POST_DATE, DocumentSnapshot.ServerTimestampBehavior.ESTIMATE);
+
+            String stats = (postCount != null ? postCount : 0) + " posts · " + (followerCount != null ? followerCount : 0) + " followers";
+            if (lastPostDate != null)
+                stats += " · last post " + new DateFormatter().format(lastPostDate.toDate().getTime());
+            binding.statsTextView.setText(stats);
+        });
+    }
+}
@@ -0,0 +1,58 @@
+package com.receparslan.basicsocialmedia.widget;
+
+import android.content.Context;
+import android.util.AttributeSet;
+
+import androidx.appcompat.widget.AppCompatImageView;
+
+/**
+ * Image view whose height follows its width in the aspect ratio of the image it will show.
+ * <p>
+ * The ratio is known from the dimensions stored with the post, so the view has its final size in
+ * the first layout pass and keeps it when the image arrives, instead of measuring as empty and
+ * growing once the bitmap is set. Without a ratio it measures like a regular image view.
+ */
+public class AspectRatioImageView extends AppCompatImageView {
+
+    // Dimensions of the image, 0 if they are not known
+    private int ratioWidth;
+    private int ratioHeight;
+
+    public AspectRatioImageView(Context context) {
+        super(context);
+    }
+
+    public AspectRatioImageView(Context context, AttributeSet attrs) {
+        super(context, attrs);
+    }
+
+    public AspectRatioImageView(Context context, AttributeSet attrs, int defStyleAttr) {
+        super(context, attrs, defStyleAttr);
+    }
+
+    // Set the dimensions of the image to be shown, 0 to measure from the drawable
+    public void setAspectRatio(int width, int height) {
+        if (width <= 0 || height <= 0) {
+            width = 0;
+            height = 0;
+        }
+
+        if (width != ratioWidth || height != ratioHeight) {
+            ratioWidth = width;
+            ratioHeight = height;
+            requestLayout();
+        }
+    }
+
+    @Override
+    protected void onMeasure(int widthMeasureSpec, int heightMeasureSpec) {
+        if (ratioWidth == 0 || MeasureSpec.getMode(widthMeasureSpec) == MeasureSpec.UNSPECIFIED) {
+            super.onMeasure(widthMeasureSpec, heightMeasureSpec);
+            return;
+        }
+
+        // Take the whole width and the height of the image scaled to it
+        int width = MeasureSpec.getSize(widthMeasureSpec);
+        setMeasuredDimension(width, (int) ((long) width * ratioHeight / ratioWidth));
+    }
+}
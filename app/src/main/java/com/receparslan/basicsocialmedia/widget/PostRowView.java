@@ -0,0 +1,319 @@
+package com.receparslan.basicsocialmedia.widget;
+
+import android.content.Context;
+import android.graphics.Canvas;
+import android.graphics.Paint;
+import android.os.Bundle;
+import android.text.StaticLayout;
+import android.text.TextPaint;
+import android.text.TextUtils;
+import android.util.AttributeSet;
+import android.util.TypedValue;
+import android.view.MotionEvent;
+import android.view.SoundEffectConstants;
+import android.view.ViewGroup;
+import android.view.accessibility.AccessibilityNodeInfo;
+import android.widget.ImageView;
+
+import androidx.core.content.ContextCompat;
+
+import com.receparslan.basicsocialmedia.R;
+
+/**
+ * Row of the feed as one flat view.
+ * <p>
+ * The email and the date, the image count, the styled row text and the likes and comments are drawn
+ * directly on the canvas instead of by a text view each, and the image is the only child. Measuring
+ * the row is a single pass over fixed line heights, the image scaled to its aspect ratio and a
+ * {@link StaticLayout} of the row text, which is only rebuilt when the text or the width changes.
+ * It looks like the {@code recycler_row} layout, which is kept as the baseline of the row benchmark.
+ */
+public class PostRowView extends ViewGroup {
+
+    // Text sizes in sp
+    private static final int HEADER_TEXT_SIZE = 14;
+    private static final int ROW_TEXT_SIZE = 20;
+
+    private final AspectRatioImageView imageView;
+
+    private final TextPaint emailPaint;
+    private final TextPaint datePaint;
+    private final TextPaint textPaint;
+    private final TextPaint likePaint;
+
+    private final int black;
+    private final int blue;
+
+    // Height and baseline of a header line, the image count uses the same paint as the date
+    private final int lineHeight;
+    private final int lineBaseline;
+
+    private String email = "";
+    private String date = "";
+    private CharSequence text = "";
+
+    // Text of the image count, null if it is hidden
+    private String imageCountText;
+    private int imageCount;
+
+    // Email ellipsized to the space left by the date, and the widths of the header texts
+    private CharSequence shownEmail = "";
+    private float emailWidth;
+    private float dateWidth;
+    private float imageCountWidth;
+
+    // Layout of the row text, rebuilt when the text or the width changes
+    private StaticLayout textLayout;
+
+    // Texts of the likes and the comments, the comments are hidden until they are known
+    private String likeText = "Like";
+    private String commentsText;
+    private float likeWidth;
+    private float commentsWidth;
+    private boolean liked;
+    private long likes = -1;
+    private long comments = -1;
+
+    // Tops of the parts below the header
+    private int imageTop;
+    private int imageCountTop;
+    private int textTop;
+    private int engagementTop;
+
+    private OnClickListener authorClickListener;
+    private OnClickListener likeClickListener;
+
+    // Listener of the part the current touch started on, null if it is not a clickable text
+    private OnClickListener pressedListener;
+
+    public PostRowView(Context context) {
+        this(context, null);
+    }
+
+    public PostRowView(Context context, AttributeSet attrs) {
+        super(context, attrs);
+        setWillNotDraw(false);
+
+        black = ContextCompat.getColor(context, R.color.black);
+        blue = ContextCompat.getColor(context, R.color.blue);
+        emailPaint = paint(HEADER_TEXT_SIZE, black);
+        datePaint = paint(HEADER_TEXT_SIZE, blue);
+        textPaint = paint(ROW_TEXT_SIZE, black);
+        likePaint = paint(HEADER_TEXT_SIZE, black);
+        likeWidth = likePaint.measureText(likeText);
+
+        // Same line height as a text view with the font padding
+        Paint.FontMetricsInt metrics = emailPaint.getFontMetricsInt();
+        lineHeight = metrics.bottom - metrics.top;
+        lineBaseline = -metrics.top;
+
+        imageView = new AspectRatioImageView(context);
+        imageView.setAdjustViewBounds(true);
+        imageView.setScaleType(ImageView.ScaleType.CENTER_CROP);
+        imageView.setContentDescription(context.getString(R.string.image));
+        addView(imageView);
+    }
+
+    // Image view of the row, images are loaded into it
+    public AspectRatioImageView getImageView() {
+        return imageView;
+    }
+
+    // Show a post, the text is the styled text of the row
+    public void setContent(String email, String date, CharSequence text, int imageCount) {
+        this.email = email != null ? email : "";
+        this.date = date != null ? date : "";
+        this.text = text != null ? text : "";
+
+        // Show how many images the post has, the first one is shown in the row
+        if (imageCount != this.imageCount) {
+            this.imageCount = imageCount;
+            imageCountText = imageCount > 1 ? imageCount + " images" : null;
+        }
+
+        requestLayout();
+        invalidate();
+    }
+
+    // Show the likes and the comments of the post, a negative count is not known yet
+    public void setEngagement(boolean liked, long likes, long comments) {
+        if (liked == this.liked && likes == this.likes && comments == this.comments)
+            return;
+
+        if (liked != this.liked || likes != this.likes) {
+            this.liked = liked;
+            this.likes = likes;
+            String like = liked ? "Liked" : "Like";
+            likeText = likes >= 0 ? like + " (" + likes + ")" : like;
+            likePaint.setColor(liked ? blue : black);
+            likeWidth = likePaint.measureText(likeText);
+        }
+        if (comments != this.comments) {
+            this.comments = comments;
+            commentsText = comments < 0 ? null : comments == 1 ? "1 comment" : comments + " comments";
+            commentsWidth = commentsText != null ? datePaint.measureText(commentsText) : 0;
+        }
+
+        // The line has a fixed height, so the row only has to be drawn again
+        invalidate();
+    }
+
+    // Set the listener of clicks on the email of the author
+    public void setOnAuthorClickListener(OnClickListener listener) {
+        authorClickListener = listener;
+    }
+
+    // Set the listener of clicks on the likes
+    public void setOnLikeClickListener(OnClickListener listener) {
+        likeClickListener = listener;
+    }
+
+    @Override
+    protected void onMeasure(int widthMeasureSpec, int heightMeasureSpec) {
+        int width = MeasureSpec.getSize(widthMeasureSpec);
+        int contentWidth = Math.max(0, width - getPaddingLeft() - getPaddingRight());
+
+        // Header, the email gives way to the date
+        dateWidth = datePaint.measureText(date);
+        shownEmail = TextUtils.ellipsize(email, emailPaint, Math.max(0, contentWidth - dateWidth), TextUtils.TruncateAt.END);
+        emailWidth = emailPaint.measureText(shownEmail, 0, shownEmail.length());
+        int height = getPaddingTop() + lineHeight;
+
+        // Image, at its aspect ratio if it is known
+        imageTop = height;
+        if (imageView.getVisibility() != GONE) {
+            imageView.measure(MeasureSpec.makeMeasureSpec(contentWidth, MeasureSpec.EXACTLY), MeasureSpec.makeMeasureSpec(0, MeasureSpec.UNSPECIFIED));
+            height += imageView.getMeasuredHeight();
+        }
+
+        imageCountTop = height;
+        if (imageCountText != null) {
+            imageCountWidth = datePaint.measureText(imageCountText);
+            height += lineHeight;
+        }
+
+        textTop = height;
+        if (textLayout == null || textLayout.getText() != text || textLayout.getWidth() != contentWidth)
+            textLayout = StaticLayout.Builder.obtain(text, 0, text.length(), textPaint, contentWidth).build();
+        height += textLayout.getHeight();
+
+        engagementTop = height;
+        height += lineHeight + getPaddingBottom();
+
+        setMeasuredDimension(width, resolveSize(height, heightMeasureSpec));
+    }
+
+    @Override
+    protected void onLayout(boolean changed, int l, int t, int r, int b) {
+        if (imageView.getVisibility() != GONE)
+            imageView.layout(getPaddingLeft(), imageTop, getPaddingLeft() + imageView.getMeasuredWidth(), imageTop + imageView.getMeasuredHeight());
+    }
+
+    @Override
+    protected void onDraw(Canvas canvas) {
+        int left = getPaddingLeft();
+        int right = getWidth() - getPaddingRight();
+
+        canvas.drawText(shownEmail, 0, shownEmail.length(), left, getPaddingTop() + lineBaseline, emailPaint);
+        canvas.drawText(date, right - dateWidth, getPaddingTop() + lineBaseline, datePaint);
+        if (imageCountText != null)
+            canvas.drawText(imageCountText, right - imageCountWidth, imageCountTop + lineBaseline, datePaint);
+
+        if (textLayout != null) {
+            int saveCount = canvas.save();
+            canvas.translate(left, textTop);
+            textLayout.draw(canvas);
+            canvas.restoreToCount(saveCount);
+        }
+
+        canvas.drawText(likeText, left, engagementTop + lineBaseline, likePaint);
+        if (commentsText != null)
+            canvas.drawText(commentsText, right - commentsWidth, engagementTop + lineBaseline, datePaint);
+    }
+
+    @Override
+    public boolean onTouchEvent(MotionEvent event) {
+        if (authorClickListener == null && likeClickListener == null)
+            return super.onTouchEvent(event);
+
+        // Clicks on the email open the author and clicks on the likes like the post, the rest of the row handles touches as usual
+        switch (event.getActionMasked()) {
+            case MotionEvent.ACTION_DOWN:
+                pressedListener = listenerAt(event.getX(), event.getY());
+                if (pressedListener != null)
+                    return true;
+                break;
+            case MotionEvent.ACTION_MOVE:
+                if (pressedListener != null)
+                    return true;
+                break;
+            case MotionEvent.ACTION_UP:
+                if (pressedListener != null) {
+                    OnClickListener listener = pressedListener;
+                    pressedListener = null;
+                    if (listenerAt(event.getX(), event.getY()) == listener) {
+                        playSoundEffect(SoundEffectConstants.CLICK);
+                        listener.onClick(this);
+                    }
+                    return true;
+                }
+                break;
+            case MotionEvent.ACTION_CANCEL:
+                pressedListener = null;
+                break;
+        }
+        return super.onTouchEvent(event);
+    }
+
+    @Override
+    public void onInitializeAccessibilityNodeInfo(AccessibilityNodeInfo info) {
+        super.onInitializeAccessibilityNodeInfo(info);
+
+        // The texts are drawn, describe them for the accessibility services
+        info.setText(email + ", " + date + ", " + text + ", " + likeText + (commentsText != null ? ", " + commentsText : ""));
+
+        // The clickable texts are found by the touch position, offer them as actions as well
+        if (authorClickListener != null)
+            info.addAction(new AccessibilityNodeInfo.AccessibilityAction(R.id.action_open_author, getResources().getString(R.string.open_author, email)));
+        if (likeClickListener != null)
+            info.addAction(new AccessibilityNodeInfo.AccessibilityAction(R.id.action_like, getResources().getString(liked ? R.string.unlike : R.string.like)));
+    }
+
+    @Override
+    public boolean performAccessibilityAction(int action, Bundle arguments) {
+        if (action == R.id.action_open_author && authorClickListener != null) {
+            authorClickListener.onClick(this);
+            return true;
+        }
+        if (action == R.id.action_like && likeClickListener != null) {
+            likeClickListener.onClick(this);
+            return true;
+        }
+        return super.performAccessibilityAction(action, arguments);
+    }
+
+    // Get the listener of the clickable text at the point, null if there is none
+    private OnClickListener listenerAt(float x, float y) {
+        if (x < getPaddingLeft())
+            return null;
+        if (x <= getPaddingLeft() + emailWidth && y >= getPaddingTop() && y <= getPaddingTop() + lineHeight)
+            return authorClickListener;
+        if (x <= getPaddingLeft() + likeWidth && y >= engagementTop && y <= engagementTop + lineHeight)
+            return likeClickListener;
+        return null;
+    }
+
+    private TextPaint paint(int textSize, int color) {
+        TextPaint paint = new TextPaint(Paint.ANTI_ALIAS_FLAG);
+        paint.density = getResources().getDisplayMetrics().density;
+        paint.setTextSize(TypedValue.applyDimension(TypedValue.COMPLEX_UNIT_SP, textSize, getResources().getDisplayMetrics()));
+        paint.setColor(color);
+        return paint;
+    }
+
+    // Not a scrolling container, show pressed states at once
+    @Override
+    public boolean shouldDelayChildPressedState() {
+        return false;
+    }
+}
@@ -0,0 +1,100 @@
+package com.receparslan.basicsocialmedia.image;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+
+/**
+ * Round trips and malformed hashes of {@link BlurHash}.
+ */
+public class BlurHashTest {
+
+    // Example hash of the reference implementation, 4 by 3 components
+    private static final String REFERENCE = "LEHV6nWB2yk8pyo0adR*.7kCMdnj";
+
+    @Test
+    public void averageColorRoundTrips() {
+        int[] pixels = new int[16 * 12];
+        Arrays.fill(pixels, 0xFF3366CC);
+
+        // The DC component alone is the average color, without AC factors it decodes exactly
+        String hash = BlurHash.encode(pixels, 16, 12, 1, 1);
+        assertEquals(6, hash.length());
+
+        int[] decoded = BlurHash.decode(hash, 8, 6);
+        assertNotNull(decoded);
+        assertEquals(48, decoded.length);
+        for (int pixel : decoded) {
+            assertEquals(0xFF, pixel >>> 24);
+            assertEquals(0x33, (pixel >> 16) & 0xFF, 1);
+            assertEquals(0x66, (pixel >> 8) & 0xFF, 1);
+            assertEquals(0xCC, pixel & 0xFF, 1);
+        }
+    }
+
+    @Test
+    public void gradientRoundTrips() {
+        int width = 32;
+        int height = 24;
+        int[] pixels = new int[width * height];
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                int value = x * 255 / (width - 1);
+                pixels[y * width + x] = 0xFF000000 | value << 16 | value << 8 | value;
+            }
+        }
+
+        String hash = BlurHash.encode(pixels, width, height, 4, 3);
+        assertEquals(28, hash.length());
+
+        int[] decoded = BlurHash.decode(hash, width, height);
+        assertNotNull(decoded);
+
+        // Blurred, but still dark on the left, light on the right and close to the original
+        for (int y = 0; y < height; y++) {
+            for (int x = 1; x < width; x++)
+                assertTrue(gray(decoded[y * width + x]) >= gray(decoded[y * width + x - 1]) - 2);
+            for (int x = 0; x < width; x++)
+                assertEquals(gray(pixels[y * width + x]), gray(decoded[y * width + x]), 40);
+        }
+    }
+
+    @Test
+    public void decodesReferenceHash() {
+        int[] decoded = BlurHash.decode(REFERENCE, 32, 32);
+        assertNotNull(decoded);
+        assertEquals(32 * 32, decoded.length);
+    }
+
+    @Test
+    public void rejectsMalformedHashes() {
+        assertNull(BlurHash.decode(null, 32, 32));
+        assertNull(BlurHash.decode("LEHV6", 32, 32));
+        assertNull(BlurHash.decode(REFERENCE, 0, 32));
+
+        // Length that does not match the size flag
+        assertNull(BlurHash.decode(REFERENCE.substring(0, 26), 32, 32));
+        assertNull(BlurHash.decode(REFERENCE + "00", 32, 32));
+
+        // Size flag above 9 by 9 components
+        assertNull(BlurHash.decode("~" + REFERENCE.substring(1), 32, 32));
+
+        // Characters outside of base 83 in the maximum, the DC and an AC factor
+        assertNull(BlurHash.decode("L!" + REFERENCE.substring(2), 32, 32));
+        assertNull(BlurHash.decode("LE!V6nWB2yk8pyo0adR*.7kCMdnj", 32, 32));
+        assertNull(BlurHash.decode("LEHV6nWB2yk8pyo0adR*.7kCMd!j", 32, 32));
+
+        // DC color above 24 bits and AC factor above 19 cubed
+        assertNull(BlurHash.decode("LE~~~~WB2yk8pyo0adR*.7kCMdnj", 32, 32));
+        assertNull(BlurHash.decode("LEHV6n~~2yk8pyo0adR*.7kCMdnj", 32, 32));
+    }
+
+    private static int gray(int pixel) {
+        return pixel & 0xFF;
+    }
+}
@@ -0,0 +1,69 @@
+package com.receparslan.basicsocialmedia.model;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+import java.util.Collections;
+
+/**
+ * Lookups of posts by document ID in a {@link CompactFeed}.
+ */
+public class CompactFeedTest {
+
+    private static final Author AUTHOR = AuthorTable.get().intern("uid", "author@example.com", "Author");
+
+    @Test
+    public void findsEveryPosition() {
+        CompactFeed.Builder builder = new CompactFeed.Builder(0);
+        for (int i = 0; i < 1000; i++)
+            builder.add(post(autoId(i)));
+        CompactFeed feed = builder.build();
+
+        for (int i = 0; i < 1000; i++)
+            assertEquals(i, feed.indexOf(autoId(i)));
+        assertEquals(-1, feed.indexOf(autoId(1000)));
+    }
+
+    @Test
+    public void findsIrregularIds() {
+        CompactFeed feed = new CompactFeed.Builder(3)
+                .add(post(autoId(0)))
+                .add(post("pending-1"))
+                .add(post("short"))
+                .build();
+
+        assertEquals(0, feed.indexOf(autoId(0)));
+        assertEquals(1, feed.indexOf("pending-1"));
+        assertEquals(2, feed.indexOf("short"));
+        assertEquals(-1, feed.indexOf("pending-2"));
+    }
+
+    @Test
+    public void repeatedIdIsFoundAtFirstPosition() {
+        CompactFeed feed = new CompactFeed.Builder(3)
+                .add(post(autoId(7)))
+                .add(post(autoId(8)))
+                .add(post(autoId(7)))
+                .build();
+
+        assertEquals(0, feed.indexOf(autoId(7)));
+        assertEquals(1, feed.indexOf(autoId(8)));
+    }
+
+    @Test
+    public void emptyFeedFindsNothing() {
+        assertEquals(-1, CompactFeed.EMPTY.indexOf(autoId(0)));
+        assertEquals(-1, CompactFeed.EMPTY.indexOf("irregular"));
+    }
+
+    // A 20 character auto ID that differs in both halves
+    private static String autoId(int i) {
+        String digits = String.format("%010d", i);
+        return digits + digits.replace('0', 'x');
+    }
+
+    private static Post post(String id) {
+        return new Post(id, AUTHOR, "comment", null, Collections.emptyList(), 1);
+    }
+}
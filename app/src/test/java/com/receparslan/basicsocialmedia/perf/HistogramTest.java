@@ -0,0 +1,96 @@
+package com.receparslan.basicsocialmedia.perf;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+/**
+ * Percentiles and counts of the {@link Histogram}.
+ */
+public class HistogramTest {
+
+    // A percentile is the upper bound of its bucket, at most an eighth above the recorded value
+    private static final double MAX_ERROR = 0.125;
+
+    @Test
+    public void uniformDistribution() {
+        Histogram histogram = new Histogram();
+
+        // 1 to 1000 milliseconds, each recorded once, in shuffled order
+        for (int i = 0; i < 1000; i++)
+            histogram.record((i * 337L % 1000 + 1) * 1_000_000L);
+
+        assertEquals(1000, histogram.getCount());
+        assertEquals(500_500, histogram.getMeanMicros());
+        assertEquals(1_000_000, histogram.getMaxMicros());
+        assertPercentile(500_000, histogram.getPercentileMicros(50));
+        assertPercentile(900_000, histogram.getPercentileMicros(90));
+        assertPercentile(990_000, histogram.getPercentileMicros(99));
+        assertEquals(1_000_000, histogram.getPercentileMicros(100));
+    }
+
+    @Test
+    public void skewedDistribution() {
+        Histogram histogram = new Histogram();
+
+        // 98 fast frames of 4 ms, one of 40 ms and one of 400 ms
+        for (int i = 0; i < 98; i++)
+            histogram.record(4_000_000L);
+        histogram.record(40_000_000L);
+        histogram.record(400_000_000L);
+
+        assertEquals(100, histogram.getCount());
+        assertPercentile(4_000, histogram.getPercentileMicros(50));
+        assertPercentile(4_000, histogram.getPercentileMicros(90));
+        assertPercentile(40_000, histogram.getPercentileMicros(99));
+        assertEquals(400_000, histogram.getPercentileMicros(99.9));
+    }
+
+    @Test
+    public void shortDurationsAreExact() {
+        Histogram histogram = new Histogram();
+        for (int micros = 1; micros <= 10; micros++)
+            histogram.record(micros * 1_000L);
+
+        assertEquals(5, histogram.getPercentileMicros(50));
+        assertEquals(9, histogram.getPercentileMicros(90));
+        assertEquals(10, histogram.getPercentileMicros(99));
+    }
+
+    @Test
+    public void emptyAndReset() {
+        Histogram histogram = new Histogram();
+        assertEquals(0, histogram.getPercentileMicros(50));
+        assertEquals(0, histogram.getMeanMicros());
+
+        histogram.record(5_000_000L);
+        histogram.reset();
+        assertEquals(0, histogram.getCount());
+        assertEquals(0, histogram.getMaxMicros());
+        assertEquals(0, histogram.getPercentileMicros(99));
+    }
+
+    @Test
+    public void concurrentRecordsAreCounted() throws InterruptedException {
+        Histogram histogram = new Histogram();
+        Thread[] threads = new Thread[4];
+        for (int t = 0; t < threads.length; t++) {
+            threads[t] = new Thread(() -> {
+                for (int i = 1; i <= 10_000; i++)
+                    histogram.record(i * 1_000L);
+            });
+            threads[t].start();
+        }
+        for (Thread thread : threads)
+            thread.join();
+
+        assertEquals(40_000, histogram.getCount());
+        assertEquals(10_000, histogram.getMaxMicros());
+    }
+
+    private static void assertPercentile(long expected, long actual) {
+        assertTrue("Percentile " + actual + " below " + expected, actual >= expected);
+        assertTrue("Percentile " + actual + " too far above " + expected, actual <= expected * (1 + MAX_ERROR));
+    }
+}
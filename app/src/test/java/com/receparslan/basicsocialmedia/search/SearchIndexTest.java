@@ -0,0 +1,108 @@
+package com.receparslan.basicsocialmedia.search;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Matching, ranking and upkeep of the {@link SearchIndex}.
+ */
+public class SearchIndexTest {
+
+    @Test
+    public void onlyLastTokenMatchesAsPrefix() {
+        SearchIndex index = new SearchIndex();
+        index.put("beach", "Alice", "sunset at the beach", 1);
+
+        assertEquals(Collections.singletonList("beach"), index.search("beach suns", 10));
+        assertEquals(Collections.emptyList(), index.search("suns beach", 10));
+        assertEquals(Collections.singletonList("beach"), index.search("sunset beach", 10));
+    }
+
+    @Test
+    public void foldsCaseAndAccents() {
+        SearchIndex index = new SearchIndex();
+        index.put("cafe", "Zoë", "Café crème in Köln", 1);
+
+        assertEquals(Collections.singletonList("cafe"), index.search("CAFE CREME", 10));
+        assertEquals(Collections.singletonList("cafe"), index.search("koln zoe", 10));
+        assertEquals(Arrays.asList("cafe", "creme", "in", "koln"), Arrays.asList(SearchIndex.tokenize("Café-crème in KÖLN")));
+    }
+
+    @Test
+    public void changedPostIsIndexedAgain() {
+        SearchIndex index = new SearchIndex();
+        index.put("post", "Alice", "old caption", 1);
+        index.put("post", "Alice", "new caption", 2);
+
+        assertEquals(1, index.size());
+        assertEquals(Collections.emptyList(), index.search("old", 10));
+        assertEquals(Collections.singletonList("post"), index.search("new", 10));
+        assertEquals(Collections.singletonList("post"), index.search("caption", 10));
+    }
+
+    @Test
+    public void removedPostIsNotFound() {
+        SearchIndex index = new SearchIndex();
+        index.put("kept", "Alice", "mountain lake", 1);
+        index.put("removed", "Bob", "mountain river", 2);
+        index.remove("removed");
+
+        assertFalse(index.contains("removed"));
+        assertTrue(index.contains("kept"));
+        assertEquals(Collections.singletonList("kept"), index.search("mountain", 10));
+        assertEquals(Collections.emptyList(), index.search("river", 10));
+    }
+
+    @Test
+    public void findsLivePostsAfterCompaction() {
+        SearchIndex index = new SearchIndex();
+        for (int i = 0; i < 3000; i++)
+            index.put("post" + i, "Author", "common word" + i, i);
+
+        // Removing more than half of the posts compacts the postings
+        for (int i = 0; i < 2000; i++)
+            index.remove("post" + i);
+        index.put("late", "Author", "common late", 5000);
+
+        assertEquals(1001, index.size());
+        List<String> results = index.search("common", 2000);
+        assertEquals(1001, results.size());
+        assertEquals("late", results.get(0));
+        assertEquals("post2999", results.get(1));
+        assertEquals(Collections.emptyList(), index.search("word10", 10));
+        assertEquals(Collections.singletonList("post2500"), index.search("word2500", 10));
+    }
+
+    @Test
+    public void equalScoresAreRankedByDate() {
+        SearchIndex index = new SearchIndex();
+        index.put("middle", "Alice", "sunrise", 2);
+        index.put("oldest", "Alice", "sunrise", 1);
+        index.put("newest", "Alice", "sunrise", 3);
+
+        assertEquals(Arrays.asList("newest", "middle", "oldest"), index.search("sunrise", 10));
+        assertEquals(Arrays.asList("newest", "middle"), index.search("sunrise", 2));
+    }
+
+    @Test
+    public void removedPostsDoNotChangeRarity() {
+        SearchIndex index = new SearchIndex();
+        index.put("apple", "apple", "banana", 2);
+        index.put("banana", "banana", "apple", 1);
+
+        // Both tokens are equally rare among the live posts, so the newer post wins the tie
+        for (int i = 0; i < 100; i++)
+            index.put("removed" + i, "Bob", "apple", 0);
+        for (int i = 0; i < 100; i++)
+            index.remove("removed" + i);
+
+        assertEquals(Arrays.asList("apple", "banana"), index.search("apple banana", 10));
+    }
+}
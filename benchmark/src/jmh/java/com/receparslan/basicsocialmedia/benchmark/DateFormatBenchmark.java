@@ -0,0 +1,43 @@
+package com.receparslan.basicsocialmedia.benchmark;
+
+import com.receparslan.basicsocialmedia.util.DateFormatter;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Formatting the dates of the rows, once for dates that are in the cache of the formatter and once
+ * for dates that are not.
+ */
+@State(Scope.Thread)
+public class DateFormatBenchmark {
+
+    private long[] dates;
+    private DateFormatter cachedFormatter;
+
+    @Setup
+    public void setUp() {
+        dates = new SyntheticPosts(20).dates;
+
+        cachedFormatter = new DateFormatter();
+        for (long date : dates)
+            cachedFormatter.format(date);
+    }
+
+    @Benchmark
+    public void formatCached(Blackhole blackhole) {
+        for (long date : dates)
+            blackhole.consume(cachedFormatter.format(date));
+    }
+
+    @Benchmark
+    public void formatUncached(Blackhole blackhole) {
+        // A new formatter has an empty cache
+        DateFormatter formatter = new DateFormatter();
+        for (long date : dates)
+            blackhole.consume(formatter.format(date));
+    }
+}
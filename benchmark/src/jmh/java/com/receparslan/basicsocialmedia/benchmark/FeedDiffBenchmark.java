@@ -0,0 +1,75 @@
+package com.receparslan.basicsocialmedia.benchmark;
+
+import com.receparslan.basicsocialmedia.model.CompactFeed;
+import com.receparslan.basicsocialmedia.model.Post;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.List;
+
+/**
+ * Publishing a new post at the top of a long feed: building the next snapshot from the head and
+ * the compact pages, and comparing it with the shown one. Also finding the row of the oldest post,
+ * as an engagement update does for the post whose counts changed.
+ * <p>
+ * DiffUtil is only published inside an Android library, so the comparison walks the diagonal it
+ * follows for an insertion at the top and asks the same questions as {@code FeedDiffCallback}.
+ */
+@State(Scope.Thread)
+public class FeedDiffBenchmark {
+
+    @Param({"1000", "10000"})
+    public int size;
+
+    private CompactFeed pages;
+    private CompactFeed oldFeed;
+    private CompactFeed newFeed;
+    private Post newPost;
+    private String oldestId;
+
+    @Setup
+    public void setUp() {
+        SyntheticPosts posts = new SyntheticPosts(size + 1);
+        List<Post> list = posts.toPosts();
+        newPost = list.get(0);
+
+        CompactFeed.Builder builder = new CompactFeed.Builder(size);
+        for (Post post : list.subList(1, list.size()))
+            builder.add(post);
+        pages = builder.build();
+
+        oldFeed = pages;
+        newFeed = snapshot();
+        oldestId = posts.ids[size];
+
+        // The positions are built on the first lookup, the benchmark measures the lookups after it
+        newFeed.indexOf(oldestId);
+    }
+
+    @Benchmark
+    public CompactFeed snapshot() {
+        return new CompactFeed.Builder(pages.size() + 1)
+                .add(newPost)
+                .addAll(pages, null)
+                .build();
+    }
+
+    @Benchmark
+    public int compare() {
+        int unchanged = 0;
+        for (int i = 0; i < oldFeed.size(); i++) {
+            if (oldFeed.sameId(i, newFeed, i + 1) && oldFeed.sameContents(i, newFeed, i + 1))
+                unchanged++;
+        }
+        return unchanged;
+    }
+
+    @Benchmark
+    public int indexOf() {
+        return newFeed.indexOf(oldestId);
+    }
+}
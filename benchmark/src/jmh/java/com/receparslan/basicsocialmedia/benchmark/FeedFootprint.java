@@ -0,0 +1,123 @@
+package com.receparslan.basicsocialmedia.benchmark;
+
+import android.net.Uri;
+
+import com.receparslan.basicsocialmedia.feed.PostFactory;
+import com.receparslan.basicsocialmedia.model.CompactFeed;
+
+import java.lang.ref.Reference;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.Locale;
+import java.util.function.Function;
+
+/**
+ * Heap kept per post by the feed held as the {@code ArrayList<Post>} the app used to keep and by the
+ * same feed held as a {@link CompactFeed}.
+ * <p>
+ * The old posts are rebuilt as {@link LegacyPost}, with the image URI parsed up front, the date
+ * formatted up front and the email and display name copied into every post, as the old feed mapped
+ * each document. The old documents only had an image URL, so the compact feed is measured for the
+ * same documents, and then for the current documents with three image variants and before and after
+ * its first lookup by ID.
+ * <p>
+ * The allocation rate of {@code -prof gc} counts the posts a compact feed is built from, so the
+ * footprint is measured as the used heap after a full collection instead, once before the document
+ * values are generated and once after the feed is built from them. Whatever the feed does not keep
+ * is collected in between. Run with {@code ./gradlew :benchmark:feedFootprint}, which uses the
+ * serial collector so the used heap is exact after a collection.
+ */
+public final class FeedFootprint {
+
+    private static final int[] SIZES = {10_000, 100_000};
+
+    // Measurements of each feed, the smallest is reported
+    private static final int REPEATS = 5;
+
+    private FeedFootprint() {
+    }
+
+    public static void main(String[] args) {
+        // Intern the authors and load the classes, so neither is counted
+        measure(10_000, FeedFootprint::legacy);
+        measure(10_000, FeedFootprint::indexed);
+
+        for (int size : SIZES) {
+            long legacy = measure(size, FeedFootprint::legacy);
+            long compactLegacy = measure(size, FeedFootprint::compactLegacy);
+            long compact = measure(size, FeedFootprint::compact);
+            long indexed = measure(size, FeedFootprint::indexed);
+            System.out.printf(Locale.ROOT, "%,9d posts: old documents ArrayList<Post> %,5d B/post, CompactFeed %,5d B/post; with variants CompactFeed %,5d B/post, after indexOf %,5d B/post%n",
+                    size, legacy / size, compactLegacy / size, compact / size, indexed / size);
+        }
+    }
+
+    // Bytes kept by the feed built from freshly generated document values
+    private static long measure(int size, Function<SyntheticPosts, Object> build) {
+        long kept = Long.MAX_VALUE;
+        for (int i = 0; i < REPEATS; i++) {
+            long before = usedHeap();
+            Object feed = build.apply(new SyntheticPosts(size));
+            long after = usedHeap();
+            Reference.reachabilityFence(feed);
+            kept = Math.min(kept, after - before);
+        }
+        return kept;
+    }
+
+    // The feed as the old mapping built it, one post per document with its own strings
+    private static Object legacy(SyntheticPosts posts) {
+        SimpleDateFormat format = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss", Locale.ROOT);
+        ArrayList<LegacyPost> feed = new ArrayList<>(posts.size());
+        for (int i = 0; i < posts.size(); i++) {
+            LegacyPost post = new LegacyPost();
+            post.displayName = posts.displayNames[i];
+            post.email = posts.emails[i];
+            post.comment = posts.comments[i];
+            post.imageUri = Uri.parse(posts.imageUrls[i]);
+            post.date = format.format(new Date(posts.dates[i]));
+            feed.add(post);
+        }
+        return feed;
+    }
+
+    // The old documents in a compact feed, the image URL without variants
+    private static CompactFeed compactLegacy(SyntheticPosts posts) {
+        CompactFeed.Builder builder = new CompactFeed.Builder(posts.size());
+        for (int i = 0; i < posts.size(); i++)
+            builder.add(PostFactory.toPost(posts.ids[i], posts.authorUids[i], posts.emails[i], posts.displayNames[i], posts.comments[i], posts.imageUrls[i], null, posts.dates[i]));
+        return builder.build();
+    }
+
+    private static CompactFeed compact(SyntheticPosts posts) {
+        CompactFeed.Builder builder = new CompactFeed.Builder(posts.size());
+        for (int i = 0; i < posts.size(); i++)
+            builder.add(posts.toPost(i));
+        return builder.build();
+    }
+
+    // A compact feed whose positions table is built, as for the rows an engagement update looks up
+    private static CompactFeed indexed(SyntheticPosts posts) {
+        CompactFeed feed = compact(posts);
+        feed.indexOf(posts.ids[0]);
+        return feed;
+    }
+
+    private static long usedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++)
+            System.gc();
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    // Fields of the post model the feed was kept in before the compact feed
+    private static final class LegacyPost {
+
+        Uri imageUri;
+        String displayName;
+        String email;
+        String date;
+        String comment;
+    }
+}
@@ -0,0 +1,30 @@
+package com.receparslan.basicsocialmedia.benchmark;
+
+import com.receparslan.basicsocialmedia.feed.PostFactory;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Mapping the field values of a page of documents to posts, as {@code PostMapper} does for every
+ * snapshot of the feed.
+ */
+@State(Scope.Thread)
+public class PostMappingBenchmark {
+
+    private SyntheticPosts page;
+
+    @Setup
+    public void setUp() {
+        page = new SyntheticPosts(20);
+    }
+
+    @Benchmark
+    public void mapPage(Blackhole blackhole) {
+        for (int i = 0; i < page.size(); i++)
+            blackhole.consume(PostFactory.toPost(page.ids[i], page.authorUids[i], page.emails[i], page.displayNames[i], page.comments[i], page.imageUrls[i], page.images[i], page.dates[i]));
+    }
+}
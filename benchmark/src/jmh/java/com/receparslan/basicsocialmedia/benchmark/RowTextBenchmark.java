@@ -0,0 +1,34 @@
+package com.receparslan.basicsocialmedia.benchmark;
+
+import com.receparslan.basicsocialmedia.feed.RowText;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Composing the text of a page of rows. The spans are Android classes and are left out, they are
+ * added to the composed text in one step.
+ */
+@State(Scope.Thread)
+public class RowTextBenchmark {
+
+    private SyntheticPosts page;
+    private final StringBuilder text = new StringBuilder();
+
+    @Setup
+    public void setUp() {
+        page = new SyntheticPosts(20);
+    }
+
+    @Benchmark
+    public void composePage(Blackhole blackhole) {
+        for (int i = 0; i < page.size(); i++) {
+            text.setLength(0);
+            blackhole.consume(RowText.append(text, page.displayNames[i], page.comments[i]));
+            blackhole.consume(text.toString());
+        }
+    }
+}
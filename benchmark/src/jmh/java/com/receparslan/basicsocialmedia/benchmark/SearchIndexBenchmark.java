@@ -0,0 +1,59 @@
+package com.receparslan.basicsocialmedia.benchmark;
+
+import com.receparslan.basicsocialmedia.search.SearchIndex;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.List;
+
+/**
+ * Searching the archived posts while a query is typed, and indexing a changed post.
+ * <p>
+ * Every synthetic comment shares its words, so a query for them ranks the whole index, while a
+ * number prefix expands to many tokens that each match a few posts.
+ */
+@State(Scope.Thread)
+public class SearchIndexBenchmark {
+
+    @Param({"10000", "50000"})
+    public int size;
+
+    private SyntheticPosts posts;
+    private SearchIndex index;
+    private int next;
+
+    @Setup
+    public void setUp() {
+        posts = new SyntheticPosts(size);
+        index = new SearchIndex();
+        for (int i = 0; i < size; i++)
+            index.put(posts.ids[i], posts.displayNames[i], posts.comments[i], posts.dates[i]);
+    }
+
+    @Benchmark
+    public List<String> searchCommonWords() {
+        return index.search("picture week", 50);
+    }
+
+    @Benchmark
+    public List<String> searchAuthor() {
+        return index.search("author 4", 50);
+    }
+
+    @Benchmark
+    public List<String> searchNumberPrefix() {
+        return index.search("12", 50);
+    }
+
+    @Benchmark
+    public int update() {
+        int i = next;
+        next = (next + 1) % size;
+        index.put(posts.ids[i], posts.displayNames[i], posts.comments[i], posts.dates[i]);
+        return index.size();
+    }
+}
@@ -0,0 +1,111 @@
+package com.receparslan.basicsocialmedia.benchmark;
+
+import com.receparslan.basicsocialmedia.feed.PostFactory;
+import com.receparslan.basicsocialmedia.model.Post;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Field values of post documents as Firestore returns them, generated from a fixed seed so every
+ * run measures the same data.
+ */
+final class SyntheticPosts {
+
+    // Number of distinct authors, a feed is written by a few authors
+    static final int AUTHORS = 50;
+
+    private static final String ID_ALPHABET = "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789";
+    private static final long FIRST_DATE = 1_700_000_000_000L;
+
+    // Placeholder stored with every image, its value does not matter to the mapping
+    private static final String BLUR_HASH = "LEHV6nWB2yk8pyo0adR*.7kCMdnj";
+
+    final String[] ids;
+    final String[] authorUids;
+    final String[] emails;
+    final String[] displayNames;
+    final String[] comments;
+    final String[] imageUrls;
+    final List<?>[] images;
+    final long[] dates;
+
+    SyntheticPosts(int count) {
+        Random random = new Random(42);
+        ids = new String[count];
+        authorUids = new String[count];
+        emails = new String[count];
+        displayNames = new String[count];
+        comments = new String[count];
+        imageUrls = new String[count];
+        images = new List<?>[count];
+        dates = new long[count];
+
+        for (int i = 0; i < count; i++) {
+            String id = id(random);
+            int author = random.nextInt(AUTHORS);
+
+            // Every value is its own instance, like the values of deserialized documents
+            ids[i] = id;
+            authorUids[i] = new String("uid" + author);
+            emails[i] = new String("author" + author + "@example.com");
+            displayNames[i] = new String("Author " + author);
+            comments[i] = "Comment " + random.nextInt(1_000_000) + " about a picture from the weekend";
+            imageUrls[i] = url(id, "");
+            images[i] = images(id);
+
+            // Newest first, a few seconds apart
+            dates[i] = FIRST_DATE - i * 7_000L - random.nextInt(1000);
+        }
+    }
+
+    int size() {
+        return ids.length;
+    }
+
+    Post toPost(int i) {
+        return PostFactory.toPost(ids[i], authorUids[i], emails[i], displayNames[i], comments[i], imageUrls[i], images[i], dates[i]);
+    }
+
+    List<Post> toPosts() {
+        ArrayList<Post> posts = new ArrayList<>(size());
+        for (int i = 0; i < size(); i++)
+            posts.add(toPost(i));
+        return posts;
+    }
+
+    private static String id(Random random) {
+        char[] id = new char[20];
+        for (int i = 0; i < id.length; i++)
+            id[i] = ID_ALPHABET.charAt(random.nextInt(ID_ALPHABET.length()));
+        return new String(id);
+    }
+
+    private static String url(String id, String suffix) {
+        return "https://firebasestorage.googleapis.com/v0/b/basic-social-media.appspot.com/o/images%2F" + id + suffix + ".jpg?alt=media&token=8f14e45f-ceea-467a-9575-a1b2c3d4e5f6";
+    }
+
+    // Image variants in upload order, the mapper sorts them by width
+    private static List<Map<String, Object>> images(String id) {
+        ArrayList<Map<String, Object>> images = new ArrayList<>();
+        images.add(image(id, "", 1600L, 1200L));
+        images.add(image(id, "_thumb", 240L, 180L));
+        images.add(image(id, "_medium", 1080L, 810L));
+        return images;
+    }
+
+    // Firestore returns whole numbers as longs
+    private static Map<String, Object> image(String id, String suffix, long width, long height) {
+        HashMap<String, Object> image = new HashMap<>();
+        image.put("image", 0L);
+        image.put("path", "images/" + id + suffix + ".jpg");
+        image.put("url", url(id, suffix));
+        image.put("width", width);
+        image.put("height", height);
+        image.put("blurHash", BLUR_HASH);
+        return image;
+    }
+}
@@ -0,0 +1,23 @@
+package android.net;
+
+/**
+ * Stand-in for the Android class so the model compiles on a plain JVM, the benchmarks never parse
+ * an image URI.
+ */
+public class Uri {
+
+    private final String uriString;
+
+    private Uri(String uriString) {
+        this.uriString = uriString;
+    }
+
+    public static Uri parse(String uriString) {
+        return new Uri(uriString);
+    }
+
+    @Override
+    public String toString() {
+        return uriString;
+    }
+}